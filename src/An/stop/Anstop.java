@@ -58,7 +58,7 @@ import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.LinearLayout;
-import android.widget.ScrollView;
+import android.widget.ListView;
 import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -112,13 +112,13 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 
 	/**
 	 * If true, we already wrote the start date/time into {@link #lapView}
-	 * or {@link #startTimeView}, by calling {@link #updateStartTimeCommentLapsView(boolean)}.
+	 * or {@link #startTimeView}, by calling {@link #updateStartTimeCommentLapsView()}.
 	 */
 	boolean wroteStartTime;
 
 	/**
 	 * Date formatter for day of week + user's medium date format + hh:mm:ss;
-	 * used in {@link #updateStartTimeCommentLapsView(boolean)} for "started at:".
+	 * used in {@link #updateStartTimeCommentLapsView()} for "started at:".
 	 */
 	private StringBuffer fmt_dow_meddate_time;
 
@@ -127,13 +127,11 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 
 	Clock clock;
 
-	/** Lap data for {@link #lapView}. */
-	StringBuilder laps;
 	/**
 	 * Optional comment, or null.
-	 * In the layout, Start time, <tt>comment</tt>, and {@link #laps}
-	 * are all shown in startTimeView or LapView.
-	 * @see #updateStartTimeCommentLapsView(boolean)
+	 * In the layout, Start time and <tt>comment</tt>
+	 * are shown in startTimeView or LapView.
+	 * @see #updateStartTimeCommentLapsView()
 	 */
 	String comment;
 	/** start/stop (resume/pause). This button is used in both layouts (Stopwatch and Countdown). */
@@ -148,16 +146,21 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 	TextView minView;
 	/**
 	 * The hours field and its label, shown or hidden in
-	 * {@link #updateHourVisibility() and {@link Clock.hourhandler} as needed.
+	 * {@link #updateHourVisibility() and {@link Clock.RenderHandler} as needed.
 	 */
 	TextView hourView, hourLabelView;
 
 	/** shows start time and {@link #comment} in the countdown layout, which doesn't contain {@link #lapView} */
 	TextView startTimeView;
-	/** shows start time, {@link #comment}, and {@link #laps}. When <tt>lapView</tt> is non-null, {@link #startTimeView} is null */
+	/**
+	 * shows start time, {@link #comment}, and the "Laps:" heading, as the header row of {@link #lapList}.
+	 * When <tt>lapView</tt> is non-null, {@link #startTimeView} is null
+	 */
 	TextView lapView;
-	/** scrollview containing {@link #lapView} */
-	ScrollView lapScroll;
+	/** list of laps in the stopwatch layout, below its header {@link #lapView}; null in the countdown layout */
+	ListView lapList;
+	/** adapter for {@link #lapList}, reading from {@link Clock#lapStore}; null in the countdown layout */
+	LapListAdapter lapAdapter;
 
 	/** {@link #COUNTDOWN} spinner to select starting seconds */
 	Spinner secSpinner;
@@ -200,6 +203,19 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 	 */
 	AnstopDbAdapter dbHelper;
 
+	/**
+	 * Writes each new lap into temporary lap storage off the UI thread, or null; see {@link #getLapWriter()}.
+	 * Closed in {@link #onPause()}, which writes any laps still queued.
+	 */
+	private LapWriter lapWriter;
+
+	/**
+	 * Preference key for laps which {@link #lapWriter} couldn't write to the database
+	 * when closed in {@link #onPause()}, as <tt>elapsed,systime;elapsed,systime;...</tt>.
+	 * Queued again by {@link #restoreUnwrittenLaps()}.
+	 */
+	private static final String PREF_UNWRITTEN_LAPS = "anstop_state_unwrittenLaps";
+
 	/** Mode Menu's items, for {@link #updateModeMenuFromCurrent()} to indicate current mode. */
 	private MenuItem modeMenu_itemStop;
 	private MenuItem modeMenu_itemCountdown;
@@ -323,8 +339,15 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 			needUpdate = true;
         	}
 
+		final boolean settingHundredths = settings.getBoolean("show_hundredths", false);
+		if (settingHundredths != clock.lapf.hundredths)
+		{
+			clock.setShowHundredths(settingHundredths);
+			needUpdate = true;
+		}
+
 		if (needUpdate)
-			updateStartTimeCommentLapsView(true);
+			updateStartTimeCommentLapsView();
         } catch (Throwable e) { e.printStackTrace(); }
 
         if(!isStartup) return; // app was started before, user changed settings
@@ -385,7 +408,7 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 	 */
 	private void updateHourVisibility()
 	{
-		final boolean hourWantVisible = (clock.hour > 0)
+		final boolean hourWantVisible = (clock.getTime().hour > 0)
 			|| (clock.lapf.hourFormat == Clock.HOUR_FMT_ALWAYS_SHOW);
 		final int hourVis = (hourWantVisible) ? View.VISIBLE : View.INVISIBLE;
 
@@ -431,15 +454,9 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
      */
     public void countdown() {
         comment = null;
-        if ((laps != null) && (laps.length() > 0))
+        if (clock.lapStore.size() > 0)
         {
-        	laps.delete(0, laps.length());
-        	if (dbHelper == null)
-        	{
-        		dbHelper = new AnstopDbAdapter(Anstop.this);
-        		dbHelper.open();
-        	}
-        	dbHelper.deleteTemporaryLaps();
+        	getLapWriter().deleteTemporaryLaps();
         }
 
     	//set the Layout to the countdown layout
@@ -454,7 +471,8 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
         startTimeView = (TextView) findViewById(R.id.countdown_startTimeView);
         setupCommentLongPress(startTimeView);
         lapView = null;
-        lapScroll = null;
+        lapList = null;
+        lapAdapter = null;
         if (startTimeView.length() == 0)
         	wroteStartTime = false;
 
@@ -466,6 +484,8 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
         sepView.setTextSize(VIEW_SIZE - 10);
         
         dsecondsView.setTextSize(VIEW_SIZE);
+        if (clock.lapf.hundredths)
+        	dsecondsView.setText("00");  // layout has "0"
         secondsView.setTextSize(VIEW_SIZE);
         minView.setTextSize(VIEW_SIZE);
         hourView.setTextSize(VIEW_SIZE - 30);
@@ -507,19 +527,10 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
      */
     public void stopwatch() {
         comment = null;
-        if (laps == null)
-        	laps = new StringBuilder();
-        else if (laps.length() > 0)
+        if (clock.lapStore.size() > 0)
         {
-        	laps.delete(0, laps.length());
-        	if (dbHelper == null)
-        	{
-        		dbHelper = new AnstopDbAdapter(Anstop.this);
-        		dbHelper.open();
-        	}
-        	dbHelper.deleteTemporaryLaps();
+        	getLapWriter().deleteTemporaryLaps();
         }
-        laps.append(getResources().getString(R.string.laps));
 
     	//set the Layout to the stopwatch/lap-mode layout
     	setContentView(R.layout.main);
@@ -539,16 +550,24 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
         sepView.setTextSize(VIEW_SIZE - 10);
         
         dsecondsView.setTextSize(VIEW_SIZE);
+        if (clock.lapf.hundredths)
+        	dsecondsView.setText("00");  // layout has "0"
         secondsView.setTextSize(VIEW_SIZE);
         minView.setTextSize(VIEW_SIZE);
         hourView.setTextSize(VIEW_SIZE - 30);
 
         startTimeView = null;
-        lapView = (TextView) findViewById(R.id.lapView);
+        lapView = (TextView) getLayoutInflater().inflate(R.layout.lap_header, null);
         lapView.setTextSize(VIEW_SIZE - 30);
         setupCommentLongPress(lapView);
         wroteStartTime = false;
 
+        // header must be added before setAdapter
+        lapList = (ListView) findViewById(R.id.lapListView);
+        lapList.addHeaderView(lapView, null, false);
+        lapAdapter = new LapListAdapter(this, clock);
+        lapList.setAdapter(lapAdapter);
+
         lapButton = (Button) findViewById(R.id.lapButton);
         lapButton.setOnClickListener(new lapButtonListener());
         
@@ -558,12 +577,11 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
         resetButton = (Button) findViewById(R.id.resetButton);
         resetButton.setOnClickListener(new resetButtonListener());
 
-        lapScroll = (ScrollView) findViewById(R.id.lapScrollView);
-
 	updateHourVisibility();
 
         // inform clock of the new mode
         clock.changeMode(STOP_LAP);
+        lapAdapter.notifyDataSetChanged();
 
         setupGesture();
     }
@@ -739,20 +757,17 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 			newCurrent = STOP_LAP;
 		setCurrentMode(newCurrent);
 		clock.restoreFromSaveState(settings);
-		updateHourVisibility();  // reads clock.hours just set by clock.restoreFromSaveState
-		if (clock.laps > 1)
+		updateHourVisibility();  // reads clock time just set by clock.restoreFromSaveState
+		if (settings.getInt("anstop_state_clockLapCount", 1) > 1)
 		{
-			if (clock.lap_elapsed.length <= clock.laps)
-			{
-				clock.lap_elapsed = new long[clock.laps + 32];
-				clock.lap_systime = new long[clock.laps + 32];
-			}
 			if (dbHelper == null)
 			{
 				dbHelper = new AnstopDbAdapter(Anstop.this);
 				dbHelper.open();
 			}
-			dbHelper.fetchAllLaps(0, clock.lap_elapsed, clock.lap_systime);
+			dbHelper.fetchAllLaps(0, clock.lapStore);
+			if (lapAdapter != null)
+				lapAdapter.notifyDataSetChanged();
 		}
 	}
 
@@ -768,7 +783,12 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 	public void onPause()
 	{
 		super.onPause();
-		addDebugLog("onPause; isFinishing == " + isFinishing());
+		final TickScheduler ts = TickScheduler.getInstance();
+		addDebugLog("onPause; isFinishing == " + isFinishing()
+			+ ", tick wakeups == " + ts.getWakeupCount()
+			+ ", tick listener failures == " + ts.getListenerFailureCount()
+			+ ((ts.getLastListenerFailure() != null) ? (", last: " + ts.getLastListenerFailure()) : "")
+			+ ", " + FormattedRowCache.getInstance(mContext));
 		if (! isFinishing())
 		{
 			clock.onAppPause();
@@ -777,18 +797,113 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 				(PreferenceManager.getDefaultSharedPreferences(mContext));
 		}
 
+		if (lapWriter != null)
+		{
+			addDebugLog("onPause: lap writer queue depth == " + lapWriter.getQueueDepth()
+				+ ", laps written == " + lapWriter.getLapsWritten()
+				+ ", commits == " + lapWriter.getCommitCount()
+				+ ", last, max commit ms == " + lapWriter.getLastCommitMillis()
+				+ ", " + lapWriter.getMaxCommitMillis()
+				+ ", write failures == " + lapWriter.getFailureCount()
+				+ ((lapWriter.getFailureCount() > 0) ? ", last: " + lapWriter.getLastFailure() : ""));
+			if (! lapWriter.close())  // writes any queued laps
+			{
+				final LapStore unwritten = new LapStore();
+				lapWriter.copyQueue(unwritten);
+				saveUnwrittenLaps(unwritten);
+				addDebugLog("onPause: lap writer close failed, kept " + unwritten.size() + " laps in preferences");
+			}
+			lapWriter = null;
+		}
+		addDebugLog("onPause: " + AnstopDbAdapter.getOpenStats());
 		if (dbHelper != null)
 		{
-			dbHelper.close();  // prevent leaks
+			dbHelper.close();
 			dbHelper = null;
 		}
 	}
 
+	/**
+	 * Keep laps which couldn't be written to the database in the preferences,
+	 * after any kept there before, for {@link #restoreUnwrittenLaps()}.
+	 * @param laps  Laps to keep; not empty
+	 */
+	private void saveUnwrittenLaps(final LapStore laps)
+	{
+		final SharedPreferences settings = PreferenceManager.getDefaultSharedPreferences(mContext);
+		final StringBuilder sb = new StringBuilder(settings.getString(PREF_UNWRITTEN_LAPS, ""));
+		for (int i = 0; i < laps.size(); ++i)
+		{
+			if (sb.length() > 0)
+				sb.append(';');
+			sb.append(laps.getElapsed(i)).append(',').append(laps.getSystime(i));
+		}
+		settings.edit().putString(PREF_UNWRITTEN_LAPS, sb.toString()).commit();
+	}
+
+	/**
+	 * If {@link #onPause()} kept laps which couldn't be written to the database,
+	 * queue them to be written again, and add them to {@link Clock#lapStore} unless it has them:
+	 * It does after restoring from a Bundle, not after reading the laps from the database.
+	 */
+	private void restoreUnwrittenLaps()
+	{
+		final SharedPreferences settings = PreferenceManager.getDefaultSharedPreferences(mContext);
+		final String kept = settings.getString(PREF_UNWRITTEN_LAPS, "");
+		if (kept.length() == 0)
+			return;
+		settings.edit().remove(PREF_UNWRITTEN_LAPS).commit();
+
+		final LapStore laps = new LapStore();
+		try
+		{
+			final String[] pairs = kept.split(";");
+			for (int i = 0; i < pairs.length; ++i)
+			{
+				final int comma = pairs[i].indexOf(',');
+				laps.add(Long.parseLong(pairs[i].substring(0, comma)),
+					Long.parseLong(pairs[i].substring(comma + 1)));
+			}
+		} catch (RuntimeException e) {
+			addDebugLog("restoreUnwrittenLaps: can't parse: " + e);
+			return;
+		}
+
+		final LapStore ls = clock.lapStore;
+		final int n = laps.size(), last = ls.size() - 1;
+		final boolean hasThem = (last >= 0)
+			&& (ls.getElapsed(last) == laps.getElapsed(n - 1))
+			&& (ls.getSystime(last) == laps.getSystime(n - 1));
+		final LapWriter w = getLapWriter();
+		for (int i = 0; i < n; ++i)
+		{
+			if (! hasThem)
+				ls.add(laps.getElapsed(i), laps.getSystime(i));
+			w.enqueue(laps.getElapsed(i), laps.getSystime(i));
+		}
+		if ((! hasThem) && (lapAdapter != null))
+			lapAdapter.notifyDataSetChanged();
+		addDebugLog("restoreUnwrittenLaps: queued " + n + " laps again");
+	}
+
+	/**
+	 * Get our {@link LapWriter}, creating it if needed.
+	 * @return  {@link #lapWriter}, not null
+	 */
+	private LapWriter getLapWriter()
+	{
+		if (lapWriter == null)
+			lapWriter = new LapWriter(Anstop.this);
+		return lapWriter;
+	}
+
 	@Override
 	public void onResume()
 	{
 		super.onResume();
-		addDebugLog("onResume; isStarted == " + clock.isStarted + ", wasStarted == " + clock.wasStarted);
+		addDebugLog("onResume; isStarted == " + clock.isStarted + ", wasStarted == " + clock.wasStarted
+			+ ", tick wakeups == " + TickScheduler.getInstance().getWakeupCount());
+		restoreUnwrittenLaps();
 		if (! clock.isStarted)
 			return;
 
@@ -954,12 +1069,16 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
         					dbHelper = new AnstopDbAdapter(Anstop.this);
         					dbHelper.open();
         				}
-        				final long id = dbHelper.createNew
+        				if ((lapWriter != null) && ! lapWriter.flush())  // laps are copied from temp_laps
+        				{
+        					// not all laps are in temp_laps; they're still queued, so the user can try again
+        					Toast.makeText(getApplicationContext(), R.string.save_fail, Toast.LENGTH_LONG).show();
+        					return;
+        				}
+        				dbHelper.createNewFromTemporaryLaps
         					(input.getText().toString().trim(), comment,
         					 clock.getMode(), clock.getStartTimeActual(), clock.getStopTime(),
         					 clock.getCurrentValueMillis(null, false));
-		    			if (clock.laps > 1)
-		    				dbHelper.createNewLaps(id, clock.laps - 1, clock.lap_elapsed, clock.lap_systime);
 
 		    			Toast toast = Toast.makeText(getApplicationContext(), R.string.saved_succes, Toast.LENGTH_SHORT);
 		    			toast.show();
@@ -991,7 +1110,7 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 	    				if (comment.length() == 0)
 	    					comment = null;
 
-	    				updateStartTimeCommentLapsView(false);
+	    				updateStartTimeCommentLapsView();
 
 					// Back up current state with new comments to SharedPreferences
 					clock.fillSaveState
@@ -1116,7 +1235,7 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 
     /**
      * Construct a string with the current mode, time,
-     * {@link #comment}, and {@link #laps} (if applicable).
+     * {@link #comment}, and laps (if applicable).
      */
 	private String createBodyFromCurrent() {
 		// Start time, comment, and laps are all
@@ -1124,10 +1243,10 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 		// The same formatting is used in updateStartTimeCommentLapsView
 		// and AnstopDbAdapter.getRowAndFormat. If you change this, change those to match.
 		// Code is not shared because this method doesn't need to re-read
-		// the laps or reformat them.
+		// the start time or comment.
 
 		final String hoursStr;
-		if ((clock.hour != 0) || (clock.lapf.hourFormat == Clock.HOUR_FMT_ALWAYS_SHOW))
+		if ((clock.getTime().hour != 0) || (clock.lapf.hourFormat == Clock.HOUR_FMT_ALWAYS_SHOW))
 			hoursStr = "\n" + hourView.getText().toString() + " "
 				+ mContext.getResources().getString(R.string.hour);
 		else
@@ -1155,8 +1274,8 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 				+ "\n" + minView.getText().toString() + ":" + secondsView.getText().toString()
 				+ ":" + dsecondsView.getText().toString() + "\n" + mContext.getResources().getString(R.string.start_time)
 				+ spinnerHoursStr + "\n"
-				+ clock.lapf.nf.format(spinnerMin) + ":"
-				+ clock.lapf.nf.format(secSpinner.getSelectedItemPosition()) + ".0"
+				+ DigitFormatter.format2(spinnerMin) + ":"
+				+ DigitFormatter.format2(secSpinner.getSelectedItemPosition()) + ".0"
 				+ "\n" + startTimeView.getText().toString();
 			break;
 
@@ -1167,6 +1286,14 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 				+ "\n" + minView.getText().toString() + ":" + secondsView.getText().toString()
 				+ ":" + dsecondsView.getText().toString()
 				+ "\n" + lapView.getText().toString();
+			if (clock.lapStore.size() > 0)
+			{
+				// lapList formats only its visible rows; format all of them here
+				StringBuilder sb = new StringBuilder(body);
+				sb.append('\n');
+				clock.formatTimeAllLaps(sb);
+				body = sb.toString();
+			}
 			break;
 
 		default:
@@ -1249,23 +1376,22 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 	{
 		if(!clock.isStarted) {
 
-			if (onlyIfZero && 
-				((clock.hour != 0) || (clock.min != 0) || (clock.sec != 0) || (clock.dsec != 0)))
+			if (onlyIfZero && ! clock.getTime().isZero())
 			{
 				return;  // <---  Early return: Not 0:0:0:0 ---
 			}
 
 			//set the Views to the input data
-			dsecondsView.setText("0");
+			dsecondsView.setText((clock.lapf.hundredths) ? "00" : "0");
 			
 			//looking for the selected Item position (is the same as the Item itself)
-			//using the NumberFormat from class clock to format 
+			//using DigitFormatter to format
 			final int s = secSpinner.getSelectedItemPosition(),
 			          m = minSpinner.getSelectedItemPosition(),
 			          h = hourSpinner.getSelectedItemPosition();
 			clock.reset(-1, h, m, s);
-			secondsView.setText(clock.lapf.nf.format(s));
-			minView.setText(clock.lapf.nf.format(m));
+			secondsView.setText(DigitFormatter.format2(s));
+			minView.setText(DigitFormatter.format2(m));
 			hourView.setText(Integer.toString(h));
 	
 			wroteStartTime = false;
@@ -1296,23 +1422,18 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 		if(clock.isStarted)
 			return;
 
-		final boolean anyLaps = (clock.laps > 1);
+		final boolean anyLaps = (clock.lapStore.size() > 0);
 		clock.reset(-1, 0, 0, 0);
 
 		//reset all Views to zero
-		dsecondsView.setText("0");
+		dsecondsView.setText((clock.lapf.hundredths) ? "00" : "0");
 		secondsView.setText("00");
 		minView.setText("00");
 		hourView.setText("0");
-		if((laps != null) && (laps.length() > 0))
-			laps.delete(0, laps.length());
 		if(lapView != null)
 		{
-			final String lapsHeader = getResources().getString(R.string.laps); 
-			if (laps == null)
-				laps = new StringBuilder();
-			laps.append(lapsHeader);
-			lapView.setText(lapsHeader);
+			lapView.setText(R.string.laps);
+			lapAdapter.notifyDataSetChanged();
 		}
 		if(startTimeView != null)
 			startTimeView.setText("");
@@ -1320,12 +1441,7 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 		comment = null;
 		if (anyLaps)
 		{
-			if (dbHelper == null)
-			{
-				dbHelper = new AnstopDbAdapter(Anstop.this);
-				dbHelper.open();
-			}
-			dbHelper.deleteTemporaryLaps();
+			getLapWriter().deleteTemporaryLaps();
 		}
 
 		// Clear any old anstop_in_use flags from previous runs
@@ -1344,8 +1460,9 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 
 	/**
 	 * Format and write the start time, {@link #comment},
-	 * and {@link #laps} (if applicable) displayed
-	 * in {@link #startTimeView} or {@link #lapView}.
+	 * and laps heading (if applicable) displayed
+	 * in {@link #startTimeView} or {@link #lapView},
+	 * and refresh the visible rows of {@link #lapList}.
 	 * Sets {@link #wroteStartTime} flag.
 	 *<P>
 	 * The same formatting is used in {@link AnstopDbAdapter#getRowAndFormat(long)}.
@@ -1353,11 +1470,13 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 	 *<P>
 	 * {@link #createBodyFromCurrent()} also uses the same format;
 	 * code is not shared because that method doesn't need to re-read
-	 * the laps or reformat them.
-	 *
-	 * @param formatChanged  True if the hour counter format or lap format flags have changed
+	 * the start time or comment.
+	 *<P>
+	 * Lap rows are formatted by {@link LapListAdapter} only when shown,
+	 * so after the hour counter format or lap format flags change,
+	 * calling this method is enough to reformat them.
 	 */
-	void updateStartTimeCommentLapsView(final boolean formatChanged) {
+	void updateStartTimeCommentLapsView() {
 		if (fmt_dow_meddate_time == null)
 			fmt_dow_meddate_time = buildDateFormat(Anstop.this, false);
 
@@ -1382,15 +1501,11 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 
 		if (lapView != null)
 		{
-			if (formatChanged)
-			{
-				laps.delete(0, laps.length());  // clear previous contents
-				clock.formatTimeAllLaps(laps);
-			}
 			if (sb.length() > 0)
 				sb.append("\n\n");
-			sb.append(laps);
+			sb.append(getResources().getText(R.string.laps));
 			lapView.setText(sb);
+			lapAdapter.notifyDataSetChanged();
 		}
 		else if (startTimeView != null)
 		{
@@ -1414,7 +1529,7 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
     		// If starting to count in countdown mode, but the clock has 0:0:0,
     		// nothing will happen.  Let the user know.
     		if ((currentMode == COUNTDOWN) && (! clock.isStarted) &&     		
-				(clock.hour == 0) && (clock.min == 0) && (clock.sec == 0) && (clock.dsec == 0))
+				clock.getTime().isZero())
     		{
     			final int resId;
     			if (clock.wasStarted)
@@ -1440,7 +1555,7 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
 		if (clock.isStarted)
 		{
 			if (! wroteStartTime)
-				updateStartTimeCommentLapsView(false);
+				updateStartTimeCommentLapsView();
 		}
 
 		// Back up current state to SharedPreferences
@@ -1510,53 +1625,29 @@ public class Anstop extends Activity implements OnGesturePerformedListener {
     
     private class lapButtonListener implements OnClickListener {
 
-    	/** lap time for {@link #onClick()}; is empty between uses */
-    	private StringBuilder sb = new StringBuilder();
-
     	/**
-    	 * Lap button clicked; get clock time from
-    	 * {@link Clock#lap(StringBuffer)},
-    	 * append it to {@link #laps} and {@link #lapView}.
+    	 * Lap button clicked; take a lap with {@link Clock#lap(StringBuilder)},
+    	 * and show it at the bottom of {@link #lapList}.
     	 */
     	public void onClick(View v) {
 		final boolean wasStarted = clock.wasStarted;  // get value before clock.lap()
 
-    		sb.append("\n");
-    		clock.lap(sb);  // format: "lap. #h mm:ss:d"
+    		final int lapnum = clock.lap(null);
 
 		if (! (wasStarted || wroteStartTime || clock.isStarted))
-		{
-			if (laps == null)
-				laps = new StringBuilder();
-			if (laps.length() == 0)
-				laps.append(getResources().getString(R.string.laps));
-
-			updateStartTimeCommentLapsView(false);
-		}
-        	laps.append(sb);
-        	lapView.append(sb);
+			updateStartTimeCommentLapsView();
+		else
+			lapAdapter.notifyDataSetChanged();
 
         	if(vib != null)
         		vib.vibrate(50);
 
-        	// clear sb for the next onClick
-        	sb.delete(0, sb.length());
-
-        	// Scroll to bottom of lap times
-        	lapScroll.post(new Runnable() {
-        	    public void run() {
-        	    	lapScroll.fullScroll(ScrollView.FOCUS_DOWN);
-        	    }
-        	});
+        	// Scroll to bottom of lap times; the header is position 0
+        	lapList.setSelection(lapList.getCount() - 1);
 
-        	// Record new lap in the db
-        	if (dbHelper == null)
-        	{
-        		dbHelper = new AnstopDbAdapter(Anstop.this);
-        		dbHelper.open();
-        	}
-        	dbHelper.createNewLap
-        		(0, clock.lap_elapsed[clock.laps - 2], clock.lap_systime[clock.laps - 2]);
+        	// Queue new lap to be written to the db
+        	getLapWriter().enqueue
+        		(clock.lapStore.getElapsed(lapnum - 1), clock.lapStore.getSystime(lapnum - 1));
 
 		// Back up current state with new lap to SharedPreferences
 		clock.fillSaveState
@@ -22,14 +22,17 @@
 
 package An.stop;
 
+import java.util.Locale;
+
 import android.content.ContentValues;
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
-import android.preference.PreferenceManager;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+import android.os.SystemClock;
 import android.text.format.DateFormat;
 
 
@@ -45,9 +48,16 @@ public class AnstopDbAdapter {
 	 *            {@link #FIELD_TIMES_STOP_SYSTIME}.
 	 * <LI> 4 - (2012-07-17) Add {@link #DATABASE_TABLE} field {@link #FIELD_TIMES_ELAPSED};
 	 *            add table {@link #TABLE_TEMP_LAPS}.
+	 * <LI> 5 - (2026-10-18) Replace table <tt>laps</tt>, one row per lap, with {@link #TABLE_LAPS},
+	 *            usually one row per {@link #DATABASE_TABLE} row with its laps packed by {@link LapCodec}.
+	 * <LI> 6 - (2026-10-18) Add full-text search table {@link #TABLE_TIMES_FTS}.
+	 * <LI> 7 - (2026-10-18) Add table {@link #TABLE_LAP_SUMMARY}.
+	 * <LI> 8 - (2026-10-18) Add index <tt>times_dedupe</tt>, for {@link #importBatch(TimesImporter.ImportedTime[], int)}.
+	 * <LI> 9 - (2026-10-18) Add {@link #DATABASE_TABLE} field {@link #FIELD_TIMES_MODSEQ};
+	 *            add tables {@link #TABLE_TOMBSTONES} and {@link #TABLE_SYNC_STATE}.
 	 * </UL>
 	 */
-	private static final int DATABASE_VERSION = 4;
+	private static final int DATABASE_VERSION = 9;
 
     // Reminder: Keep table names and field names here synchronized with onCreate and onUpgrade.
 
@@ -55,21 +65,71 @@ public class AnstopDbAdapter {
 
     /**
      * Main times table, one row per saved stopwatch time.
-     * If the saved time has laps, they will be rows in {@link #TABLE_LAPS}
+     * If the saved time has laps, they will be in a {@link #TABLE_LAPS} row
      * associated with one row in this table.
      */
     private static final String DATABASE_TABLE = "times";
 
     /**
-     * Laps table, for lap information for one {@link #DATABASE_TABLE} row.
-     * Same fields as {@link #TABLE_TEMP_LAPS}, plus {@link #FIELD_LAPS_TIMES_ROWID}.
-     * @since v3
+     * Lap data table: All laps of one {@link #DATABASE_TABLE} row, packed into
+     * one {@link #FIELD_LAPDATA_LAPS} blob, so a saved time's laps are read with
+     * one row lookup.  A session with more than {@link LapCodec#MAX_LAPS} laps is split
+     * over several rows, numbered by {@link #FIELD_LAPDATA_SEQ} from 0, so no one row
+     * is too large for a cursor window.  Fields are {@link #FIELD_LAPS_TIMES_ROWID} and
+     * {@link #FIELD_LAPDATA_SEQ} (together the primary key), {@link #FIELD_LAPDATA_COUNT}
+     * and {@link #FIELD_LAPDATA_LAPS}.
+     *<P>
+     * Before v5, the laps were in table <tt>laps</tt>, one row per lap,
+     * with the same fields as {@link #TABLE_TEMP_LAPS} plus {@link #FIELD_LAPS_TIMES_ROWID}.
+     * @since v5
+     */
+    private static final String TABLE_LAPS = "lap_data";
+
+    /**
+     * Lap summary table: One row per {@link #DATABASE_TABLE} row that has laps, with
+     * that session's {@link LapSummary} statistics, so they can be shown without reading
+     * the laps.  Written with the laps by {@link #createNewFromTemporaryLaps(String, String, int, long, long, long)}
+     * and {@link #importBatch(TimesImporter.ImportedTime[], int)},
+     * deleted by {@link #delete(long)}; read by {@link #fetchLapSummary(long)}.
+     * Fields are {@link #FIELD_LAPS_TIMES_ROWID} (the primary key), {@link #FIELD_LAPDATA_COUNT},
+     * and <tt>total_elapsed, fastest, slowest, mean</tt> in milliseconds.
+     * @since v7
+     */
+    private static final String TABLE_LAP_SUMMARY = "lap_summary";
+
+    /**
+     * Full-text search index (FTS3 virtual table) of {@link #DATABASE_TABLE}'s
+     * {@link #KEY_TITLE} and {@link #KEY_BODY}.  Each row's <tt>docid</tt> is the
+     * {@link #DATABASE_TABLE} row's {@link #KEY_ROWID}.  Kept in sync by
+     * {@link #createNew(String, String, int, long, long, long)} and {@link #delete(long)};
+     * searched by {@link #searchPage(String, long, int)}.
+     * @since v6
+     */
+    private static final String TABLE_TIMES_FTS = "times_fts";
+
+    /**
+     * Deleted times, for incremental export: One row per deleted {@link #DATABASE_TABLE} row,
+     * with fields {@link #FIELD_LAPS_TIMES_ROWID} (the primary key), {@link #FIELD_TIMES_MODSEQ}
+     * of the delete, and the time's {@link #KEY_TITLE}, {@link #FIELD_TIMES_START_SYSTIME}
+     * and {@link #FIELD_TIMES_ELAPSED}, so another device can find its copy of the time
+     * with {@link #findTimes(TimesImporter.ImportedTime[], int)}.  Written by {@link #delete(long[])}, read by {@link #fetchDeletedPage(long, long, long, int)};
+     * rows older than the export checkpoint are removed by {@link #setExportCheckpoint(long)}.
+     * @since v9
      */
-    private static final String TABLE_LAPS = "laps";
+    private static final String TABLE_TOMBSTONES = "tombstones";
 
     /**
-     * temp_laps table, for lap information for the currently running timer.
-     * Same fields as {@link #TABLE_LAPS}, omitting {@link #FIELD_LAPS_TIMES_ROWID}.
+     * Change-tracking counters, as rows of <tt>name, value</tt>:
+     * <tt>modseq</tt>, the last modification sequence number given out by {@link #nextModSeq()},
+     * and <tt>export_checkpoint</tt>, the modification sequence number of the last incremental export.
+     * @since v9
+     */
+    private static final String TABLE_SYNC_STATE = "sync_state";
+
+    /**
+     * temp_laps table, for lap information for the currently running timer, one row per lap
+     * so that each new lap is a cheap append.
+     * Fields are {@link #FIELD_LAPS_ELAPSED}, {@link #FIELD_LAPS_SYSTIME}, {@link #FIELD_LAPS_COMMENT}.
      * @since v4
      */
     private static final String TABLE_TEMP_LAPS = "temp_laps";
@@ -117,35 +177,99 @@ public class AnstopDbAdapter {
     public static final String FIELD_TIMES_ELAPSED = "elapsed";
 
     /**
-     * The {@link #DATABASE_TABLE} row id that a lap in {@link #TABLE_LAPS} belongs to.
+     * Modification sequence number: Set from {@link #nextModSeq()} when the time is saved
+     * or its laps are rewritten, so {@link #fetchChangedPage(long, long, long, int)} can find
+     * the times changed since an incremental export.  Times saved before v9 have 1.
+     * @since v9
+     */
+    private static final String FIELD_TIMES_MODSEQ = "modseq";
+
+    /**
+     * The {@link #DATABASE_TABLE} row id that the laps in {@link #TABLE_LAPS} belong to.
      * @since v3
      */
     private static final String FIELD_LAPS_TIMES_ROWID = "times_id";
 
+    /**
+     * Sequence number of a {@link #TABLE_LAPS} row within its time's laps, from 0.
+     * @since v5
+     */
+    private static final String FIELD_LAPDATA_SEQ = "seq";
+
+    /**
+     * Number of laps in {@link #TABLE_LAPS}'s {@link #FIELD_LAPDATA_LAPS}.
+     * @since v5
+     */
+    private static final String FIELD_LAPDATA_COUNT = "lap_count";
+
+    /**
+     * All laps' elapsed and system times, or up to {@link LapCodec#MAX_LAPS} of them,
+     * packed by {@link LapCodec#encode(LapStore, int, int)}.
+     * @since v5
+     */
+    private static final String FIELD_LAPDATA_LAPS = "laps";
+
+    /** Maximum number of IDs per <tt>in (...)</tt> list in {@link #delete(long[])}. */
+    private static final int DELETE_BATCH_SIZE = 500;
+
+    /** Minimum free pages before {@link #reclaimSpaceIfNeeded()} will vacuum. */
+    private static final int VACUUM_MIN_FREE_PAGES = 64;
+
+    /**
+     * While streaming laps in {@link #writeRowAndFormat(long, ChannelTextWriter)},
+     * write the rendered text out whenever it reaches this many chars.
+     */
+    private static final int STREAM_FLUSH_CHARS = 8192;
+
+    /** Page size for reading {@link #TABLE_TEMP_LAPS} in {@link #fetchAllLaps(long, LapVisitor)}. */
+    private static final int LAP_PAGE_SIZE = 1000;
+
     /**
      * Lap's elapsed time, milliseconds for h:mm:ss:d, same format as
      * {@link Clock#getCurrentValueMillis(StringBuilder, boolean)}
-     * or {@link Clock#lap_elapsed}.
+     * or {@link LapStore#getElapsed(int)}.
      * @since v3
      */
     private static final String FIELD_LAPS_ELAPSED = "lap_elapsed";
 
     /**
-     * Lap's time of day; {@link System#currentTimeMillis()} or {@link Clock#lap_systime}.
+     * Lap's time of day; {@link System#currentTimeMillis()} or {@link LapStore#getSystime(int)}.
      * @since v3
      */
     private static final String FIELD_LAPS_SYSTIME = "lap_systime";
 
     /**
-     * Optional lap comment.
+     * Optional lap comment, in {@link #TABLE_TEMP_LAPS}.  Not currently used.
      * @since v3
      */
     private static final String FIELD_LAPS_COMMENT = "lap_comment";
 
     private SQLiteDatabase mDb;
-    private DataBaseHelper dbHelper;
     private Context mContext;
 
+    /** Cached result of {@link #isElapsedNullable()}: 0 if not yet checked, 1 if nullable, -1 if not */
+    private int elapsedNullable;
+
+    /**
+     * The process-wide database handle, opened by the first {@link #open()} and kept open
+     * for the life of the process; every adapter shares it.  Access only while synchronized
+     * on <tt>AnstopDbAdapter.class</tt>.  SQLiteDatabase does its own locking,
+     * so the handle itself can be used from any thread.
+     * @see #sHelper
+     */
+    private static SQLiteDatabase sDb;
+
+    /** Helper which opened {@link #sDb}; synchronize like <tt>sDb</tt>. */
+    private static DataBaseHelper sHelper;
+
+    /**
+     * Statistics for {@link #getOpenStats()}: Number of calls to {@link #open()},
+     * number of times it actually opened the database (0 or 1 unless there was an error),
+     * and how long that open took in milliseconds.  Synchronize like {@link #sDb}.
+     */
+    private static int sAdapterOpens, sDbOpens;
+    private static long sDbOpenMillis;
+
     /**
      * Date formatter for day of week + user's medium date format + hh:mm:ss;
      * used in {@link #getRowAndFormat(long)} for "started at:".
@@ -164,14 +288,13 @@ public class AnstopDbAdapter {
             db.execSQL("create table times (_id integer primary key autoincrement, "
                     + "title text not null, body text not null, "
                     + "mode int not null, start_systime int null, stop_systime int null, "
-            		+ "elapsed int not null);" );
-
-            // Use the same fields for laps and temp_laps, except times_id.
+            		+ "elapsed int not null, modseq int not null default 0);" );
 
-            db.execSQL("create table laps (_id integer primary key autoincrement, "
-            		+ "times_id int not null, lap_elapsed int not null, "
-            		+ "lap_systime int not null, lap_comment text null);" );
-            db.execSQL("create index \"laps~t\" ON laps(times_id);" );
+            db.execSQL(CREATE_TABLE_LAP_DATA);
+            db.execSQL(CREATE_TABLE_TIMES_FTS);
+            db.execSQL(CREATE_TABLE_LAP_SUMMARY);
+            db.execSQL(CREATE_INDEX_TIMES_DEDUPE);
+            createChangeTracking(db, 0);
 
             db.execSQL("create table temp_laps (_id integer primary key autoincrement, "
             		+ "lap_elapsed int not null, "
@@ -203,32 +326,248 @@ public class AnstopDbAdapter {
                 		+ "lap_elapsed int not null, "
                 		+ "lap_systime int not null, lap_comment text null);" );
                 db.execSQL("alter table times add column elapsed int;");
+                // fall through
+
+        	case 4:  // 4 -> 5
+        		db.execSQL(CREATE_TABLE_LAP_DATA);
+        		migrateLapsToLapData(db);
+        		db.execSQL("drop index if exists \"laps~t\";");
+        		db.execSQL("drop table laps;");
+        		// fall through
+
+        	case 5:  // 5 -> 6
+        		db.execSQL(CREATE_TABLE_TIMES_FTS);
+        		db.execSQL("insert into times_fts (docid, title, body) select _id, title, body from times;");
+        		// fall through
+
+        	case 6:  // 6 -> 7
+        		db.execSQL(CREATE_TABLE_LAP_SUMMARY);
+        		summarizeLapData(db);
+        		// fall through
+
+        	case 7:  // 7 -> 8
+        		db.execSQL(CREATE_INDEX_TIMES_DEDUPE);
+        		// fall through
+
+        	case 8:  // 8 -> 9
+        		db.execSQL("alter table times add column modseq int not null default 0;");
+        		db.execSQL("update times set modseq = 1;");  // not yet exported
+        		createChangeTracking(db, 1);
+        	}
+        }
+
+        /**
+         * Create the v9 change-tracking index and tables, and set the counters.
+         * @param db  Database being created or upgraded; {@link #DATABASE_TABLE} has {@link #FIELD_TIMES_MODSEQ}
+         * @param modseq  Initial <tt>modseq</tt> counter: 0 for a new database, 1 when upgrading
+         */
+        private static void createChangeTracking(SQLiteDatabase db, final int modseq)
+        {
+        	db.execSQL("create index times_modseq on times(modseq);");
+        	db.execSQL("create table tombstones (times_id integer primary key, modseq int not null,"
+        		+ " title text, start_systime int, elapsed int);");
+        	db.execSQL("create index tombstones_modseq on tombstones(modseq);");
+        	db.execSQL("create table sync_state (name text primary key, value int not null);");
+        	db.execSQL("insert into sync_state (name, value) values ('modseq', " + modseq + ");");
+        	db.execSQL("insert into sync_state (name, value) values ('export_checkpoint', 0);");
+        }
+
+        /**
+         * For the v7 upgrade, write a {@link #TABLE_LAP_SUMMARY} row for each {@link #TABLE_LAPS} row.
+         * @param db  Database being upgraded; {@link #TABLE_LAP_SUMMARY} has been created
+         */
+        private static void summarizeLapData(SQLiteDatabase db)
+        {
+        	Cursor c = db.rawQuery("select times_id, laps from lap_data order by times_id, seq;", null);
+        	if (c == null)
+        		return;
+
+        	final LapStore laps = new LapStore();
+        	long times_id = 0;
+        	while (c.moveToNext())
+        	{
+        		final long tid = c.getLong(0);
+        		if ((tid != times_id) && (laps.size() > 0))
+        		{
+        			writeLapSummary(db, times_id, laps);
+        			laps.clear();
+        		}
+        		times_id = tid;
+        		try {
+        			LapCodec.decode(c.getBlob(1), laps);
+        		} catch (IllegalArgumentException e) { }
         	}
+        	c.close();
+        	if (laps.size() > 0)
+        		writeLapSummary(db, times_id, laps);
+        }
+
+        /**
+         * For the v5 upgrade, pack each time's laps from the old one-row-per-lap <tt>laps</tt> table
+         * into one {@link #TABLE_LAPS} row.  Reads the old table once, in order.
+         * Lap comments aren't copied; Anstop never set them.
+         * @param db  Database being upgraded; <tt>laps</tt> table still exists
+         */
+        private static void migrateLapsToLapData(SQLiteDatabase db)
+        {
+        	Cursor c = db.rawQuery
+        		("select times_id, lap_elapsed, lap_systime from laps order by times_id, _id;", null);
+        	if (c == null)
+        		return;
+
+        	final LapStore laps = new LapStore();
+        	long times_id = 0;
+        	while (c.moveToNext())
+        	{
+        		final long tid = c.getLong(0);
+        		if ((tid != times_id) && (laps.size() > 0))
+        		{
+        			writeLapData(db, times_id, laps);
+        			laps.clear();
+        		}
+        		times_id = tid;
+        		laps.add(c.getLong(1), c.getLong(2));
+        	}
+        	c.close();
+        	if (laps.size() > 0)
+        		writeLapData(db, times_id, laps);
         }
     }
+
+    /** SQL to create {@link #TABLE_LAPS}; used in onCreate and onUpgrade. */
+    private static final String CREATE_TABLE_LAP_DATA =
+    	"create table lap_data (times_id integer not null, seq int not null, "
+    	+ "lap_count int not null, laps blob not null, primary key (times_id, seq));";
+
+    /** SQL to create {@link #TABLE_TIMES_FTS}; used in onCreate and onUpgrade. */
+    private static final String CREATE_TABLE_TIMES_FTS =
+    	"create virtual table times_fts using fts3(title, body);";
+
+    /** SQL to create {@link #TABLE_LAP_SUMMARY}; used in onCreate and onUpgrade. */
+    private static final String CREATE_TABLE_LAP_SUMMARY =
+    	"create table lap_summary (times_id integer primary key, lap_count int not null, "
+    	+ "total_elapsed int not null, fastest int not null, slowest int not null, mean int not null);";
+
+    /**
+     * SQL to create the index which {@link #importBatch(TimesImporter.ImportedTime[], int)} uses to find
+     * times already saved; used in onCreate and onUpgrade.
+     */
+    private static final String CREATE_INDEX_TIMES_DEDUPE =
+    	"create index times_dedupe on times(title, start_systime, elapsed);";
+
+    /** Flag for {@link #compileDedupeQueries(String)}'s variants: Start time is NULL. */
+    private static final int DEDUPE_START_NULL = 1;
+
+    /** Flag for {@link #compileDedupeQueries(String)}'s variants: Elapsed time is NULL. */
+    private static final int DEDUPE_ELAPSED_NULL = 2;
+
+    /**
+     * Write or replace one time's {@link #TABLE_LAP_SUMMARY} row.
+     * @param db  Database to write to
+     * @param times_id  Row ID in {@link #DATABASE_TABLE}
+     * @param laps  Laps to summarize
+     */
+    private static void writeLapSummary(SQLiteDatabase db, final long times_id, final LapStore laps)
+    {
+    	final LapSummary sum = LapSummary.of(laps);
+    	ContentValues cl = new ContentValues();
+    	cl.put(FIELD_LAPS_TIMES_ROWID, times_id);
+    	cl.put(FIELD_LAPDATA_COUNT, sum.count);
+    	cl.put("total_elapsed", sum.totalElapsed);
+    	cl.put("fastest", sum.fastest);
+    	cl.put("slowest", sum.slowest);
+    	cl.put("mean", sum.mean);
+    	db.replace(TABLE_LAP_SUMMARY, null, cl);
+    }
+
+    /**
+     * Write or replace one time's {@link #TABLE_LAPS} rows: One row per {@link LapCodec#MAX_LAPS} laps.
+     * Call within a transaction.
+     * @param db  Database to write to
+     * @param times_id  Row ID in {@link #DATABASE_TABLE}
+     * @param laps  Laps to pack and write
+     */
+    private static void writeLapData(SQLiteDatabase db, final long times_id, final LapStore laps)
+    {
+    	db.delete(TABLE_LAPS, FIELD_LAPS_TIMES_ROWID + "=" + times_id, null);
+
+    	final int n = laps.size();
+    	ContentValues cl = new ContentValues();
+    	cl.put(FIELD_LAPS_TIMES_ROWID, times_id);
+    	for (int start = 0, seq = 0; start < n; start += LapCodec.MAX_LAPS, ++seq)
+    	{
+    		final int end = Math.min(n, start + LapCodec.MAX_LAPS);
+    		cl.put(FIELD_LAPDATA_SEQ, seq);
+    		cl.put(FIELD_LAPDATA_COUNT, end - start);
+    		cl.put(FIELD_LAPDATA_LAPS, LapCodec.encode(laps, start, end));
+    		db.insert(TABLE_LAPS, null, cl);
+    	}
+    }
     
     /** Don't forget to call {@link #open()} before use, and {@link #close()} when done. */
     AnstopDbAdapter(Context context) {
     	this.mContext = context;
     }
-    
+
+    /**
+     * Get this adapter ready to use.  Cheap after the first call in the process:
+     * All adapters share one long-lived database handle, which only the first call opens.
+     * On API 11 and newer that handle uses write-ahead logging, so readers
+     * (such as the saved-times list or an export) don't wait for a {@link LapWriter} commit.
+     * @return this adapter
+     * @throws SQLException if the database can't be opened
+     */
     public AnstopDbAdapter open() throws SQLException {
-    		dbHelper = new DataBaseHelper(mContext);
-        	mDb = dbHelper.getWritableDatabase();
-        	return this;
-        }
-    
+    	synchronized (AnstopDbAdapter.class)
+    	{
+    		++sAdapterOpens;
+    		if ((sDb == null) || ! sDb.isOpen())
+    		{
+    			final long t0 = SystemClock.elapsedRealtime();
+    			if (sHelper == null)
+    				sHelper = new DataBaseHelper(mContext.getApplicationContext());
+    			SQLiteDatabase db = sHelper.getWritableDatabase();
+    			if (Build.VERSION.SDK_INT >= 11)
+    				db.enableWriteAheadLogging();
+    			sDb = db;
+    			++sDbOpens;
+    			sDbOpenMillis = SystemClock.elapsedRealtime() - t0;
+    		}
+    		mDb = sDb;
+    	}
+    	return this;
+    }
+
+    /**
+     * Done using this adapter.  The shared database handle stays open for other adapters
+     * and later {@link #open()} calls; it's closed when the process ends.
+     */
     public void close() {
-    		dbHelper.close();
+    	mDb = null;
+    }
+
+    /**
+     * Get the shared database handle's statistics, for the debug log.
+     * @return  Text with the number of {@link #open()} calls, the number of times the database
+     *     was actually opened, and how long that took
+     */
+    public static String getOpenStats() {
+    	synchronized (AnstopDbAdapter.class)
+    	{
+    		return "db adapter opens == " + sAdapterOpens + ", db opens == " + sDbOpens
+    			+ ", db open ms == " + sDbOpenMillis;
     	}
+    }
     
     //
     // Methods for #DATABASE_TABLE
     //
 
     /**
-     * Insert a new {@link #DATABASE_TABLE} record with the stopwatch current values.
-     * If there are laps, add them afterwards by calling {@link #createNewLaps(long, int, long[], long[])}.
+     * Insert a new {@link #DATABASE_TABLE} record with the stopwatch current values,
+     * and index its title and comment in {@link #TABLE_TIMES_FTS}, in one transaction.
+     * Its {@link #FIELD_TIMES_MODSEQ} is set from {@link #nextModSeq()}.
+     * To save the current timing with its laps, use {@link #createNewFromTemporaryLaps(String, String, int, long, long, long)}.
      * @param title  Title
      * @param comment   Comment, or null. In v2 this body text also included the start time and laps.
      * @param mode   Stopwatch mode used: {@link Anstop#STOP_LAP} or {@link Anstop#COUNTDOWN}
@@ -236,43 +575,367 @@ public class AnstopDbAdapter {
      *    This same convention is returned by {@link Clock#getStartTimeActual()}.
      * @param stopTime   Stop time (milliseconds), or -1L for none
      * @param elapsed  Current elapsed time (counting up or down),
-     *    from {@link Clock#getCurrentValueMillis(StringBuilder, boolean)}
+     *    from {@link Clock#getCurrentValueMillis(StringBuilder, boolean)}.
+     *    -1L if not known, such as a time imported from a v3 record: Stored as NULL
+     *    if the database allows that (upgraded from v3), otherwise as 0; see {@link #putUnknownElapsed(ContentValues)}.
      * @return  the new rowID, from {@link SQLiteDatabase#insert(String, String, ContentValues)}.
      */
     public long createNew
     	(final String title, final String comment,
 		 final int mode, final long startTime, final long stopTime, final long elapsed)
     {
+    	final String body = ((comment != null) && (comment.length() > 0)) ? comment : "";
     	ContentValues cl = new ContentValues();
     	cl.put(KEY_TITLE, title);
-    	if ((comment != null) && (comment.length() > 0))
-    		cl.put(KEY_BODY, comment);
-    	else
-    		cl.put(KEY_BODY, "");
+    	cl.put(KEY_BODY, body);
     	cl.put(FIELD_TIMES_MODE, mode);
     	if (startTime != -1L)
     		cl.put(FIELD_TIMES_START_SYSTIME, startTime);
     	if (stopTime != -1L)
     		cl.put(FIELD_TIMES_STOP_SYSTIME, stopTime);
-    	cl.put(FIELD_TIMES_ELAPSED, elapsed);
+    	if (elapsed != -1L)
+    		cl.put(FIELD_TIMES_ELAPSED, elapsed);
+    	else
+    		putUnknownElapsed(cl);
 
-    	return mDb.insert(DATABASE_TABLE, null, cl);
+    	long id;
+    	mDb.beginTransaction();
+    	try
+    	{
+    		cl.put(FIELD_TIMES_MODSEQ, nextModSeq());
+    		id = mDb.insert(DATABASE_TABLE, null, cl);
+    		if (id != -1)
+    		{
+    			ContentValues fts = new ContentValues();
+    			fts.put("docid", id);
+    			fts.put(KEY_TITLE, title);
+    			fts.put(KEY_BODY, body);
+    			if (mDb.insert(TABLE_TIMES_FTS, null, fts) == -1)
+    				id = -1;
+    		}
+    		if (id != -1)
+    			mDb.setTransactionSuccessful();
+    	} finally {
+    		mDb.endTransaction();
+    	}
+
+    	return id;
+    }
+
+    /**
+     * Save the current timing: Insert a new {@link #DATABASE_TABLE} record with the stopwatch current values,
+     * and copy its laps from temporary lap storage ({@link #TABLE_TEMP_LAPS}) into {@link #TABLE_LAPS},
+     * all in one transaction.  The laps are read from the database, not from {@link Clock#lapStore},
+     * and packed by {@link LapCodec}.  Temporary lap storage isn't changed.
+     *<P>
+     * SQL can't build the packed blobs, so unlike a set-based <tt>insert ... select</tt>
+     * from {@link #TABLE_TEMP_LAPS} (which the one-row-per-lap <tt>laps</tt> table allowed before v5),
+     * the laps are read into memory in pages of {@link #LAP_PAGE_SIZE}, encoded, and written back.
+     *<P>
+     * If laps may still be queued in a {@link LapWriter}, call its {@link LapWriter#flush()} first.
+     * Parameters are the same as {@link #createNew(String, String, int, long, long, long)}.
+     * @return  the new rowID, or -1 if an error occurred; if so, nothing was saved
+     */
+    public long createNewFromTemporaryLaps
+    	(final String title, final String comment,
+		 final int mode, final long startTime, final long stopTime, final long elapsed)
+    {
+    	long id = -1;
+    	mDb.beginTransaction();
+    	try
+    	{
+    		id = createNew(title, comment, mode, startTime, stopTime, elapsed);
+    		if (id == -1)
+    			return -1;  // <--- Early return: insert failed; endTransaction will roll back ---
+
+    		final LapStore laps = new LapStore();
+    		if (fetchAllLaps(0, laps) > 0)
+    		{
+    			writeLapData(mDb, id, laps);
+    			writeLapSummary(mDb, id, laps);
+    		}
+    		mDb.setTransactionSuccessful();
+    	} finally {
+    		mDb.endTransaction();
+    	}
+
+    	return id;
     }
     
+    /**
+     * For {@link #createNew(String, String, int, long, long, long)} with an unknown elapsed time,
+     * put NULL if {@link #FIELD_TIMES_ELAPSED} allows it, otherwise 0.
+     * @param cl  Values being inserted
+     */
+    private void putUnknownElapsed(ContentValues cl) {
+    	if (isElapsedNullable())
+    		cl.putNull(FIELD_TIMES_ELAPSED);
+    	else
+    		cl.put(FIELD_TIMES_ELAPSED, 0L);
+    }
+
+    /**
+     * Can {@link #FIELD_TIMES_ELAPSED} be NULL?  It can in a database upgraded from v3,
+     * where the field was added to existing rows, but not in one created at v4 or later.
+     * Checked once per adapter.
+     * @return  true if NULL is allowed
+     */
+    private boolean isElapsedNullable() {
+    	if (elapsedNullable == 0)
+    	{
+    		elapsedNullable = -1;
+    		Cursor c = mDb.rawQuery("PRAGMA table_info(times);", null);
+    		if (c != null)
+    		{
+    			final int col_name = c.getColumnIndex("name"), col_notnull = c.getColumnIndex("notnull");
+    			while (c.moveToNext())
+    				if (FIELD_TIMES_ELAPSED.equals(c.getString(col_name)))
+    					elapsedNullable = (c.getInt(col_notnull) == 0) ? 1 : -1;
+    			c.close();
+    		}
+    	}
+    	return (elapsedNullable == 1);
+    }
+
+    /**
+     * Insert a batch of times read by a {@link TimesImporter}, with their laps, in one transaction.
+     * Each time is skipped if it's already saved: If a {@link #DATABASE_TABLE} row has the same
+     * title, start time and elapsed time, found with the <tt>times_dedupe</tt> index.
+     * Times earlier in the batch count as already saved.
+     * @param batch  Times to insert
+     * @param n  Number of times to insert from <tt>batch</tt>
+     * @return  The number of times inserted; the rest were already saved
+     * @since 1.6
+     */
+    public int importBatch(final TimesImporter.ImportedTime[] batch, final int n)
+    {
+    	int count = 0;
+    	mDb.beginTransaction();
+    	try
+    	{
+    		final SQLiteStatement[] dup = compileDedupeQueries("select count(*) from times");
+    		try
+    		{
+    			for (int i = 0; i < n; ++i)
+    			{
+    				final TimesImporter.ImportedTime t = batch[i];
+    				if (bindDedupeKey(dup, t).simpleQueryForLong() > 0)
+    					continue;
+
+    				final long id = createNew(t.title, t.comment, t.mode, t.startTime, t.stopTime, t.elapsed);
+    				if (id == -1)
+    					throw new SQLException("insert failed: " + t.title);
+    				if (t.laps.size() > 0)
+    				{
+    					writeLapData(mDb, id, t.laps);
+    					writeLapSummary(mDb, id, t.laps);
+    				}
+    				++count;
+    			}
+    		} finally {
+    			closeAll(dup);
+    		}
+    		mDb.setTransactionSuccessful();
+    	} finally {
+    		mDb.endTransaction();
+    	}
+
+    	return count;
+    }
+
+    /**
+     * Find the saved times with the same title, start time and elapsed time as a batch of
+     * times read from an export, the way {@link #importBatch(TimesImporter.ImportedTime[], int)}
+     * finds duplicates.  Used to apply the deletes listed in an incremental export.
+     * @param batch  Times to find; only their title, start time and elapsed time are used
+     * @param n  Number of times in <tt>batch</tt> to find
+     * @return  The row IDs found, at most one per time; empty if none were found
+     * @since 1.6
+     */
+    public long[] findTimes(final TimesImporter.ImportedTime[] batch, final int n)
+    {
+    	long[] ids = new long[n];
+    	int found = 0;
+    	final SQLiteStatement[] st = compileDedupeQueries("select ifnull(max(_id), -1) from times");
+    	try
+    	{
+    		for (int i = 0; i < n; ++i)
+    		{
+    			final long id = bindDedupeKey(st, batch[i]).simpleQueryForLong();
+    			if (id != -1)
+    				ids[found++] = id;
+    		}
+    	} finally {
+    		closeAll(st);
+    	}
+
+    	if (found < n)
+    	{
+    		final long[] all = ids;
+    		ids = new long[found];
+    		System.arraycopy(all, 0, ids, 0, found);
+    	}
+    	return ids;
+    }
+
+    /**
+     * Compile the variants of a query which finds times by title, start time and elapsed time
+     * through the <tt>times_dedupe</tt> index.  The SQLite in the Android versions we run on
+     * (before 3.8.11) can't use an index for <tt>column IS ?</tt>, so each variant compares
+     * with <tt>= ?</tt>, or with <tt>is null</tt> for a NULL start or elapsed time.
+     * @param select  Query before its where clause, such as <tt>select count(*) from times</tt>
+     * @return  Statements indexed by {@link #DEDUPE_START_NULL} | {@link #DEDUPE_ELAPSED_NULL};
+     *     pick and bind one with {@link #bindDedupeKey(SQLiteStatement[], TimesImporter.ImportedTime)},
+     *     and close them with {@link #closeAll(SQLiteStatement[])}
+     */
+    private SQLiteStatement[] compileDedupeQueries(final String select)
+    {
+    	final SQLiteStatement[] st = new SQLiteStatement[4];
+    	try
+    	{
+    		for (int v = 0; v < 4; ++v)
+    			st[v] = mDb.compileStatement(select + " where title = ? and start_systime "
+    				+ (((v & DEDUPE_START_NULL) != 0) ? "is null" : "= ?")
+    				+ " and elapsed " + (((v & DEDUPE_ELAPSED_NULL) != 0) ? "is null" : "= ?") + ";");
+    	} catch (SQLException e) {
+    		closeAll(st);
+    		throw e;
+    	}
+    	return st;
+    }
+
+    /**
+     * Pick the variant of a {@link #compileDedupeQueries(String)} query for an imported time,
+     * and bind its title, start time and elapsed time.  An unknown elapsed time matches NULL or 0,
+     * as stored by {@link #createNew(String, String, int, long, long, long)}.
+     * @return  The statement to run
+     */
+    private SQLiteStatement bindDedupeKey(final SQLiteStatement[] variants, final TimesImporter.ImportedTime t)
+    {
+    	final boolean startNull = (t.startTime == -1L),
+    	              elapsedNull = (t.elapsed == -1L) && isElapsedNullable();
+    	final SQLiteStatement st = variants
+    		[(startNull ? DEDUPE_START_NULL : 0) | (elapsedNull ? DEDUPE_ELAPSED_NULL : 0)];
+    	int i = 1;
+    	st.bindString(i++, t.title);
+    	if (! startNull)
+    		st.bindLong(i++, t.startTime);
+    	if (! elapsedNull)
+    		st.bindLong(i, (t.elapsed != -1L) ? t.elapsed : 0);
+    	return st;
+    }
+
+    /** Close the statements from {@link #compileDedupeQueries(String)}; nulls are skipped. */
+    private static void closeAll(final SQLiteStatement[] st)
+    {
+    	for (int i = 0; i < st.length; ++i)
+    		if (st[i] != null)
+    			st[i].close();
+    }
+
     /**
      * Delete this entry from {@link #DATABASE_TABLE}, along with
-     * any corresponding {@link #TABLE_LAPS}.
+     * its laps in {@link #TABLE_LAPS} and {@link #TABLE_LAP_SUMMARY}, if any, and its {@link #TABLE_TIMES_FTS} entry.
      * @param rowId  Row ID
      * @return  True if deleted, false if not found in {@link #DATABASE_TABLE}
+     * @see #delete(long[])
      */
     public boolean delete(long rowId) {
-    	final boolean didAny =
-            (mDb.delete(DATABASE_TABLE, KEY_ROWID + "=" + rowId, null) > 0);
-    	if (didAny)
+    	return (delete(new long[]{ rowId }) > 0);
+    }
+
+    /**
+     * Delete several entries from {@link #DATABASE_TABLE}, along with their laps in
+     * {@link #TABLE_LAPS} and {@link #TABLE_LAP_SUMMARY} and their {@link #TABLE_TIMES_FTS} entries,
+     * all in one transaction: If interrupted, nothing is deleted, so no laps are left without their time.
+     * Each table gets one <tt>delete ... where id in (...)</tt> per {@link #DELETE_BATCH_SIZE} IDs.
+     * The deleted times are recorded in {@link #TABLE_TOMBSTONES} for incremental export,
+     * with one {@link #nextModSeq()} taken only if any of the IDs is found.
+     *<P>
+     * Afterwards, consider calling {@link #reclaimSpaceIfNeeded()}.
+     * @param rowIds  Row IDs to delete; IDs not found are ignored
+     * @return  The number of {@link #DATABASE_TABLE} entries deleted
+     * @since 1.6
+     */
+    public int delete(final long[] rowIds) {
+    	int count = 0;
+    	mDb.beginTransaction();
+    	try
     	{
-    		mDb.delete(TABLE_LAPS, FIELD_LAPS_TIMES_ROWID + "=" + rowId, null);
+    		long modseq = 0;  // taken when the first existing row is found
+    		StringBuilder sb = new StringBuilder();
+    		for (int start = 0; start < rowIds.length; start += DELETE_BATCH_SIZE)
+    		{
+    			final int end = Math.min(start + DELETE_BATCH_SIZE, rowIds.length);
+    			sb.setLength(0);
+    			sb.append(" in (");
+    			for (int i = start; i < end; ++i)
+    			{
+    				if (i > start)
+    					sb.append(',');
+    				sb.append(rowIds[i]);
+    			}
+    			sb.append(')');
+    			final String inList = sb.toString();
+
+    			final SQLiteStatement st = mDb.compileStatement("select count(*) from times where _id" + inList + ";");
+    			final long found;
+    			try {
+    				found = st.simpleQueryForLong();
+    			} finally {
+    				st.close();
+    			}
+    			if (found == 0)
+    				continue;
+    			if (modseq == 0)
+    				modseq = nextModSeq();
+
+    			mDb.execSQL("insert or replace into tombstones (times_id, modseq, title, start_systime, elapsed)"
+    				+ " select _id, " + modseq + ", title, start_systime, elapsed from times where _id"
+    				+ inList + ";");
+    			count += mDb.delete(DATABASE_TABLE, KEY_ROWID + inList, null);
+    			mDb.delete(TABLE_LAPS, FIELD_LAPS_TIMES_ROWID + inList, null);
+    			mDb.delete(TABLE_LAP_SUMMARY, FIELD_LAPS_TIMES_ROWID + inList, null);
+    			mDb.delete(TABLE_TIMES_FTS, "docid" + inList, null);
+    		}
+    		mDb.setTransactionSuccessful();
+    	} finally {
+    		mDb.endTransaction();
     	}
-    	return didAny;
+    	if (count > 0)
+    		FormattedRowCache.getInstance(mContext).invalidate(rowIds);
+
+    	return count;
+    }
+
+    /**
+     * If at least {@link #VACUUM_MIN_FREE_PAGES} pages and a quarter of the database file
+     * are free pages left by deletes, rebuild the database with VACUUM so the file shrinks.
+     * This can take a while for a large database: Call it from a background thread,
+     * and not within a transaction.
+     * @return  True if the database was vacuumed
+     * @since 1.6
+     */
+    public boolean reclaimSpaceIfNeeded() {
+    	final long freePages, totalPages;
+    	SQLiteStatement st = mDb.compileStatement("PRAGMA freelist_count;");
+    	try {
+    		freePages = st.simpleQueryForLong();
+    	} finally {
+    		st.close();
+    	}
+    	st = mDb.compileStatement("PRAGMA page_count;");
+    	try {
+    		totalPages = st.simpleQueryForLong();
+    	} finally {
+    		st.close();
+    	}
+
+    	if ((freePages < VACUUM_MIN_FREE_PAGES) || (freePages * 4 < totalPages))
+    		return false;
+
+    	mDb.execSQL("VACUUM;");
+    	return true;
     }
 
     /** Get basic info about all tracks: id, title, comment. */
@@ -283,6 +946,217 @@ public class AnstopDbAdapter {
     	
     }
 
+    /**
+     * Get basic info about one page of saved times, for keyset paging in {@link LoadActivity}:
+     * Up to <tt>limit</tt> rows whose ID is greater than <tt>afterId</tt>, in ID order.
+     * Each page is an indexed range scan on the primary key, so its cost doesn't grow
+     * with the number of pages before it, as it would with an offset.
+     * @param afterId  Last ID of the previous page, or 0 for the first page
+     * @param limit  Maximum number of rows to return
+     * @return  Cursor with columns {@link #KEY_ROWID}, {@link #KEY_TITLE}; caller must close it
+     * @see #fetchAll()
+     */
+    public Cursor fetchPage(final long afterId, final int limit) {
+    	return mDb.query(DATABASE_TABLE, new String[] {KEY_ROWID, KEY_TITLE},
+    		KEY_ROWID + ">" + afterId, null, null, null, KEY_ROWID, Integer.toString(limit));
+    }
+
+    //
+    // Change tracking, for incremental export
+    //
+
+    /**
+     * Get the next modification sequence number, for a time being saved or deleted.
+     * Call only within a transaction, so the number is used by that change alone.
+     * @return  the new number, greater than any given out before
+     * @see #FIELD_TIMES_MODSEQ
+     * @since 1.6
+     */
+    private long nextModSeq() {
+    	mDb.execSQL("update sync_state set value = value + 1 where name = 'modseq';");
+    	return getModSeq();
+    }
+
+    /**
+     * Get the last modification sequence number given out, for {@link #fetchChangedPage(long, long, long, int)}.
+     * Every change so far has a number &lt;= this one.
+     * @return  the number, or 0 if nothing has been saved
+     * @since 1.6
+     */
+    public long getModSeq() {
+    	return readSyncState("modseq");
+    }
+
+    /**
+     * Get the modification sequence number of the last incremental export.
+     * @return  the number, or 0 if there hasn't been one
+     * @see #setExportCheckpoint(long)
+     * @since 1.6
+     */
+    public long getExportCheckpoint() {
+    	return readSyncState("export_checkpoint");
+    }
+
+    /**
+     * Record that an incremental export has written all changes up to <tt>modseq</tt>,
+     * and remove the {@link #TABLE_TOMBSTONES} rows it has written, in one transaction.
+     * @param modseq  {@link #getModSeq()} from when the export began
+     * @since 1.6
+     */
+    public void setExportCheckpoint(final long modseq) {
+    	mDb.beginTransaction();
+    	try
+    	{
+    		mDb.execSQL("update sync_state set value = " + modseq + " where name = 'export_checkpoint';");
+    		mDb.delete(TABLE_TOMBSTONES, FIELD_TIMES_MODSEQ + "<=" + modseq, null);
+    		mDb.setTransactionSuccessful();
+    	} finally {
+    		mDb.endTransaction();
+    	}
+    }
+
+    /**
+     * Read one of the {@link #TABLE_SYNC_STATE} counters.
+     * @param name  <tt>"modseq"</tt> or <tt>"export_checkpoint"</tt>
+     * @return  its value
+     */
+    private long readSyncState(final String name) {
+    	SQLiteStatement st = mDb.compileStatement
+    		("select value from sync_state where name = '" + name + "';");
+    	try {
+    		return st.simpleQueryForLong();
+    	} finally {
+    		st.close();
+    	}
+    }
+
+    /**
+     * Get one page of the times saved or changed up to a modification sequence number,
+     * in order of {@link #FIELD_TIMES_MODSEQ} and then ID.  Each page starts after the previous page's
+     * last (modseq, ID) pair, and is read in that order straight from the index on modseq,
+     * so each page costs about the same and the whole export costs in proportion
+     * to the number of changes, even when many times share one modseq.
+     * @param afterModSeq  Last modseq of the previous page; for the first page,
+     *     the number changes are wanted after, such as {@link #getExportCheckpoint()}
+     * @param afterId  Last ID of the previous page, or {@link Long#MAX_VALUE} for the first page
+     * @param upToModSeq  Changes up to and including this number, such as {@link #getModSeq()}
+     * @param limit  Maximum number of rows to return
+     * @return  Cursor with columns {@link #KEY_ROWID}, {@link #KEY_TITLE}, {@link #FIELD_TIMES_MODSEQ};
+     *     caller must close it
+     * @since 1.6
+     */
+    public Cursor fetchChangedPage
+    	(final long afterModSeq, final long afterId, final long upToModSeq, final int limit)
+    {
+    	return fetchModSeqPage(DATABASE_TABLE, KEY_ROWID, KEY_ROWID + ", " + KEY_TITLE,
+    		afterModSeq, afterId, upToModSeq, limit);
+    }
+
+    /**
+     * Get one page of the {@link #TABLE_TOMBSTONES} rows of times deleted up to a modification
+     * sequence number, paged like {@link #fetchChangedPage(long, long, long, int)}.
+     * @param afterModSeq  Last modseq of the previous page; for the first page,
+     *     the number deletes are wanted after
+     * @param afterId  Last ID of the previous page, or {@link Long#MAX_VALUE} for the first page
+     * @param upToModSeq  Deletes up to and including this number
+     * @param limit  Maximum number of rows to return
+     * @return  Cursor with columns: the deleted time's ID, {@link #KEY_TITLE},
+     *     {@link #FIELD_TIMES_START_SYSTIME}, {@link #FIELD_TIMES_ELAPSED}, {@link #FIELD_TIMES_MODSEQ};
+     *     caller must close it
+     * @since 1.6
+     */
+    public Cursor fetchDeletedPage
+    	(final long afterModSeq, final long afterId, final long upToModSeq, final int limit)
+    {
+    	return fetchModSeqPage(TABLE_TOMBSTONES, FIELD_LAPS_TIMES_ROWID,
+    		FIELD_LAPS_TIMES_ROWID + ", " + KEY_TITLE + ", " + FIELD_TIMES_START_SYSTIME + ", " + FIELD_TIMES_ELAPSED,
+    		afterModSeq, afterId, upToModSeq, limit);
+    }
+
+    /**
+     * Keyset page on (modseq, ID) for {@link #fetchChangedPage(long, long, long, int)}
+     * and {@link #fetchDeletedPage(long, long, long, int)}.
+     * The rest of <tt>afterModSeq</tt>'s rows and the rows with higher modseqs are two
+     * range searches of the table's modseq index, which also holds the row ID;
+     * SQLite merges them in index order, so no temporary sort is needed.
+     * (A single <tt>where modseq &gt; ? or (modseq = ? and id &gt; ?)</tt> is sorted
+     * in a temporary B-tree for every page.)
+     * @param table  Table with a modseq index; its ID column is its integer primary key
+     * @param idColumn  The table's ID column
+     * @param columns  Columns to return, before modseq
+     * @return  the cursor; its last column is modseq
+     */
+    private Cursor fetchModSeqPage(final String table, final String idColumn, final String columns,
+    	final long afterModSeq, final long afterId, final long upToModSeq, final int limit)
+    {
+    	final String select = "select " + columns + ", modseq from " + table + " where ";
+    	return mDb.rawQuery(select + "modseq = " + afterModSeq + " and " + idColumn + " > " + afterId
+    		+ " union all " + select + "modseq > " + afterModSeq + " and modseq <= " + upToModSeq
+    		+ " order by modseq, " + idColumn + " limit " + limit + ";", null);
+    }
+
+    /**
+     * Search saved times' titles and comments, one page at a time like {@link #fetchPage(long, int)}.
+     * Uses the full-text index {@link #TABLE_TIMES_FTS}, so the search time depends on
+     * the number of matches, not the number of saved times.
+     *<P>
+     * Each word in <tt>query</tt> must match the start of a word in the title or comment;
+     * letters are case-insensitive.  Punctuation is ignored.
+     *
+     * @param query  Words to search for, as typed by the user
+     * @param afterId  Last ID of the previous page, or 0 for the first page
+     * @param limit  Maximum number of rows to return
+     * @return  Cursor with columns {@link #KEY_ROWID}, {@link #KEY_TITLE} in ID order; caller must close it.
+     *    Null if <tt>query</tt> has no words.
+     * @since 1.6
+     */
+    public Cursor searchPage(final String query, final long afterId, final int limit) {
+    	final String match = buildMatchQuery(query);
+    	if (match == null)
+    		return null;
+
+    	return mDb.rawQuery
+    		("select t." + KEY_ROWID + ", t." + KEY_TITLE
+    		 + " from " + TABLE_TIMES_FTS + " f join " + DATABASE_TABLE + " t on t." + KEY_ROWID + " = f.docid"
+    		 + " where " + TABLE_TIMES_FTS + " match ? and f.docid > ?"
+    		 + " order by f.docid limit " + limit,
+    		 new String[]{ match, Long.toString(afterId) });
+    }
+
+    /**
+     * Build an FTS MATCH expression from user-typed text: Each run of letters and digits
+     * becomes a prefix term (<tt>word*</tt>); all terms must match.
+     * Anything else, including FTS operators and quotes, is treated as a separator.
+     * @param query  Text typed by the user, or null
+     * @return  the MATCH expression, or null if <tt>query</tt> has no letters or digits
+     */
+    static String buildMatchQuery(final String query) {
+    	if (query == null)
+    		return null;
+
+    	StringBuilder sb = new StringBuilder();
+    	boolean inWord = false;
+    	final int L = query.length();
+    	for (int i = 0; i < L; ++i)
+    	{
+    		final char c = query.charAt(i);
+    		if (Character.isLetterOrDigit(c))
+    		{
+    			if ((! inWord) && (sb.length() > 0))
+    				sb.append(' ');
+    			sb.append(c);
+    			inWord = true;
+    		} else if (inWord) {
+    			sb.append('*');
+    			inWord = false;
+    		}
+    	}
+    	if (inWord)
+    		sb.append('*');
+
+    	return (sb.length() > 0) ? sb.toString() : null;
+    }
+
     /**
      * Fetch all fields of a {@link #DATABASE_TABLE} record.
      * @param rowId  Record ID
@@ -310,19 +1184,144 @@ public class AnstopDbAdapter {
 	 * along with the comment field if any.
 	 * Older records (v1 or v2) have these as text within body.
 	 *<P>
-	 * The same formatting is used in {@link Anstop#updateStartTimeCommentLapsView(boolean)}.
+	 * The same formatting is used in {@link Anstop#updateStartTimeCommentLapsView()}.
 	 * If you change this method, change that one to match.
+	 *<P>
+	 * The result is kept in a {@link FormattedRowCache}, so asking again for the same row
+	 * with the same hour and lap format, locale and 12/24-hour settings doesn't re-read or re-format its laps.
 	 *
 	 * @param rowId  The _id of the {@link #DATABASE_TABLE} record to retrieve
 	 * @return String[] with [0]=title, [1]=body, or <tt>null</tt> if not found.
+	 * @see #writeRowAndFormat(long, ChannelTextWriter)
 	 */
 	public String[] getRowAndFormat(final long rowId) {
-		String[] columns = null;
+		final FormattedRowCache cache = FormattedRowCache.getInstance(mContext);
+		final boolean is24Hour = DateFormat.is24HourFormat(mContext);
+		String[] columns = cache.get(rowId, is24Hour);
+		if (columns != null)
+			return columns;
+
+		final int hourFormat = cache.getHourFormat(),
+		          fmtFlags = cache.getLapFormatFlags();
+		final Locale locale = Locale.getDefault();
+		StringBuilder sb = new StringBuilder();
+		final String title = formatRow(rowId, sb, null, hourFormat, fmtFlags);
+		if (title == null)
+			return null;
+
+		columns = new String[]{ title, sb.toString() };
+		cache.put(rowId, columns, hourFormat, fmtFlags, locale, is24Hour);
+		return columns;
+	}
+
+	/**
+	 * Write this rowId's body, formatted as in {@link #getRowAndFormat(long)}, to <tt>out</tt>.
+	 * Unless the row is already in the {@link FormattedRowCache}, the body is rendered and
+	 * written a piece at a time as the laps are read, so memory use doesn't depend on
+	 * the number of laps; the rendered body isn't cached.
+	 *<P>
+	 * Write errors are kept by <tt>out</tt>, and thrown by its {@link ChannelTextWriter#close()}.
+	 * @param rowId  The _id of the {@link #DATABASE_TABLE} record to write
+	 * @param out  Writer to write the body to; not closed here
+	 * @return  true if written, false if not found
+	 * @see #fetchTitle(long)
+	 * @since 1.6
+	 */
+	public boolean writeRowAndFormat(final long rowId, final ChannelTextWriter out) {
+		final FormattedRowCache cache = FormattedRowCache.getInstance(mContext);
+		final String[] cached = cache.get(rowId, DateFormat.is24HourFormat(mContext));
+		if (cached != null)
+		{
+			out.write(cached[1]);
+			return true;
+		}
+
+		StringBuilder sb = new StringBuilder(STREAM_FLUSH_CHARS + 256);
+		if (null == formatRow(rowId, sb, out, cache.getHourFormat(), cache.getLapFormatFlags()))
+			return false;
+
+		out.write(sb);
+		return true;
+	}
+
+	/**
+	 * Write this rowId's fields and raw lap data, not formatted, through a {@link LapDataWriter}
+	 * for CSV or JSON export.  The laps go straight from {@link #fetchAllLaps(long, LapVisitor)}
+	 * to the writer, which streams them out.
+	 * @param rowId  The _id of the {@link #DATABASE_TABLE} record to write
+	 * @param w  Writer for the data
+	 * @return  true if written, false if not found
+	 * @since 1.6
+	 */
+	public boolean writeRowData(final long rowId, final LapDataWriter w) {
+		Cursor time = fetch(rowId);
+		if (time == null)
+			return false;
+		if (! time.moveToFirst())
+		{
+			time.close();
+			return false;
+		}
+
+		final int col_mode = time.getColumnIndex(FIELD_TIMES_MODE),
+		          col_elapsed = time.getColumnIndex(FIELD_TIMES_ELAPSED),
+		          col_starttime = time.getColumnIndex(FIELD_TIMES_START_SYSTIME),
+		          col_stoptime = time.getColumnIndex(FIELD_TIMES_STOP_SYSTIME);
+		w.begin(rowId, time.getString(time.getColumnIndexOrThrow(KEY_TITLE)),
+			time.isNull(col_mode) ? -1 : time.getInt(col_mode),
+			time.isNull(col_starttime) ? -1L : time.getLong(col_starttime),
+			time.isNull(col_stoptime) ? -1L : time.getLong(col_stoptime),
+			time.isNull(col_elapsed) ? -1L : time.getLong(col_elapsed),
+			time.getString(time.getColumnIndexOrThrow(KEY_BODY)));
+		time.close();
+
+		fetchAllLaps(rowId, w);
+		w.end();
+		return true;
+	}
+
+	/**
+	 * Get this rowId's title, without its body or laps.
+	 * @param rowId  The _id of the {@link #DATABASE_TABLE} record
+	 * @return  The title, or null if not found
+	 * @since 1.6
+	 */
+	public String fetchTitle(final long rowId) {
+		Cursor c = mDb.query(DATABASE_TABLE, new String[]{ KEY_TITLE },
+			KEY_ROWID + "=" + rowId, null, null, null, null);
+		if (c == null)
+			return null;
+
+		final String title = c.moveToFirst() ? c.getString(0) : null;
+		c.close();
+		return title;
+	}
+
+	/**
+	 * Render this rowId's body into <tt>sb</tt>, for {@link #getRowAndFormat(long)}
+	 * or {@link #writeRowAndFormat(long, ChannelTextWriter)}.
+	 * @param rowId  The _id of the {@link #DATABASE_TABLE} record
+	 * @param sb  Empty StringBuilder to render into
+	 * @param out  If not null, the laps are streamed: Whenever <tt>sb</tt> reaches
+	 *     {@link #STREAM_FLUSH_CHARS}, its contents are written to <tt>out</tt> and it's cleared.
+	 *     The caller writes whatever is left in <tt>sb</tt> when this method returns.
+	 * @param hourFormat  Hour format; see {@link Clock.LapFormatter#hourFormat}
+	 * @param fmtFlags  Lap format flags, from {@link Anstop#readLapFormatPrefFlags(android.content.SharedPreferences)}
+	 * @return  the row's title, or null if not found
+	 */
+	private String formatRow(final long rowId, final StringBuilder sb, final ChannelTextWriter out,
+		final int hourFormat, final int fmtFlags)
+	{
+		String title = null;
 		Cursor time = null;
 		try {
 			time = fetch(rowId);
-			columns = new String[2];
-			columns[0] = time.getString(time.getColumnIndexOrThrow(KEY_TITLE));
+			if (! time.moveToFirst())
+			{
+				time.close();
+				return null;
+			}
+			title = time.getString(time.getColumnIndexOrThrow(KEY_TITLE));
 
 			final int col_body = time.getColumnIndexOrThrow(KEY_BODY),
 			          col_mode = time.getColumnIndex(FIELD_TIMES_MODE),
@@ -332,7 +1331,7 @@ public class AnstopDbAdapter {
 			if (time.isNull(col_mode))
 			{
 				// Simple: no mode
-				columns[1] = time.getString(col_body);
+				sb.append(time.getString(col_body));
 			} else {
 				// Mode, laps, start time are separate fields. Col_body contains the comment only.
 				// Mode was: ___
@@ -345,12 +1344,9 @@ public class AnstopDbAdapter {
 				// lap info
 				if (fmt_dow_meddate_time == null)
 					fmt_dow_meddate_time = Anstop.buildDateFormat(mContext, false);
-				StringBuilder sb = new StringBuilder();
 
 				Clock.LapFormatter lapf = new Clock.LapFormatter();
-				SharedPreferences settings = PreferenceManager.getDefaultSharedPreferences(mContext);
-				lapf.hourFormat = Integer.parseInt(settings.getString("hour_format", "0"));
-					// default Clock.HOUR_FMT_HIDE_IF_0
+				lapf.hourFormat = hourFormat;
 
 				// mode
 				sb.append(mContext.getResources().getString(R.string.mode_was));
@@ -364,7 +1360,7 @@ public class AnstopDbAdapter {
 				// duration
 				if (! time.isNull(col_elapsed))
 				{
-					lapf.formatTimeLap(sb, false, -1, 0, 0, 0, 0, time.getLong(col_elapsed), 0, null);
+					lapf.formatTimeLap(sb, false, -1, 0, 0, 0, 0, time.getLong(col_elapsed), 0, 0);
 					sb.append("\n\n");
 				}
 
@@ -389,24 +1385,17 @@ public class AnstopDbAdapter {
 					sb.append(comment);
 				}
 
-				// laps
-				final int lapCount = countLaps(rowId);
-				if (lapCount > 0)
-				{
-					if (sb.length() > 0)
-						sb.append("\n\n");
-					long[] lap_elapsed = new long[lapCount],
-					       lap_systime = new long[lapCount];
-					fetchAllLaps(rowId, lap_elapsed, lap_systime);
-					final int fmtFlags = Anstop.readLapFormatPrefFlags(settings);
-					if ((fmtFlags != 0) && (fmtFlags != Clock.LAP_FMT_FLAG_ELAPSED))
-						lapf.setLapFormat
-							(fmtFlags, android.text.format.DateFormat.getTimeFormat(mContext));
-					lapf.formatTimeAllLaps(sb, lapCount + 1, lap_elapsed, lap_systime);
-				}
-
-				// All done.
-				columns[1] = sb.toString();
+				// laps: formatted as they're read, without a separate count query
+				if ((fmtFlags != 0) && (fmtFlags != Clock.LAP_FMT_FLAG_ELAPSED))
+					lapf.setLapFormat
+						(fmtFlags, android.text.format.DateFormat.getTimeFormat(mContext));
+				final int lenBeforeLaps = sb.length();
+				if (sb.length() > 0)
+					sb.append("\n\n");
+				final LapVisitor appender = lapf.newLapAppender(sb);
+				if (0 == fetchAllLaps
+					(rowId, (out == null) ? appender : newStreamingAppender(appender, sb, out)))
+					sb.setLength(lenBeforeLaps);  // no laps; nothing was written to out yet
 			}
 
 			time.close();
@@ -416,7 +1405,32 @@ public class AnstopDbAdapter {
 				time.close();
 		}
 
-		return columns;
+		return title;
+	}
+
+	/**
+	 * Wrap a lap appender so that its StringBuilder is written to <tt>out</tt>
+	 * and cleared whenever it reaches {@link #STREAM_FLUSH_CHARS}.
+	 * @param appender  Appender from {@link Clock.LapFormatter#newLapAppender(StringBuilder)}
+	 * @param sb  The appender's StringBuilder
+	 * @param out  Writer for the text
+	 * @return  a new visitor
+	 */
+	private static LapVisitor newStreamingAppender
+		(final LapVisitor appender, final StringBuilder sb, final ChannelTextWriter out)
+	{
+		return new LapVisitor()
+		{
+			public void visitLap(final long elapsed, final long systime)
+			{
+				appender.visitLap(elapsed, systime);
+				if (sb.length() >= STREAM_FLUSH_CHARS)
+				{
+					out.write(sb);
+					sb.setLength(0);
+				}
+			}
+		};
 	}
 
 
@@ -425,43 +1439,58 @@ public class AnstopDbAdapter {
     //
 
     /**
-     * Insert the {@link #TABLE_LAPS} entries for all the active laps.
-     * @param times_id  Row ID from {@link #createNew(String, String, int, long, long, long)}
-     * @param laps  Number of laps to use from the arrays; {@link Clock#laps} - 1
-     *     since that field is the <em>next</em> lap number
-     * @param elapsed  Per-lap elapsed-time array, like {@link Clock#lap_elapsed}
-     * @param systimes  Per-lap system-time (wall clock time) array, like {@link Clock#lap_systime}
-     * @throws IllegalArgumentException  if array length is &lt; <tt>laps</tt>
-     * @see #createNewLap(long, long, long)
+     * Get a saved time's lap statistics from {@link #TABLE_LAP_SUMMARY}, without reading its laps.
+     * @param times_id  Row ID in {@link #DATABASE_TABLE}
+     * @return  The summary, or null if the time has no laps or isn't found
+     * @since 1.6
      */
-    public void createNewLaps
-    	(final long times_id, final int laps, final long[] elapsed, final long[] systimes)
-    	throws IllegalArgumentException
+    public LapSummary fetchLapSummary(final long times_id)
     {
-    	if ((elapsed.length < laps) || (systimes.length < laps))
-    		throw new IllegalArgumentException();
-    	for (int i = 0; i < laps; ++i)
-    		createNewLap(times_id, elapsed[i], systimes[i]);
+    	Cursor c = mDb.query(TABLE_LAP_SUMMARY,
+    		new String[]{ FIELD_LAPDATA_COUNT, "total_elapsed", "fastest", "slowest", "mean" },
+    		FIELD_LAPS_TIMES_ROWID + "=" + times_id, null, null, null, null);
+    	if (c == null)
+    		return null;
+
+    	LapSummary sum = null;
+    	if (c.moveToFirst())
+    		sum = new LapSummary(c.getInt(0), c.getLong(1), c.getLong(2), c.getLong(3), c.getLong(4));
+    	c.close();
+    	return sum;
     }
 
     /**
-     * Insert a new {@link #TABLE_LAPS} entry for a new lap.
-     * @param times_id  Row ID from {@link #createNew(String, String, int, long, long, long)},
-     *    or 0 for temporary lap storage for the currently active timing.
-     * @param elapsed  Per-lap elapsed-time
-     * @param systime  Per-lap system-time
-     * @see #createNewLaps(long, int, long[], long[])
+     * Insert a batch of laps into temporary lap storage ({@link #TABLE_TEMP_LAPS})
+     * for the currently active timing, in one transaction.
+     * @param laps  Laps to insert
+     * @see LapWriter
      */
-    public void createNewLap
-    	(final long times_id, final long elapsed, final long systime)
+    public void createTemporaryLaps(final LapStore laps)
     {
-    	ContentValues cl = new ContentValues();
-    	if (times_id != 0)
-    		cl.put(FIELD_LAPS_TIMES_ROWID, times_id);
-    	cl.put(FIELD_LAPS_ELAPSED, elapsed);
-    	cl.put(FIELD_LAPS_SYSTIME, systime);
+    	final int n = laps.size();
+    	if (n == 0)
+    		return;
 
-    	mDb.insert( ((times_id != 0) ? TABLE_LAPS : TABLE_TEMP_LAPS), null, cl);
+    	// Bulk-insert through one compiled INSERT statement which is re-bound for each lap:
+    	// no ContentValues per row, and only one commit (one sync to storage) for the whole batch.
+    	final SQLiteStatement ins = mDb.compileStatement("insert into " + TABLE_TEMP_LAPS + " ("
+    		+ FIELD_LAPS_ELAPSED + ", " + FIELD_LAPS_SYSTIME
+    		+ ") values (?, ?);");
+
+    	mDb.beginTransaction();
+    	try
+    	{
+    		for (int i = 0; i < n; ++i)
+    		{
+    			ins.bindLong(1, laps.getElapsed(i));
+    			ins.bindLong(2, laps.getSystime(i));
+    			ins.executeInsert();
+    		}
+    		mDb.setTransactionSuccessful();
+    	} finally {
+    		mDb.endTransaction();
+    		ins.close();
+    	}
     }
 
     /**
@@ -472,67 +1501,75 @@ public class AnstopDbAdapter {
     }
 
     /**
-     * Count the number of laps stored for a given {@link #DATABASE_TABLE} ID.
+     * Fetch all laps for a given {@link #DATABASE_TABLE} ID, in one pass,
+     * handing each lap to a visitor as it's read.  There's no need to count the laps first:
+     * Every lap is read, however many there are.
+     *<P>
+     * A saved time's laps are one {@link #TABLE_LAPS} row (several for a very long session), decoded lap by lap.
+     * The currently active laps in {@link #TABLE_TEMP_LAPS} are read in pages of
+     * {@link #LAP_PAGE_SIZE} rows, so each cursor stays well within one cursor window
+     * even for a very long session.
+     *
      * @param times_id  ID to fetch, or 0 for the currently active laps
-     * @return  Number of laps, or 0 if not found
-     * @see #fetchAllLaps(long, long[], long[])
+     * @param v  Visitor for each lap's elapsed and systime, in lap order; for example a {@link LapStore},
+     *    usually empty, such as a new one or {@link Clock#lapStore} after restoring state
+     * @return  The number of laps retrieved
      */
-    public int countLaps(final long times_id) {
-        Cursor mCursor =
-            mDb.query( ((times_id != 0) ? TABLE_LAPS : TABLE_TEMP_LAPS),
-        		new String[] { "count(" + KEY_ROWID + ')' },
-        		((times_id != 0) ? FIELD_LAPS_TIMES_ROWID + "=" + times_id : null),
-        		null, null, null, null);    	
-    	if (mCursor == null)
-    		return 0;
-    	if (! mCursor.moveToFirst())
+    public int fetchAllLaps(final long times_id, final LapVisitor v) {
+    	if (times_id != 0)
+    		return fetchLapData(times_id, v);
+
+    	final String[] cols = { KEY_ROWID, FIELD_LAPS_ELAPSED, FIELD_LAPS_SYSTIME };
+    	final String limit = Integer.toString(LAP_PAGE_SIZE);
+    	int lapCount = 0;
+    	long lastId = 0;
+    	for (;;)
     	{
+    		Cursor mCursor = mDb.query(TABLE_TEMP_LAPS, cols,
+    			KEY_ROWID + ">" + lastId, null, null, null, KEY_ROWID, limit);
+    		if (mCursor == null)
+    			break;
+
+    		int pageCount = 0;
+    		while (mCursor.moveToNext())
+    		{
+    			lastId = mCursor.getLong(0);
+    			v.visitLap(mCursor.getLong(1), mCursor.getLong(2));
+    			++pageCount;
+    		}
     		mCursor.close();
-    		return 0;
+
+    		lapCount += pageCount;
+    		if (pageCount < LAP_PAGE_SIZE)
+    			break;
     	}
-    	final int lapCount = mCursor.getInt(0);
-    	mCursor.close();
+
     	return lapCount;
     }
 
     /**
-     * Fetch all laps for a given {@link #DATABASE_TABLE} ID.
-     * To ensure <tt>elapsed[]</tt> and <tt>systimes[]</tt> are large
-     * enough, call {@link #countLaps(long) countLaps(times_id)} first.
-     * @param times_id  ID to fetch, or 0 for the currently active laps
-     * @param elapsed  Array to hold each lap's elapsed
-     * @param systimes  Array to hold each lap's systime
-     * @return  The number of laps retrieved;
-     *    if <tt>elapsed</tt> and <tt>systimes</tt> aren't large enough
-     *    for all laps, this will be the size of the arrays.
+     * Read and unpack a saved time's laps from its {@link #TABLE_LAPS} rows, in order.
+     * @param times_id  ID to fetch; not 0
+     * @param v  Visitor for each lap
+     * @return  The number of laps retrieved; 0 if none.  If a row's format is unknown,
+     *    the laps in the rows before it are retrieved; if a row is truncated,
+     *    the laps before that point are retrieved.
      */
-    public int fetchAllLaps(final long times_id, long[] elapsed, long[] systimes) {
-    	
+    private int fetchLapData(final long times_id, final LapVisitor v) {
         Cursor mCursor =
-            mDb.query( ((times_id != 0) ? TABLE_LAPS : TABLE_TEMP_LAPS),
-        		new String[] { FIELD_LAPS_ELAPSED, FIELD_LAPS_SYSTIME},
-        		((times_id != 0) ? FIELD_LAPS_TIMES_ROWID + "=" + times_id : null),
-        		null, null, null, KEY_ROWID);
+            mDb.query(TABLE_LAPS, new String[] { FIELD_LAPDATA_LAPS },
+        		FIELD_LAPS_TIMES_ROWID + "=" + times_id, null, null, null, FIELD_LAPDATA_SEQ);
     	if (mCursor == null)
     		return 0;
 
     	int lapCount = 0;
-        if (! mCursor.moveToFirst())
-        {
-        	mCursor.close();
-        	return 0;
-        }
-        do {
-        	if (lapCount >= elapsed.length)
-        		break;  // array too small
-        	elapsed[lapCount] = mCursor.getLong(0);
-        	systimes[lapCount] = mCursor.getLong(1);
-        	++lapCount;        	
-        }
-        while (mCursor.moveToNext());
-        mCursor.close();
+    	try {
+    		while (mCursor.moveToNext())
+    			lapCount += LapCodec.decode(mCursor.getBlob(0), v);
+    	} catch (IllegalArgumentException e) { }
+    	mCursor.close();
 
-        return lapCount;
+    	return lapCount;
     }
 
 }
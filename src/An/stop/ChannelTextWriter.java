@@ -0,0 +1,199 @@
+/***************************************************************************
+ *   This file Copyright (C) 2026 by the Anstop authors                    *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package An.stop;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * Writes text to a file or other channel as UTF-8, through one reusable encoder and pair of buffers,
+ * so exporting a saved time with many laps needs the same small amount of memory
+ * as exporting a short one.  Text is encoded as it's written, and the bytes are
+ * written to the file's channel each time the byte buffer fills.
+ *<P>
+ * Call {@link #open(FileOutputStream)}, then {@link #write(CharSequence)} any number of times,
+ * then {@link #close()}; then the writer can be opened again for another file.
+ * To write several pieces of text to one stream, such as entries in a zip archive,
+ * use {@link #open(WritableByteChannel, Closeable)} without a <tt>Closeable</tt> for each piece.
+ * Like {@link java.io.PrintWriter}, <tt>write</tt> doesn't throw: The first error
+ * is kept, later writes are skipped, and <tt>close</tt> throws it.
+ * Not synchronized; use from one thread at a time.
+ * @since 1.6
+ */
+final class ChannelTextWriter {
+
+	/** Size of the char and byte buffers. */
+	private static final int BUFFER_SIZE = 8192;
+
+	private final CharsetEncoder encoder = Charset.forName("UTF-8").newEncoder();
+
+	/** Chars waiting to be encoded; between calls, ready for put */
+	private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+	/** Encoded bytes waiting to be written; between calls, ready for put */
+	private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+
+	/** Is the writer open? */
+	private boolean isOpen;
+
+	/** The open channel, or null */
+	private WritableByteChannel channel;
+
+	/** Stream to close in {@link #close()}, or null */
+	private Closeable closeable;
+
+	/** First error since {@link #open(FileOutputStream)}, or null */
+	private IOException error;
+
+	/**
+	 * Start writing to a file.  The writer takes over the stream, and closes it in {@link #close()}.
+	 * @param fos  Newly opened file stream
+	 * @throws IllegalStateException if already open
+	 */
+	void open(final FileOutputStream fos)
+		throws IllegalStateException
+	{
+		open(fos.getChannel(), fos);
+	}
+
+	/**
+	 * Start writing to a channel.
+	 * @param ch  Channel to write to
+	 * @param toClose  Stream or channel to close in {@link #close()}, or null to leave <tt>ch</tt> open
+	 * @throws IllegalStateException if already open
+	 */
+	void open(final WritableByteChannel ch, final Closeable toClose)
+		throws IllegalStateException
+	{
+		if (isOpen)
+			throw new IllegalStateException();
+
+		isOpen = true;
+		channel = ch;
+		closeable = toClose;
+		error = null;
+		encoder.reset();
+		chars.clear();
+		bytes.clear();
+	}
+
+	/**
+	 * Encode and write some text.  Does nothing if a previous write failed.
+	 * @param cs  Text to write; the caller can reuse it (such as a StringBuilder) when this returns
+	 */
+	void write(final CharSequence cs) {
+		final int len = cs.length();
+		int i = 0;
+		while ((i < len) && (error == null))
+		{
+			final int n = Math.min(chars.remaining(), len - i);
+			chars.append(cs, i, i + n);
+			i += n;
+			chars.flip();
+			encode(false);
+			chars.compact();  // keeps an unpaired high surrogate for the next write
+		}
+	}
+
+	/**
+	 * Encode all of {@link #chars}, writing {@link #bytes} to the channel whenever it fills.
+	 * @param endOfInput  True if no more text will be written
+	 */
+	private void encode(final boolean endOfInput) {
+		for (;;)
+		{
+			CoderResult cr = encoder.encode(chars, bytes, endOfInput);
+			if (cr.isOverflow())
+			{
+				drain();
+				if (error != null)
+					return;
+			}
+			else if (cr.isError())
+			{
+				// not expected from UTF-8 except for an unpaired surrogate
+				error = new IOException(cr.toString());
+				return;
+			}
+			else
+				return;  // underflow: all input used, except maybe a partial surrogate pair
+		}
+	}
+
+	/** Write all of {@link #bytes} to the channel and clear it, or set {@link #error}. */
+	private void drain() {
+		bytes.flip();
+		try
+		{
+			while (bytes.hasRemaining())
+				channel.write(bytes);
+		} catch (IOException e) {
+			error = e;
+		}
+		bytes.clear();
+	}
+
+	/**
+	 * Write any remaining text, and close the file or the <tt>Closeable</tt> given to <tt>open</tt>.
+	 * Does nothing if not open.
+	 * @throws IOException  if any write failed, or the close failed
+	 */
+	void close()
+		throws IOException
+	{
+		if (! isOpen)
+			return;
+
+		try
+		{
+			if (error == null)
+			{
+				chars.flip();
+				encode(true);
+				while ((error == null) && encoder.flush(bytes).isOverflow())
+					drain();
+				if (error == null)
+					drain();
+			}
+		} finally {
+			final Closeable c = closeable;
+			isOpen = false;
+			channel = null;
+			closeable = null;
+			if (c != null)
+				c.close();  // for a FileOutputStream, also closes its channel
+		}
+
+		if (error != null)
+		{
+			final IOException e = error;
+			error = null;
+			throw e;
+		}
+	}
+
+}
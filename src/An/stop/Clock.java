@@ -25,22 +25,27 @@ package An.stop;
 
 
 import java.text.DateFormat;
-import java.text.NumberFormat;
+import java.util.concurrent.atomic.AtomicReference;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.os.Vibrator;
 import android.preference.PreferenceManager;
-import android.view.View;  // only for hourhandler to hide/show hours views if needed
+import android.view.Display;  // only for RenderHandler's frame rate
+import android.view.View;  // only for RenderHandler to hide/show hours views if needed
+import android.view.WindowManager;
 
 /**
- * Timer object and thread.
+ * Timer object connected to {@link Anstop}'s views; counting is driven by the shared {@link TickScheduler}.
+ * The mode, start/stop state and laps are in the superclass {@link Stopwatch}.
  *<P>
- * Has two modes ({@link Anstop#STOP_LAP} and {@link Anstop#COUNTDOWN}); clock's mode field is {@link #v}.
- * Has accessible fields for the current {@link #hour}, {@link #min}, {@link #sec}, {@link #dsec}.
+ * Has two modes ({@link Anstop#STOP_LAP} and {@link Anstop#COUNTDOWN}); clock's mode field is {@link #mode}.
+ * The current hours, minutes, seconds and deciseconds are one immutable {@link TimeSnapshot}; see {@link #getTime()}.
  * Has a link to the {@link #parent} Anstop, and will sometimes read or set parent's text field contents.
  *<P>
  * Because of device power saving, there are methods to adjust the clock
@@ -61,9 +66,12 @@ import android.view.View;  // only for hourhandler to hide/show hours views if n
  * You can examine the current state by reading {@link #isStarted} and {@link #wasStarted}.
  * To reset the clock again, and/or change the mode, call {@link #reset(int, int, int, int)}.
  *<P>
- * When running, a thread either counts up ({@link #threadS}) or down ({@link #threadC}),
- * firing every 100ms.  The {@link #parent}'s hour:minute:second.dsec displays are updated
- * through {@link #hourh} and the rest of the handlers here.
+ * When running, the clock is subscribed to the shared {@link TickScheduler}, and its
+ * {@link #ticker} counts up or down, waking at each 100ms boundary.  The ticker doesn't increment
+ * the fields; on each wakeup it calculates them from the monotonic clock ({@link #monoStartAdj}),
+ * so a late wakeup never makes the displayed time fall behind.  The {@link #parent}'s hour:minute:second.dsec displays
+ * are updated on the UI thread by {@link #renderh}, which receives one {@link TimeSnapshot}
+ * per tick and redraws only the digits that changed.
  *<P>
  * To lap, call {@link #lap(StringBuffer)}.  Note that persisting the lap data arrays
  * at Activity.onStop must be done in {@link Anstop}, not here.
@@ -73,7 +81,7 @@ import android.view.View;  // only for hourhandler to hide/show hours views if n
  * Lap display formatting is done through flags such as {@link #LAP_FMT_FLAG_DELTA}
  * and the nested class {@link Clock.LapFormatter}.
  */
-public class Clock {
+public class Clock extends Stopwatch {
 
 	/**
 	 * Hour field format: Hide hours if 0 (default value).
@@ -90,9 +98,9 @@ public class Clock {
 	public static final int HOUR_FMT_ALWAYS_SHOW = 1;
 
 	/**
-	 * Hour field format: No hours field, {@link #min minutes} keep increasing past 60.
+	 * Hour field format: No hours field, {@link TimeSnapshot#min minutes} keep increasing past 60.
 	 * Current setting is in {@link LapFormatter#hourFormat}.
-	 * When this format is active, {@link #hour} is always 0.
+	 * When this format is active, {@link TimeSnapshot#hour} is always 0.
 	 * @since 1.6
 	 */
 	public static final int HOUR_FMT_MINUTES_PAST_60 = 2;
@@ -110,18 +118,6 @@ public class Clock {
 	/** Lap time format flag: System time. <tt>@hh:mm</tt> */
 	public static final int LAP_FMT_FLAG_SYSTIME = 4;
 
-	/**
-	 * Counting mode. Two possibilities:
-	 *<UL>
-	 *<LI> {@link Anstop#STOP_LAP} (0), counting up from 0
-	 *<LI> {@link Anstop#COUNTDOWN} (1), counting down from a time set by the user
-	 *</UL>
-	 * @see #getMode()
-	 * @see #changeMode(int)
-	 * @see #reset(int, int, int, int)
-	 */
-	private int v;
-
 	/**
 	 * Hour and Lap formatting flags and fields.
 	 * Read-only from {@link Anstop} class.
@@ -131,104 +127,31 @@ public class Clock {
 	 */
 	public LapFormatter lapf;
 
-	/** is the clock currently running? */
-	public boolean isStarted = false;
-
-	/** has the clock ran since its last reset? This is not an 'isPaused' flag, because
-	 *  it's set true when the counting begins and {@link #isStarted} is set true.
-	 *<P>
-	 *  <tt>wasStarted</tt> is set true by {@link #count()}, and false by {@link #reset(int, int, int, int)}.
-	 */
-	public boolean wasStarted = false;
-
-	clockThread threadS;
-	countDownThread threadC;
-	Anstop parent;
-	dsechandler dsech;
-	sechandler sech;
-	minhandler minh;
-	hourhandler hourh;
-	
-	/** Clock's deciseconds field (0.1 sec). */
-	int dsec = 0;
-
-	/** Clock's seconds field. */
-	int sec = 0;
-
-	/**
-	 * Clock's minutes field.
-	 *<P>
-	 * If {@link LapFormatter#hourFormat} == {@link #HOUR_FMT_MINUTES_PAST_60}, this may be 60 or more.
-	 */
-	int min = 0;
-
 	/**
-	 * Clock's hours field.
-	 *<P>
-	 * If {@link LapFormatter#hourFormat} == {@link #HOUR_FMT_MINUTES_PAST_60}, this is always 0.
-	 */
-	int hour = 0;
-
-	/**
-	 * For lap mode, the current lap number, or 1 if not lap mode.
-	 * If <tt>laps</tt> &gt; 1, at least 1 lap has been recorded
-	 * in {@link #lap_elapsed} and {@link #lap_systime}.
-	 */
-	int laps = 1;
-
-	/**
-	 * Elapsed time (milliseconds) of each lap, if lap mode.
-	 * Read-only outside this class, please.
-	 * The highest occupied index is ({@link #laps} - 2).
-	 * If this array is about to be filled, {@link #lap(StringBuffer)} will extend it.
-	 *<P>
-	 * Not persisted in {@link #fillSaveState(Bundle)} or {@link #fillSaveState(SharedPreferences)}.
-	 * Instead, current laps must be stored in the database.
-	 * @see #lap_systime
+	 * Our subscription to the shared {@link TickScheduler}, while {@link #isStarted}.
+	 * @since 1.6
 	 */
-	long[] lap_elapsed = new long[64];
+	private final ClockTicker ticker = new ClockTicker();
 
+	Anstop parent;
 	/**
-	 * System time (milliseconds) of each lap, if lap mode,
-	 * from {@link System#currentTimeMillis()}.
-	 * Read-only outside this class, please.
-	 * The highest occupied index is ({@link #laps} - 2).
-	 * If this array is about to be filled, {@link #lap(StringBuffer)} will extend it.
-	 *<P>
-	 * Not persisted in {@link #fillSaveState(Bundle)} or {@link #fillSaveState(SharedPreferences)}.
-	 * Instead, current laps must be stored in the database.
-	 * @see #lap_elapsed
+	 * Updates the {@link #parent}'s time display on the UI thread.
+	 * @see #postRender()
 	 */
-	long[] lap_systime = new long[64];
+	RenderHandler renderh;
 	
 	/**
-	 * For countdown mode, the initial seconds, minutes, hours,
-	 * as set by {@link #reset(int, int, int, int)},
-	 * stored as a total number of seconds.
-	 * Used by {@link #adjClockOnAppResume(boolean, long)}.
-	 */
-	private int countdnTotalSeconds = 0;  
-
-	/**
-	 * If running, the actual start time, and the adjusted start time after pauses.
-	 * (If there are no pauses, they are identical.  Otherwise, the difference
-	 * is the amount of paused time.)
+	 * The clock's hours, minutes, seconds and deciseconds, published together as one immutable value.
+	 * Written by the UI thread and by the counting thread; any thread can read a consistent
+	 * set of fields with one {@link AtomicReference#get()}, without locking.
 	 *<P>
-	 * When counting up, the amount of time on the clock
-	 * is the current time minus <tt>clockStartTimeAdj</tt>
-	 *<P>
-	 * Taken from {@link System#currentTimeMillis()}.
-	 * @since 1.3
-	 */
-	private long startTimeActual, startTimeAdj;
-
-	/**
-	 * If {@link #wasStarted}, and ! {@link #isStarted}, the
-	 * current time when the clock was paused by calling {@link #count()}
-	 * (taken from {@link System#currentTimeMillis()}).
-	 * Otherwise -1.
+	 * The counting thread publishes with {@link AtomicReference#compareAndSet(Object, Object) compareAndSet},
+	 * so that a tick calculated just as {@link #count()} stops the clock can't overwrite the stop time.
+	 * @see #getTime()
+	 * @see #getTimeNow()
+	 * @since 1.6
 	 */
-	private long stopTime;
+	private final AtomicReference<TimeSnapshot> time = new AtomicReference<TimeSnapshot>(TimeSnapshot.ZERO);
 
 	/**
 	 * Time when {@link android.app.Activity#onPause() Activity.onPause()} was called, or <tt>-1L</tt>.
@@ -244,20 +167,15 @@ public class Clock {
 	
 	
 	public Clock(Anstop parent) {
+		super(Anstop.STOP_LAP);
 		this.parent = parent;
 		lapf = new LapFormatter();
 
-		dsech = new dsechandler();
-		sech = new sechandler();
-		minh = new minhandler();
-		hourh = new hourhandler();
+		renderh = new RenderHandler();
 
 		// these are also set in reset(), along with other state fields
 		appPauseTime = -1L;
 		appStateRestoreTime = -1L;
-		stopTime = -1L;
-		startTimeActual = -1L;
-		startTimeAdj = -1L;
 	}
 	
 	/**
@@ -266,14 +184,13 @@ public class Clock {
 	 *<UL>
 	 * <LI> clockActive  1 or 0
 	 * <LI> clockWasActive  1 or 0
-	 * <LI> clockAnstopCurrent  mode (clock.v; was anstop.current before those were combined)
+	 * <LI> clockAnstopCurrent  mode (clock.mode; was anstop.current before those were combined)
 	 * <LI> clockAnstopWroteStart  anstop.wroteStartTime flag: boolean
 	 * <LI> clockDigits  if clockActive: array hours, minutes, seconds, dsec
 	 * <LI> clockComment   comment text, if any (String)
 	 * <LI> clockLapCount  lap count, including current lap (starts at 1, not 0)
-	 * <LI> clockLaps  lap text, if any (CharSequence here; String in {@link #fillSaveState(SharedPreferences)})
-	 * <LI> clockLapsElapsed  each lap's elapsed time ({@link #lap_elapsed}[]), if {@link #laps} &gt; 1
-	 * <LI> clockLapsSystime  each lap's wall-clock time ({@link #lap_systime}[]), if {@link #laps} &gt; 1
+	 * <LI> clockLapsElapsed  each lap's elapsed time ({@link LapStore#copyElapsed()}), if any laps
+	 * <LI> clockLapsSystime  each lap's wall-clock time ({@link LapStore#copySystime()}), if any laps
 	 * <LI> clockStateSaveTime current time when bundle saved, from {@link System#currentTimeMillis()}
 	 * <LI> clockStartTimeActual  actual time when clock was started, from {@link System#currentTimeMillis()}
 	 * <LI> clockStartTimeAdj  <tt>clockStartTimeActual</tt> adjusted forward to remove any
@@ -296,9 +213,10 @@ public class Clock {
 		// be sure to add it in both copies of
 		// fillSaveState and of restoreFromSaveState.
 
-		outState.putInt("clockAnstopCurrent", v);
+		outState.putInt("clockAnstopCurrent", mode);
 		outState.putBoolean("clockAnstopWroteStart", parent.wroteStartTime);
-		int[] hmsd = new int[]{ hour, min, sec, dsec };
+		final TimeSnapshot t = getTimeNow();
+		int[] hmsd = new int[]{ t.hour, t.min, t.sec, t.dsec };
 		outState.putIntArray("clockDigits", hmsd);
 		outState.putInt("clockActive", isStarted ? 1 : 0);
 		outState.putInt("clockWasActive", wasStarted ? 1 : 0);
@@ -312,15 +230,11 @@ public class Clock {
 			outState.putString("clockComment", parent.comment);
 		else
 			outState.putString("clockComment", "");
-		outState.putInt("clockLapCount", laps);
-		if (parent.lapView != null)
-			outState.putCharSequence("clockLaps", parent.laps);
-		else
-			outState.putCharSequence("clockLaps", "");
-		if (laps > 1)
+		outState.putInt("clockLapCount", lapStore.size() + 1);
+		if (lapStore.size() > 0)
 		{
-			outState.putLongArray("clockLapsElapsed", lap_elapsed);
-			outState.putLongArray("clockLapsSystime", lap_systime);
+			outState.putLongArray("clockLapsElapsed", lapStore.copyElapsed());
+			outState.putLongArray("clockLapsSystime", lapStore.copySystime());
 		}
 		outState.putLong("clockStartTimeActual", startTimeActual);
 		outState.putLong("clockStartTimeAdj", startTimeAdj);
@@ -342,6 +256,9 @@ public class Clock {
 	 *<P>
 	 * Always sets long {@code "anstop_state_clockStateSaveTime"} to {@link System#currentTimeMillis()}
 	 * and sets boolean {@code "anstop_in_use"} to the value returned by {@link #isInUse()}.
+	 *<P>
+	 * Called on the UI thread after each lap and button press, so on API 9 and newer the
+	 * preferences are saved with <tt>apply()</tt> instead of waiting for <tt>commit()</tt>.
 	 *
 	 * @param outState SharedPreferences to save into
 	 * @return true if clock was running, false otherwise
@@ -363,17 +280,18 @@ public class Clock {
 			outPref.putBoolean("anstop_in_use", false);			
 		} else {
 			outPref.putBoolean("anstop_in_use", true);
+			final TimeSnapshot t = getTimeNow();
 
 			// Reminder: If you add a bundle key,
 			// be sure to add it in both copies of
 			// fillSaveState and of restoreFromSaveState.
 
-			outPref.putInt("anstop_state_current", v);
+			outPref.putInt("anstop_state_current", mode);
 			outPref.putBoolean("anstop_state_wroteStart", parent.wroteStartTime);
-			outPref.putInt("anstop_state_clockDigits_h", hour);
-			outPref.putInt("anstop_state_clockDigits_m", min);
-			outPref.putInt("anstop_state_clockDigits_s", sec);
-			outPref.putInt("anstop_state_clockDigits_d", dsec);
+			outPref.putInt("anstop_state_clockDigits_h", t.hour);
+			outPref.putInt("anstop_state_clockDigits_m", t.min);
+			outPref.putInt("anstop_state_clockDigits_s", t.sec);
+			outPref.putInt("anstop_state_clockDigits_d", t.dsec);
 			outPref.putBoolean("anstop_state_clockActive", isStarted);
 			outPref.putBoolean("anstop_state_clockWasActive", wasStarted);
 			outPref.putInt("anstop_state_hourFormat", lapf.hourFormat);
@@ -385,11 +303,7 @@ public class Clock {
 				outPref.putString("anstop_state_clockComment", parent.comment);
 			else
 				outPref.putString("anstop_state_clockComment", "");
-			outPref.putInt("anstop_state_clockLapCount", laps);
-			if (parent.lapView != null)
-				outPref.putString("anstop_state_clockLaps", parent.laps.toString());
-			else
-				outPref.putString("anstop_state_clockLaps", "");
+			outPref.putInt("anstop_state_clockLapCount", lapStore.size() + 1);
 			outPref.putLong("anstop_state_clockStartTimeActual", startTimeActual);
 			outPref.putLong("anstop_state_clockStartTimeAdj", startTimeAdj);
 			if (parent.hourSpinner != null)
@@ -404,7 +318,10 @@ public class Clock {
 				outPref.putInt("anstop_state_clockCountSec", 0);
 			}
 		}
-		outPref.commit();
+		if (Build.VERSION.SDK_INT >= 9)
+			outPref.apply();  // writes to disk in the background; finished before the activity stops
+		else
+			outPref.commit();
 
 		return isStarted;
 	}
@@ -417,16 +334,8 @@ public class Clock {
 	public void onAppPause()
 	{
 		appPauseTime = System.currentTimeMillis();
-		if((threadS != null) && threadS.isAlive())
-		{
-			threadS.interrupt();
-			threadS = null;
-		}
-		if((threadC != null) && threadC.isAlive())
-		{
-			threadC.interrupt();
-			threadC = null;
-		}
+		TickScheduler.getInstance().unsubscribe(ticker);
+		renderh.stopFrames();
 	}
 
 	/**
@@ -440,22 +349,17 @@ public class Clock {
 		if (! isStarted)
 			return;
 
-		if (appPauseTime > appStateRestoreTime)
+		if (monoStartAdj != -1L)
+		{
+			// The monotonic clock kept going while we were paused
+			time.set(new TimeSnapshot(getElapsedMonoMillis(SystemClock.elapsedRealtime()), lapf.hourFormat));
+			adjClockOnAppResume(true, 0L);
+		}
+		else if (appPauseTime > appStateRestoreTime)
 			adjClockOnAppResume(false, System.currentTimeMillis());
 
-		if(v == Anstop.STOP_LAP) {
-			if((threadS != null) && threadS.isAlive())
-				threadS.interrupt();
-			threadS = new clockThread();
-			threadS.start();
-		}
-		else {
-			// Anstop.COUNTDOWN
-			if((threadC != null) && threadC.isAlive())
-				threadC.interrupt();
-			threadC = new countDownThread();
-			threadC.start();
-		}
+		TickScheduler.getInstance().subscribe(ticker);
+		renderh.startFrames();
 	}
 
 	/**
@@ -480,17 +384,14 @@ public class Clock {
 		if ((inState == null) || ! inState.containsKey("clockActive"))
 			return false;
 
-		// set v to ensure consistent state; should be set already
+		// set mode to ensure consistent state; should be set already
 		// by changeMode before this method was called.
-		v = inState.getInt("clockAnstopCurrent");
+		mode = inState.getInt("clockAnstopCurrent");
 
 		// read the counting fields
 		{
 			final int[] hmsd = inState.getIntArray("clockDigits");
-			hour = hmsd[0];
-			min  = hmsd[1];
-			sec  = hmsd[2];
-			dsec = hmsd[3];
+			time.set(new TimeSnapshot(hmsd[0], hmsd[1], hmsd[2], hmsd[3]));
 		}
 
 		final boolean bundleClockActive = (1 == inState.getInt("clockActive"));
@@ -502,32 +403,24 @@ public class Clock {
 		stopTime = inState.getLong("clockStopTime", -1L);
 		parent.wroteStartTime = inState.getBoolean("clockAnstopWroteStart", false);
 
-		boolean hadLapText = false;
-		laps = inState.getInt("clockLapCount", 1);
-		if (parent.lapView != null)
+		final int lapCount = inState.getInt("clockLapCount", 1) - 1;
+		lapStore.clear();
+		if (lapCount > 0)
 		{
-			parent.laps = new StringBuilder();
-			CharSequence laptext = inState.getCharSequence("clockLaps");
-			if ((laptext != null) && (laptext.length() > 0))
-			{
-				parent.laps.append(laptext);
-				hadLapText = true;
-			}
-		}
-		if (laps > 1)
-		{
-			lap_elapsed = inState.getLongArray("clockLapsElapsed");
-			lap_systime = inState.getLongArray("clockLapsSystime");
+			final long[] elapsed = inState.getLongArray("clockLapsElapsed"),
+			             systimes = inState.getLongArray("clockLapsSystime");
+			lapStore.addAll(elapsed, systimes,
+				Math.min(lapCount, Math.min(elapsed.length, systimes.length)));
 		}
 
 		parent.comment = inState.getString("clockComment");
 		if ((parent.comment != null) && (parent.comment.length() == 0))
 			parent.comment = null;
-		if ((parent.comment == null) && ! hadLapText)
+		if ((parent.comment == null) && (parent.lapView == null))
 			parent.wroteStartTime = false;
 
 		if ((parent.comment != null) || (parent.lapView != null) || ! parent.wroteStartTime)
-			parent.updateStartTimeCommentLapsView(false);
+			parent.updateStartTimeCommentLapsView();
 
 		if (parent.hourSpinner != null)
 		{
@@ -543,12 +436,13 @@ public class Clock {
 			countdnTotalSeconds = 0;
 		}
 
-		if((threadS != null) && threadS.isAlive())
-			threadS.interrupt();
-		if((threadC != null) && threadC.isAlive())
-			threadC.interrupt();
+		TickScheduler.getInstance().unsubscribe(ticker);
+
+		// count() will recalculate these from the restored fields
+		monoStartAdj = -1L;
+		monoStopTime = -1L;
 
-		// Adjust and continue the clock thread:
+		// Adjust and continue counting:
 		// re-read current time for most accuracy
 		if (bundleClockActive)
 		{
@@ -584,9 +478,9 @@ public class Clock {
 	 * unless we've counted down to 0:0:0.
 	 * For the preference contents, see {@link #fillSaveState(SharedPreferences)}.
 	 *<P>
-	 * <b>Reminder:</b> {@link #lap_elapsed} and {@link #lap_systime} aren't restored here,
-	 * unlike {@link #restoreFromSaveState(Bundle)}, although the {@link #laps} counter is
-	 * restored.  Please restore the lap data from the database after calling this method.
+	 * <b>Reminder:</b> The {@link #lapStore} isn't restored here, unlike {@link #restoreFromSaveState(Bundle)};
+	 * it's cleared.  If <tt>"anstop_state_clockLapCount"</tt> &gt; 1, please restore the lap data
+	 * from the database after calling this method.
 	 *
 	 * @param inState  preferences containing our state
 	 * @return true if clock was running when saved, false otherwise
@@ -599,16 +493,17 @@ public class Clock {
 
 		appStateRestoreTime = restoredAtTime;
 
-		// set v to ensure consistent state; should be set already
+		// set mode to ensure consistent state; should be set already
 		// by changeMode before this method was called.
-		v = inState.getInt("anstop_state_current", Anstop.STOP_LAP);
+		mode = inState.getInt("anstop_state_current", Anstop.STOP_LAP);
 
 		// read the counting fields
 		{
-			hour = inState.getInt("anstop_state_clockDigits_h", 0);
-			min  = inState.getInt("anstop_state_clockDigits_m", 0);
-			sec  = inState.getInt("anstop_state_clockDigits_s", 0);
-			dsec = inState.getInt("anstop_state_clockDigits_d", 0);
+			time.set(new TimeSnapshot
+				(inState.getInt("anstop_state_clockDigits_h", 0),
+				 inState.getInt("anstop_state_clockDigits_m", 0),
+				 inState.getInt("anstop_state_clockDigits_s", 0),
+				 inState.getInt("anstop_state_clockDigits_d", 0)));
 		}
 
 		final boolean bundleClockActive = inState.getBoolean("anstop_state_clockActive", false);
@@ -620,26 +515,15 @@ public class Clock {
 		stopTime = inState.getLong("anstop_state_clockStopTime", -1L);
 		parent.wroteStartTime = inState.getBoolean("anstop_state_wroteStart", false);
 
-		boolean hadLapText = false;
-		laps = inState.getInt("anstop_state_clockLapCount", 1);
-		if (parent.lapView != null)
-		{
-			parent.laps = new StringBuilder();
-			String laptext = inState.getString("anstop_state_clockLaps", "");
-			if (laptext.length() > 0)
-			{
-				parent.laps.append(laptext);
-				hadLapText = true;
-			}
-		}
+		lapStore.clear();  // caller will restore them from the database
 
 		parent.comment = inState.getString("anstop_state_clockComment", null);
 		if ((parent.comment != null) && (parent.comment.length() == 0))
 			parent.comment = null;
-		if ((parent.comment == null) && ! hadLapText)
+		if ((parent.comment == null) && (parent.lapView == null))
 			parent.wroteStartTime = false;
 		if ((parent.comment != null) || (parent.lapView != null) || ! parent.wroteStartTime)
-			parent.updateStartTimeCommentLapsView(false);
+			parent.updateStartTimeCommentLapsView();
 
 		if (parent.hourSpinner != null)
 		{
@@ -655,12 +539,13 @@ public class Clock {
 			countdnTotalSeconds = 0;
 		}
 
-		if((threadS != null) && threadS.isAlive())
-			threadS.interrupt();
-		if((threadC != null) && threadC.isAlive())
-			threadC.interrupt();
+		TickScheduler.getInstance().unsubscribe(ticker);
 
-		// Adjust and continue the clock thread:
+		// count() will recalculate these from the restored fields
+		monoStartAdj = -1L;
+		monoStopTime = -1L;
+
+		// Adjust and continue counting:
 		// re-read current time for most accuracy
 		if (bundleClockActive)
 		{
@@ -682,7 +567,7 @@ public class Clock {
 	}
 
 	/**
-	 * Adjust the clock fields ({@link #hour}, {@link #min}, etc)
+	 * Adjust the clock fields ({@link #time})
 	 * and the display fields ({@link Anstop#hourView}, etc)
 	 * based on the application being paused for a period of time.
 	 *<P>
@@ -695,7 +580,7 @@ public class Clock {
 	 * Used with {@link #onAppResume()} and {@link #restoreFromSaveState(Bundle)}.
 	 *
 	 * @param adjDisplayOnly  If true, update the display fields based on
-	 *    the current hour, min, sec, dsec internal field values,
+	 *    the current {@link #time} fields,
 	 *    instead of adjusting those internal values.
 	 *    <tt>savedAtTime</tt>, <tt>resumedAtTime</tt> are ignored.
 	 * @param resumedAtTime  Time when the app was resumed, from {@link System#currentTimeMillis()}
@@ -708,7 +593,7 @@ public class Clock {
 			long ttotal;
 
 			// based on our mode, adjust dsec, sec, min, hour:
-			switch (v)
+			switch (mode)
 			{
 			case Anstop.STOP_LAP:
 				ttotal = resumedAtTime - startTimeAdj;
@@ -721,50 +606,108 @@ public class Clock {
 					ttotal = 0;  // don't go past end of countdown
 			}
 
-			dsec = ((int) (ttotal % 1000L)) / 100;
-			ttotal /= 1000L;
-			sec = (int) (ttotal % 60L);
-			ttotal /= 60L;
-			if (lapf.hourFormat != HOUR_FMT_MINUTES_PAST_60)
-			{
-				min = (int) (ttotal % 60L);
-				ttotal /= 60L;
-				hour = (int) ttotal;
-			} else {
-				min = (int) ttotal;
-				hour = 0;
-			}
+			time.set(new TimeSnapshot(ttotal, lapf.hourFormat));
 		}
 
-		if (parent.dsecondsView != null)
-			parent.dsecondsView.setText(Integer.toString(dsec));
-		if (parent.secondsView != null)
-			parent.secondsView.setText(lapf.nf.format(sec));
-		if (parent.minView != null)
-			parent.minView.setText(lapf.nf.format(min));
-		if (parent.hourView != null)
-			parent.hourView.setText(Integer.toString(hour));
+		// We're on the UI thread: Redraw now, not at the next tick
+		renderh.removeMessages(RenderHandler.MSG_RENDER);
+		renderh.invalidate();
+		renderh.render(time.get());
+	}
+
+	/**
+	 * Ask {@link #renderh} to show the most recently published {@link #time} on the UI thread.
+	 * Can be called from any thread.  If a previous request is still waiting, it's replaced by this one,
+	 * so the UI thread never falls behind by more than one frame.
+	 * @since 1.6
+	 */
+	private void postRender()
+	{
+		renderh.removeMessages(RenderHandler.MSG_RENDER);
+		renderh.sendEmptyMessage(RenderHandler.MSG_RENDER);
 	}
 
+	/**
+	 * Get the clock's most recently published hours, minutes, seconds and deciseconds.
+	 * While the clock is running, this is the value from the latest tick,
+	 * which is what the display shows; for the exact current value use {@link #getTimeNow()}.
+	 * Can be called from any thread.
+	 * @return  the current time fields; not null
+	 * @since 1.6
+	 */
+	TimeSnapshot getTime() { return time.get(); }
+
+	/**
+	 * Get the clock's hours, minutes, seconds and deciseconds as of right now.
+	 * While running, they're calculated from the monotonic clock instead of
+	 * waiting for the next tick.  Can be called from any thread.
+	 * @return  the current time fields; not null
+	 * @see #getTime()
+	 * @since 1.6
+	 */
+	TimeSnapshot getTimeNow()
+	{
+		if (isStarted && (monoStartAdj != -1L))
+			return new TimeSnapshot(getElapsedMonoMillis(SystemClock.elapsedRealtime()), lapf.hourFormat);
+
+		return time.get();
+	}
+
+	/**
+	 * Like {@link #getTimeNow()}, but while running, fill a caller-owned scratch snapshot
+	 * instead of allocating a new one.  For {@link RenderHandler}'s frame loop.
+	 * @param scratch  Snapshot to fill; never one published in {@link #time}
+	 * @return  <tt>scratch</tt> if running, otherwise the published {@link #time}
+	 * @since 1.6
+	 */
+	TimeSnapshot getTimeNow(final TimeSnapshot scratch)
+	{
+		if (isStarted && (monoStartAdj != -1L))
+		{
+			scratch.set(getElapsedMonoMillis(SystemClock.elapsedRealtime()), lapf.hourFormat);
+			return scratch;
+		}
+
+		return time.get();
+	}
+
+	/**
+	 * Get the milliseconds shown on the clock while it's not running.
+	 * @return  {@link #time}'s total milliseconds
+	 * @since 1.6
+	 */
+	@Override
+	protected long getHeldMillis() { return time.get().millis; }
+
 	/**
 	 * Get the current value of this timer.
-	 * @return a stringbuffer of the form "#h mm:ss:d"
+	 * @return a stringbuffer of the form "#h mm:ss:d", or "#h mm:ss:dd"
+	 *    if {@link LapFormatter#hundredths lapf.hundredths}
 	 * @since 1.3
 	 * @see #getCurrentValueMillis()
 	 */
 	public StringBuffer getCurrentValue()
 	{
-		StringBuffer sb = new StringBuffer();
-		if ((hour > 0) || (lapf.hourFormat == HOUR_FMT_ALWAYS_SHOW))
+		final TimeSnapshot t = getTimeNow();
+		final char[] buf = new char[(2 * DigitFormatter.MAX_DIGITS) + 8];
+		int L = 0;
+		if ((t.hour > 0) || (lapf.hourFormat == HOUR_FMT_ALWAYS_SHOW))
 		{
-			sb.append(hour);
-			sb.append("h ");
+			L = DigitFormatter.putInt(buf, L, t.hour);
+			buf[L++] = 'h';
+			buf[L++] = ' ';
 		}
-		sb.append(lapf.nf.format(min));
-		sb.append(':');
-		sb.append(lapf.nf.format(sec));
-		sb.append(':');
-		sb.append(dsec);
+		L = DigitFormatter.put2(buf, L, t.min);
+		buf[L++] = ':';
+		L = DigitFormatter.put2(buf, L, t.sec);
+		buf[L++] = ':';
+		if (lapf.hundredths)
+			L = DigitFormatter.put2(buf, L, t.csec);
+		else
+			L = DigitFormatter.putInt(buf, L, t.dsec);
+
+		StringBuffer sb = new StringBuffer(L);
+		sb.append(buf, 0, L);
 		return sb;
 	}
 
@@ -774,74 +717,47 @@ public class Clock {
 	 *    current value in the format "#h mm:ss:d" will be appended to sb
 	 *    depending on {@link #lapFormatFlags}.
 	 *    if {@link #lapFormatFlags} includes {@link #LAP_FMT_FLAG_DELTA},
-	 *    and {@link #laps} &gt; 1, then {@link #lap_elapsed}[{@link #laps} - 2]
-	 *    must be accurate to calculate the delta.
+	 *    the delta is calculated from the last lap in {@link #lapStore}.
 	 * @param withLap  If true, sb will have the lap number too;
 	 *    sb's appended format will be "lap. #h mm:ss:d"
-	 * @return the number of milliseconds representing the timer's
-	 *    current hours, minutes, seconds, and dsec
+	 * @return the number of milliseconds on the timer right now, calculated from the
+	 *    monotonic clock while running; not rounded to the displayed deciseconds
 	 * @since 1.5
 	 * @see #getCurrentValue()
 	 */
 	public long getCurrentValueMillis(StringBuilder sb, final boolean withLap)
 	{
-		// copy fields first, in case they're about to increment in the other thread
-		final int ds = dsec, s = sec, m = min, h = hour;
-		final long elapsedMillis =
-			(((h * 60 + m) * 60 + s)
-			 * 10 + ds) * 100L;
+		// one consistent snapshot, even if the counting thread is about to tick
+		final TimeSnapshot t = getTimeNow();
+		final long elapsedMillis = t.millis;
 
 		lapf.formatTimeLap
-			(sb, withLap, h, m, s, ds,
-			 laps, elapsedMillis, System.currentTimeMillis(),
-			 lap_elapsed);
+			(sb, withLap, t.hour, t.min, t.sec, t.dsec,
+			 lapStore.size() + 1, elapsedMillis, System.currentTimeMillis(),
+			 lapStore.getLastElapsed());
 		return elapsedMillis;
 	}
 
 	/**
 	 * Write all laps into <tt>sb</tt> using the current format flags.
-	 * If {@link #laps} is 1, do nothing.
+	 * If {@link #lapStore} is empty, do nothing.
 	 * @param sb  StringBuffer to write into; not null
 	 */
 	public void formatTimeAllLaps(StringBuilder sb)
 		throws IllegalArgumentException
 	{
-		lapf.formatTimeAllLaps(sb, laps, lap_elapsed, lap_systime);
+		lapf.formatTimeAllLaps(sb, lapStore);
 	}
 
-	/**
-	 * Get the actual start time.
-	 * @return Start time, of the form used by {@link System#currentTimeMillis()},
-	 *   or -1L if never started.
-	 */
-	public long getStartTimeActual() { return startTimeActual; }
-
-	/**
-	 * Get the actual stop time, if any.
-	 * @return  If {@link #wasStarted}, and ! {@link #isStarted}, the
-	 * current time when the clock was paused by calling {@link #count()}
-	 * (taken from {@link System#currentTimeMillis()}).
-	 * Otherwise -1.
-	 */
-	public long getStopTime() { return stopTime; }
-
 	/**
 	 * Is the clock active or in use?
 	 * @return true if <tt>isStarted</tt> or if hours, minutes, seconds or dsec are not 0.
 	 */
-	public boolean isInUse() { return isStarted || (hour > 0) || (min > 0) || (sec > 0) || (dsec > 0); }
-
-	/**
-	 * Get the clock's current counting mode.
-	 * @return  the mode; {@link Anstop#STOP_LAP} or {@link Anstop#COUNTDOWN}
-	 * @see #changeMode(int)
-	 * @see #reset(int, int, int, int)
-	 */
-	public int getMode() { return v; }
+	public boolean isInUse() { return isStarted || ! time.get().isZero(); }
 
 	/**
-	 * Set the clock's {@link LapFormatter#hourFormat}, adjusting {@link #hour} and
-	 * {@link #min} if necessary (minutes past 60 and hours to 0, or reversing that).
+	 * Set the clock's {@link LapFormatter#hourFormat}, adjusting {@link TimeSnapshot#hour} and
+	 * {@link TimeSnapshot#min} if necessary (minutes past 60 and hours to 0, or reversing that).
 	 * @param newFormat  An hour format: {@link #HOUR_FMT_HIDE_IF_0},
 	 *     {@link #HOUR_FMT_ALWAYS_SHOW}, or {@link #HOUR_FMT_MINUTES_PAST_60}
 	 * @throws IllegalArgumentException if {@code newFormat} isn't a known format constant
@@ -856,29 +772,40 @@ public class Clock {
 		lapf.setHourFormat(newFormat);  // throws IllegalArgumentException if out of range
 
 		if (wasMinPast60 != newMinPast60) {
-			boolean wantsRefresh = false;
-
-			if (newMinPast60) {
-				if (hour > 0) {
-					min += (60 * hour);
-					hour = 0;
-					wantsRefresh = true;
-				}
-			} else {
-				if (min >= 60) {
-					hour = (min / 60);
-					min  = (min % 60);
-					wantsRefresh = true;
-				}
-			}
+			final TimeSnapshot t = time.get();
+			final boolean wantsRefresh = (newMinPast60) ? (t.hour > 0) : (t.min >= 60);
 
 			if (wantsRefresh) {
-				hourh.sendEmptyMessage(Thread.MAX_PRIORITY);
-				minh.sendEmptyMessage(Thread.MAX_PRIORITY);
+				time.set(new TimeSnapshot(t.millis, newFormat));
+				postRender();
 			}
 		}
 	}
 
+	/**
+	 * Show or hide hundredths of a second, in the display and in lap text.
+	 * When shown, the {@link Anstop#dsecondsView} has 2 digits and is redrawn
+	 * once per display frame while the clock is running, instead of at each tick;
+	 * see {@link RenderHandler#startFrames()}.  Lap times are always recorded to the
+	 * millisecond, whether or not hundredths are shown.
+	 * @param show  True to show hundredths, false for deciseconds
+	 * @see LapFormatter#hundredths
+	 * @since 1.6
+	 */
+	public void setShowHundredths(final boolean show)
+	{
+		if (show == lapf.hundredths)
+			return;
+
+		lapf.hundredths = show;
+		renderh.invalidate();
+		postRender();
+		if (show)
+			renderh.startFrames();
+		else
+			renderh.stopFrames();
+	}
+
 	/**
 	 * Set the lap format flags.
 	 * @param newFormatFlags  Collection of flags, such as {@link #LAP_FMT_FLAG_DELTA}; not 0
@@ -897,11 +824,10 @@ public class Clock {
 
 	/**
 	 * Take a lap now.  Optionally append the current lap time to a buffer.
+	 * The lap's elapsed time is read from the monotonic clock at the moment of this call,
+	 * to the millisecond, so its cost doesn't depend on how often the display is redrawn.
 	 *<P>
-	 * If not {@link #wasStarted}, sets that flag so the new lap time-of-day info
-	 * won't be lost without UI confirmation if Reset button is pressed.
-	 * If also not {@link #isStarted} and the hh:mm:ss:d fields are all 0,
-	 * sets the start time and stop time to the lap's time of day.
+	 * See {@link #recordLap(long, long)} for the effect on {@link #wasStarted} and the start time.
 	 *
 	 * @param sb  Null or a buffer to which the lap info
 	 *    will be appended, in the format "lap. #h mm:ss:d"
@@ -913,37 +839,8 @@ public class Clock {
 	{
 		final long lapNow = System.currentTimeMillis(),
 		           lapElapsed = getCurrentValueMillis(sb, true);  // appends sb
-		final int lapnum = laps++;
-		final int i = lapnum - 1;
-		if (i >= lap_systime.length)
-		{
-			// copy the lap arrays
-			final int L = lap_systime.length,
-			          Lnew = L + 64;
-			long[] systi = new long[Lnew],
-			       elaps = new long[Lnew];
-			System.arraycopy(lap_systime, 0, systi, 0, L);
-			System.arraycopy(lap_elapsed, 0, elaps, 0, L);
-			lap_systime = systi;
-			lap_elapsed = elaps;
-		}
-		lap_systime[i] = lapNow;
-		lap_elapsed[i] = lapElapsed;
-
-		if (! wasStarted)
-		{
-			wasStarted = true;
 
-			if ((! isStarted) && (hour == 0) && (min == 0)
-			    && (sec == 0) && (dsec == 0))
-			{
-				startTimeActual = lapNow;
-				startTimeAdj = lapNow;
-				stopTime = lapNow;
-			}
-		}
-
-		return lapnum;
+		return recordLap(lapElapsed, lapNow);
 	}
 
 	/**
@@ -963,34 +860,22 @@ public class Clock {
 		if (isStarted)
 			return false;
 
-		if (newMode != -1)
-			v = newMode;
-
-		wasStarted = false;
+		resetState(newMode, ((h * 60) + m) * 60 + s);
 		appPauseTime = -1L;
 		appStateRestoreTime = -1L;
-		stopTime = -1L;
-		startTimeActual = -1L;
-		startTimeAdj = -1L;
+		renderh.invalidate();  // caller may set the views directly
 
-		laps = 1;
-		if (v == Anstop.STOP_LAP)
+		if (mode == Anstop.STOP_LAP)
 		{
-			hour = 0;
-			min = 0;
-			sec = 0;
+			time.set(TimeSnapshot.ZERO);
 		} else {  // COUNTDOWN
 			if (lapf.hourFormat != HOUR_FMT_MINUTES_PAST_60) {
-				hour = h;
+				time.set(new TimeSnapshot(h, m, s, 0));
 			} else {
 				m += (60 * h);
-				hour = 0;
+				time.set(new TimeSnapshot(0, m, s, 0));
 			}
-			min = m;
-			sec = s;
-			countdnTotalSeconds = ((h * 60) + m) * 60 + s;
 		}
-		dsec = 0;
 
 		return true;
 	}
@@ -1012,282 +897,370 @@ public class Clock {
 	 * Start or stop(pause) counting.
 	 *<P>
 	 * For <tt>COUNTDOWN</tt> mode, you must first call {@link #reset(int, int, int, int)}
-	 * or set the {@link #hour}, {@link #min}, {@link #sec} fields.
+	 * or restore the {@link #time} fields from a saved state.
 	 *<P>
 	 * If <tt>wasStarted</tt>, and if <tt>stopTime</tt> != -1,
 	 * will update <tt>startTimeAdj</tt>
 	 * (based on current time and <tt>stopTime</tt>)
-	 * before starting the counting thread.
+	 * before subscribing to {@link TickScheduler} ticks.
 	 * This assumes that the counting was recently paused by the
 	 * user, and is starting up again.
 	 */
 	public void count() {
-		final long now = System.currentTimeMillis();
+		final long now = System.currentTimeMillis(),
+		           monoNow = SystemClock.elapsedRealtime();
 
 		if(!isStarted) {
-
-			if (! wasStarted)
-			{
-				startTimeActual = now;
-				startTimeAdj = startTimeActual;
-			}
-			else if (stopTime != -1L)
+			if (start(now, monoNow))
 			{
-				startTimeAdj += (now - stopTime);
-			}
-
-			isStarted = true;
-			wasStarted = true;
-			if(v == Anstop.STOP_LAP) {
-				if((threadS != null) && threadS.isAlive())
-					threadS.interrupt();
-				threadS = new clockThread();
-				threadS.start();
+				TickScheduler.getInstance().subscribe(ticker);
+				renderh.startFrames();
 			}
-				
-			else {
-				// Anstop.COUNTDOWN
-				if((threadC != null) && threadC.isAlive())
-					threadC.interrupt();
-				if ((dsec > 0) || (sec > 0) || (min > 0) || (hour > 0))
-				{
-					threadC = new countDownThread();
-					threadC.start();
-				} else {
-					isStarted = false;
-				}
-			}
-			
-			
+			// else Anstop.COUNTDOWN, already at 0
 		}
 		else {
-			isStarted = false;
-			stopTime = now;
-			
-			if(v == Anstop.STOP_LAP) {
-				if(threadS.isAlive())
-					threadS.interrupt();
-			}
-				
-			else {
-				// Anstop.COUNTDOWN
-				if(threadC.isAlive())
-					threadC.interrupt();
-			}
+			final long shown = stop(now, monoNow);  // clears isStarted first
+			TickScheduler.getInstance().unsubscribe(ticker);
+			renderh.stopFrames();
+
+			// Show the exact time of the stop, not the most recent tick
+			time.set(new TimeSnapshot(shown, lapf.hourFormat));
+			postRender();
 		}
-			
 	}
 	
 	/**
-	 * Lap mode, count up from 0.
-	 * @see countDownThread
+	 * Vibrate pattern for {@link #cleanupAt0()}.
+	 * Short pulse of 80 ms, wait 50, vibrate 80.
 	 */
-	private class clockThread extends Thread {		
-		public clockThread() { setDaemon(true); }
+	private static final long[] VIB_PATTERN_MS = { 0, 80, 50, 80 };
 
-		@Override
-		public void run() {
-			
-			while(true) {
-				dsec++;
-				
-				if(dsec == 10) {
-					sec++;
-					dsec = 0;
-					sech.sendEmptyMessage(MAX_PRIORITY);
-				
-					if(sec == 60) {
-						min++;
-						sec = 0;
-						minh.sendEmptyMessage(MAX_PRIORITY);
-						
-						
-						if ((min >= 60) && (lapf.hourFormat != HOUR_FMT_MINUTES_PAST_60)) {
-							hour++;
-							min -= 60;
-							hourh.sendEmptyMessage(MAX_PRIORITY);
-							minh.sendEmptyMessage(MAX_PRIORITY);
-						}
-					}
-				}
-				
-				
-				dsech.sendEmptyMessage(MAX_PRIORITY);
-				
-				try {
-					sleep(100);
-				}
-				catch ( InterruptedException e) {
-					return;
+	/**
+	 * Call from the ticker when countdown reaches 00:00:00.0.
+	 * Unsubscribes from ticks, clears {@link Clock#isStarted} and re-enables Mode and Save menu items.
+	 * Vibrate twice if {@code vibrate_countdown_0} preference is set.
+	 */
+	private void cleanupAt0()
+	{
+		TickScheduler.getInstance().unsubscribe(ticker);
+		isStarted = false;
+
+		if (parent.modeMenuItem != null)
+		{
+			// re-enable menu items, using UI thread
+			// (avoids CalledFromWrongThreadException)
+
+			parent.startButton.post(new Runnable()
+			{
+				public void run()
+				{
+					parent.modeMenuItem.setEnabled(true);
+					parent.saveMenuItem.setEnabled(true);
 				}
+			});
+		}
+
+		final SharedPreferences settings
+			= PreferenceManager.getDefaultSharedPreferences(parent.mContext);
+
+		if (settings.getBoolean("vibrate_countdown_0", true))
+		{
+			Vibrator vib = (Vibrator) parent.getSystemService(Context.VIBRATOR_SERVICE);
+			if (vib != null)
+				vib.vibrate(VIB_PATTERN_MS, -1);
+		}
+
+		// After stopping, back up current state to SharedPreferences
+		// as when Start/Stop button is pressed
+		fillSaveState(settings);
+	}
+
+	/**
+	 * Our {@link TickScheduler} subscriber while counting.
+	 * Lap mode counts up from 0; countdown mode counts down to 0.
+	 * Each tick recalculates the fields from {@link Clock#monoStartAdj} and publishes them
+	 * to {@link Clock#time}, then asks for the next tick at the next 0.1-second boundary.
+	 * If {@link LapFormatter#hundredths lapf.hundredths}, the display is redrawn by
+	 * {@link RenderHandler}'s frame loop instead of after each tick.
+	 *<P>
+	 * Before counting down, set non-zero h:m:s.d by calling {@link Clock#reset(int, int, int, int)}.
+	 * Otherwise the countdown immediately stops at 00:00:00.0.
+	 */
+	private class ClockTicker implements TickScheduler.Listener {
+
+		public long onTick(final long monoNow) {
+			// Read time before isStarted: If count() has stopped the clock since then,
+			// its stop time is already published or the compareAndSet below will fail.
+			final TimeSnapshot prev = time.get();
+			if (! isStarted)
+				return 100;  // count() is unsubscribing us
+
+			final long shown = getElapsedMonoMillis(monoNow);
+			if (! time.compareAndSet(prev, new TimeSnapshot(shown, lapf.hourFormat)))
+				return 100;  // count() or the UI thread published a newer value
+			if ((! lapf.hundredths) || (shown == 0))
+				postRender();  // else the frame loop redraws; but show the countdown's final 0
+
+			if (mode == Anstop.STOP_LAP)
+				return 100 - (shown % 100);
+
+			// Anstop.COUNTDOWN
+			if (shown == 0)
+			{
+				cleanupAt0();
+				return 100;
 			}
-			
-			
+
+			// wake just after the displayed dsec changes
+			return (shown % 100) + 1;
 		}
-		
+
 	}
 	
 	/**
-	 * Countdown mode, count down to 0.
-	 * Before starting this thread, set non-zero h:m:s.d by calling {@link Clock#reset(int, int, int, int)}.
-	 * Otherwise the thread immediately stops at 00:00:00.0.
-	 * @see clockThread
+	 * The clock's hours, minutes, seconds and deciseconds at one moment, as an immutable value.
+	 * Published in {@link Clock#time} so that every thread sees all fields from the same tick.
+	 * A published snapshot is never changed; only the unpublished scratch snapshots
+	 * of {@link RenderHandler}'s frame loop are refilled, by {@link #set(long, int)}.
+	 * @since 1.6
 	 */
-	private class countDownThread extends Thread {
-		public countDownThread() { setDaemon(true); }
+	static final class TimeSnapshot {
+		/** A clock showing 0:00:00.0. */
+		static final TimeSnapshot ZERO = new TimeSnapshot(0, 0, 0, 0);
 
 		/**
-		 * Vibrate pattern for {@link #cleanupAt0()}.
-		 * Short pulse of 80 ms, wait 50, vibrate 80.
+		 * Total milliseconds: Elapsed time if counting up, remaining time if counting down.
+		 * Not rounded to a whole decisecond if this snapshot was calculated from the clock.
 		 */
-		private final long[] VIB_PATTERN_MS = { 0, 80, 50, 80 };
+		long millis;
+
+		/** Hours field. If {@link LapFormatter#hourFormat} == {@link Clock#HOUR_FMT_MINUTES_PAST_60}, this is always 0. */
+		int hour;
+
+		/** Minutes field. If {@link LapFormatter#hourFormat} == {@link Clock#HOUR_FMT_MINUTES_PAST_60}, this may be 60 or more. */
+		int min;
+
+		/** Seconds field. */
+		int sec;
+
+		/** Deciseconds field (0.1 sec). */
+		int dsec;
+
+		/** Hundredths of a second (0.01 sec), 0 - 99, for when {@link LapFormatter#hundredths} is set. */
+		int csec;
 
 		/**
-		 * Call from run() when countdown reaches 00:00:00.0.
-		 * Clears {@link Clock#isStarted} and re-enables Mode and Save menu items.
-		 * Vibrate twice if {@code vibrate_countdown_0} preference is set.
-		 * Thread should return after calling this method, it's reached the end of the countdown.
+		 * Snapshot of the given field values, such as those from a saved state.
 		 */
-		private void cleanupAt0()
-		{
-			isStarted = false;
+		TimeSnapshot(final int hour, final int min, final int sec, final int dsec) {
+			this.hour = hour;
+			this.min = min;
+			this.sec = sec;
+			this.dsec = dsec;
+			csec = dsec * 10;
+			millis = (((hour * 60L + min) * 60 + sec) * 10 + dsec) * 100;
+		}
 
-			if (parent.modeMenuItem != null)
-			{
-				// re-enable menu items, using UI thread
-				// (avoids CalledFromWrongThreadException)
+		/**
+		 * Snapshot of a count of milliseconds, split into fields.
+		 * @param ttotal  Milliseconds to show: Elapsed time if counting up, remaining time if counting down
+		 * @param hourFormat  Hour format, such as {@link Clock#HOUR_FMT_MINUTES_PAST_60}
+		 */
+		TimeSnapshot(final long ttotal, final int hourFormat) {
+			set(ttotal, hourFormat);
+		}
 
-				parent.startButton.post(new Runnable()
-				{
-					public void run()
-					{
-						parent.modeMenuItem.setEnabled(true);
-						parent.saveMenuItem.setEnabled(true);
-					}
-				});
+		/**
+		 * Split a count of milliseconds into this snapshot's fields.
+		 * Call only on a new or unpublished snapshot.
+		 * @param ttotal  Milliseconds to show: Elapsed time if counting up, remaining time if counting down
+		 * @param hourFormat  Hour format, such as {@link Clock#HOUR_FMT_MINUTES_PAST_60}
+		 */
+		void set(final long ttotal, final int hourFormat) {
+			millis = ttotal;
+			csec = ((int) (ttotal % 1000L)) / 10;
+			dsec = csec / 10;
+			final long tsec = ttotal / 1000L;
+			sec = (int) (tsec % 60L);
+			final long tmin = tsec / 60L;
+			if (hourFormat != HOUR_FMT_MINUTES_PAST_60)
+			{
+				min = (int) (tmin % 60L);
+				hour = (int) (tmin / 60L);
+			} else {
+				min = (int) tmin;
+				hour = 0;
 			}
+		}
+
+		/** Are all fields 0? */
+		boolean isZero() { return (hour == 0) && (min == 0) && (sec == 0) && (dsec == 0); }
+	}
 
-			final SharedPreferences settings
-				= PreferenceManager.getDefaultSharedPreferences(parent.mContext);
+	/**
+	 * Shows the published {@link Clock#time} in the {@link Clock#parent}'s hour, minute, second, dsec views.
+	 * Only the views whose digits have changed since the previous snapshot are updated.
+	 * Runs on the UI thread; see {@link Clock#postRender()}.
+	 *<P>
+	 * When {@link LapFormatter#hundredths lapf.hundredths} is set and the clock is running,
+	 * also runs a frame loop ({@link #startFrames()}) which redraws from the monotonic clock
+	 * once per display refresh.  Our build target predates <tt>android.view.Choreographer</tt>,
+	 * so frames are timed from {@link Display#getRefreshRate()} instead of the vsync signal.
+	 * @since 1.6
+	 */
+	class RenderHandler extends Handler {
 
-			if (settings.getBoolean("vibrate_countdown_0", true))
-			{
-				Vibrator vib = (Vibrator) parent.getSystemService(Context.VIBRATOR_SERVICE);
-				if (vib != null)
-					vib.vibrate(VIB_PATTERN_MS, -1);
-			}
+		/** Message type to show the current {@link Clock#time}; the message has no <tt>obj</tt>. */
+		static final int MSG_RENDER = 1;
 
-			// After stopping, back up current state to SharedPreferences
-			// as when Start/Stop button is pressed
-			fillSaveState(settings);
-		}
+		/** Message type for the next frame of {@link #startFrames()}'s loop. */
+		static final int MSG_FRAME = 2;
 
-		@Override
-		public void run() {
-			
-			
-			if(hour == 0 && min == 0 && sec == 0 && dsec == 0) {
-				cleanupAt0();
+		/**
+		 * Milliseconds per display frame, from the display's refresh rate, or 0 if not yet known.
+		 * Used only on the UI thread.
+		 */
+		private long frameMillis;
+
+		/**
+		 * Scheduled time of the next frame, from {@link SystemClock#uptimeMillis()},
+		 * while the frame loop is running.  Used only on the UI thread.
+		 */
+		private long nextFrameAt;
+
+		/**
+		 * The snapshot currently shown, or null if all views must be redrawn.
+		 * Used only on the UI thread.
+		 */
+		private TimeSnapshot shown;
 
+		/**
+		 * Scratch snapshots for the frame loop, filled by {@link Clock#getTimeNow(TimeSnapshot)}
+		 * so frames allocate nothing.  Two, so the one being filled is never {@link #shown},
+		 * which the next frame is compared with.  Used only on the UI thread.
+		 */
+		private final TimeSnapshot frameA = new TimeSnapshot(0, 0, 0, 0),
+			frameB = new TimeSnapshot(0, 0, 0, 0);
+
+		/**
+		 * Reusable digit buffers, one per view, for {@link android.widget.TextView#setText(char[], int, int)}.
+		 * A TextView keeps a reference to its buffer, so each view needs its own,
+		 * changed only just before that view's next <tt>setText</tt>.
+		 */
+		private final char[] dsecBuf = new char[2],
+			secBuf = new char[2],
+			minBuf = new char[DigitFormatter.MAX_DIGITS],
+			hourBuf = new char[DigitFormatter.MAX_DIGITS];
+
+		/**
+		 * The views' contents might have been changed elsewhere;
+		 * redraw all of them when the next snapshot is rendered.
+		 * Call only from the UI thread.
+		 */
+		void invalidate() { shown = null; }
+
+		/**
+		 * Start the frame loop if it's wanted: {@link LapFormatter#hundredths lapf.hundredths}
+		 * is set and the clock {@link Clock#isStarted}.  The loop stops by itself when either
+		 * of those becomes false.  Call only from the UI thread.
+		 * @see #stopFrames()
+		 */
+		void startFrames() {
+			if (! (isStarted && lapf.hundredths))
 				return;
-			}
-			
-			while(true) {
-				
-
-				
-				if(dsec == 0) {
-						
-					
-					if(sec == 0) {
-						if(min == 0) {
-							if(hour != 0) {
-								hour--;
-								min = 60;
-								hourh.sendEmptyMessage(MAX_PRIORITY);
-								minh.sendEmptyMessage(MAX_PRIORITY);
-								
-							}
-						}
-						
-						if(min != 0) {
-							min--;
-							sec = 60;
-							minh.sendEmptyMessage(MAX_PRIORITY);
-						}
-						
-					}					
-					
-					if(sec != 0) {
-						sec--;
-						dsec = 10;
-						sech.sendEmptyMessage(MAX_PRIORITY);
-					}
-										
-				}
-				dsec--;
-				
-				
-				
-				dsech.sendEmptyMessage(MAX_PRIORITY);
-				
-				try {
-					sleep(100);
-				}
-				catch ( InterruptedException e) {
-					return;
-				}
-				
-				
-				if(hour == 0 && min == 0 && sec == 0 && dsec == 0) {
-					cleanupAt0();
 
-					return;
+			if (frameMillis == 0)
+			{
+				float hz = 0;
+				final WindowManager wm = parent.getWindowManager();
+				if (wm != null)
+				{
+					final Display disp = wm.getDefaultDisplay();
+					if (disp != null)
+						hz = disp.getRefreshRate();
 				}
-					
+				if (hz < 10f)
+					hz = 60f;  // unknown or implausible rate
+				frameMillis = Math.max(1L, Math.round(1000f / hz));
 			}
-			
-			
-		}
-		
-	}
-	
-	private class dsechandler extends Handler {
-		@Override
-		public void handleMessage (Message msg) {
-			parent.dsecondsView.setText("" + dsec);
+
+			removeMessages(MSG_FRAME);
+			nextFrameAt = SystemClock.uptimeMillis();
+			sendEmptyMessage(MSG_FRAME);
 		}
-	}
-	
-	private class sechandler extends Handler {
-		@Override
-		public void handleMessage (Message msg) {
-			parent.secondsView.setText("" + lapf.nf.format(sec));
+
+		/**
+		 * Stop the frame loop, if running.  Call only from the UI thread.
+		 * @see #startFrames()
+		 */
+		void stopFrames() {
+			removeMessages(MSG_FRAME);
 		}
-	}
-	
-	private class minhandler extends Handler {
+
 		@Override
 		public void handleMessage (Message msg) {
-			parent.minView.setText("" + lapf.nf.format(min));
+			switch (msg.what)
+			{
+			case MSG_RENDER:
+				render(time.get());
+				break;
+
+			case MSG_FRAME:
+				if (! (isStarted && lapf.hundredths))
+					return;  // the loop ends; count() or setShowHundredths(false) has drawn the final value
+
+				render(getTimeNow((shown == frameA) ? frameB : frameA));
+
+				// Schedule from the previous frame's time, not from now, so the
+				// loop keeps a steady cadence; if we've fallen behind, skip ahead
+				final long now = SystemClock.uptimeMillis();
+				nextFrameAt += frameMillis;
+				if (nextFrameAt <= now)
+					nextFrameAt = now + frameMillis - ((now - nextFrameAt) % frameMillis);
+				sendEmptyMessageAtTime(MSG_FRAME, nextFrameAt);
+				break;
+			}
 		}
-	}
-	
-	private class hourhandler extends Handler {
-		@Override
-		public void handleMessage (Message msg) {
-			parent.hourView.setText("" + hour);
 
-			// Is hour visibility wanted?
-			final boolean hourIsVis = (parent.hourView.getVisibility() == View.VISIBLE);
-			final boolean hourWantVis = (hour != 0) || (lapf.hourFormat == HOUR_FMT_ALWAYS_SHOW);
-			if (hourIsVis != hourWantVis) {
-				final int hourVis = (hourWantVis) ? View.VISIBLE : View.INVISIBLE;
+		/**
+		 * Update the views whose digits differ from the previously shown snapshot.
+		 * Call only from the UI thread.
+		 * @param t  Snapshot to show; not null
+		 */
+		void render(final TimeSnapshot t) {
+			final TimeSnapshot prev = shown;
+
+			if (parent.dsecondsView != null)
+			{
+				if (lapf.hundredths)
+				{
+					if ((prev == null) || (t.csec != prev.csec))
+						parent.dsecondsView.setText(dsecBuf, 0, DigitFormatter.put2(dsecBuf, 0, t.csec));
+				}
+				else if ((prev == null) || (t.dsec != prev.dsec))
+					parent.dsecondsView.setText(dsecBuf, 0, DigitFormatter.putInt(dsecBuf, 0, t.dsec));
+			}
+			if ((parent.secondsView != null) && ((prev == null) || (t.sec != prev.sec)))
+				parent.secondsView.setText(secBuf, 0, DigitFormatter.put2(secBuf, 0, t.sec));
+			if ((parent.minView != null) && ((prev == null) || (t.min != prev.min)))
+				parent.minView.setText(minBuf, 0, DigitFormatter.put2(minBuf, 0, t.min));
+			if ((parent.hourView != null) && ((prev == null) || (t.hour != prev.hour)))
+			{
+				parent.hourView.setText(hourBuf, 0, DigitFormatter.putInt(hourBuf, 0, t.hour));
 
-				if (parent.hourLabelView != null)
-					parent.hourLabelView.setVisibility(hourVis);
-				parent.hourView.setVisibility(hourVis);
+				// Is hour visibility wanted?
+				final boolean hourIsVis = (parent.hourView.getVisibility() == View.VISIBLE);
+				final boolean hourWantVis = (t.hour != 0) || (lapf.hourFormat == HOUR_FMT_ALWAYS_SHOW);
+				if (hourIsVis != hourWantVis) {
+					final int hourVis = (hourWantVis) ? View.VISIBLE : View.INVISIBLE;
+
+					if (parent.hourLabelView != null)
+						parent.hourLabelView.setVisibility(hourVis);
+					parent.hourView.setVisibility(hourVis);
+				}
 			}
+
+			shown = t;
 		}
 	}
 	
@@ -1305,8 +1278,8 @@ public class Clock {
 		/**
 		 * The active hour format; default is {@link Clock#HOUR_FMT_HIDE_IF_0 HOUR_FMT_HIDE_IF_0}.
 		 * Read-only from {@link Anstop} class. To change, call {@link Clock#setHourFormat(int)}.
-		 * Is used to control whether {@link Clock#min} wraps around at 60, whether hours are a field
-		 * in {@link #formatTimeLap(StringBuilder, boolean, int, int, int, int, int, long, long, long[])},
+		 * Is used to control whether {@link TimeSnapshot#min} wraps around at 60, whether hours are a field
+		 * in {@link #formatTimeLap(StringBuilder, boolean, int, int, int, int, int, long, long, long)},
 		 * and anywhere else hours and minutes are formatted or shown.
 		 * @since 1.6
 		 */
@@ -1324,6 +1297,15 @@ public class Clock {
 		 */
 		public int lapFormatFlags = LAP_FMT_FLAG_ELAPSED;
 
+		/**
+		 * If true, show hundredths of a second (<tt>mm:ss:dd</tt>) instead of deciseconds
+		 * (<tt>mm:ss:d</tt>) in the clock display and in lap elapsed and delta times.
+		 * Default is false.  Read-only from {@link Anstop} class.
+		 * To change, call {@link Clock#setShowHundredths(boolean)}.
+		 * @since 1.6
+		 */
+		public boolean hundredths;
+
 		/**
 		 * Time-of-day format used in {@link Clock#getCurrentValueMillis(StringBuffer, boolean)}
 		 * for lap format, when {@link Clock#LAP_FMT_FLAG_SYSTIME} is used.
@@ -1334,21 +1316,14 @@ public class Clock {
 		 */
 		private java.text.DateFormat lapFormatTimeOfDay;
 
-		/**
-		 * 2-digit number format for minutes and seconds;
-		 * <tt>nf.{@link NumberFormat#format(long) format}(3)</tt> gives "03".
-		 */
-		public NumberFormat nf;
-
 		/**
 		 * Create a LapFormatter with the default flags.
 		 * ({@link Clock#LAP_FMT_FLAG_ELAPSED} only)
+		 * Minutes and seconds are formatted with {@link DigitFormatter},
+		 * so formatting a lap doesn't create any Strings unless
+		 * {@link Clock#LAP_FMT_FLAG_SYSTIME} is used.
 		 */
-		public LapFormatter() {
-			nf = NumberFormat.getInstance();
-			nf.setMinimumIntegerDigits(2);  // The minimum Digits required is 2
-			nf.setMaximumIntegerDigits(9);  // The maximum Digits required is 9 (allow minutes past 99)
-		}
+		public LapFormatter() { }
 
 		/**
 		 * Set the active hour format. Does not adjust hour/minute fields or refresh
@@ -1396,17 +1371,18 @@ public class Clock {
 		 *                 used with flag {@link Clock#LAP_FMT_FLAG_ELAPSED}
 		 * @param m   Elapsed minutes if known; if <tt>h</tt> is -1, will calculate from <tt>elapsedMillis</tt>
 		 * @param s   Elapsed seconds if known; if <tt>h</tt> is -1, will calculate from <tt>elapsedMillis</tt>
-		 * @param ds  Elapsed deciseconds if known; if <tt>h</tt> is -1, will calculate from <tt>elapsedMillis</tt>
+		 * @param ds  Elapsed deciseconds if known; if <tt>h</tt> is -1, will calculate from <tt>elapsedMillis</tt>.
+		 *            Ignored if {@link #hundredths}, which are always calculated from <tt>elapsedMillis</tt>.
 		 * @param lapNum   Lap number
 		 * @param elapsedMillis  This lap's milliseconds representing h, m, s, ds
 		 * @param systimeMillis  This lap's system time; {@link System#currentTimeMillis()}
-		 * @param lap_elapsed  Array of previous laps' elapsed times;
+		 * @param prevElapsed  Previous lap's elapsed milliseconds, or 0 if <tt>lapNum</tt> is 1;
 		 *    used with flag {@link Clock#LAP_FMT_FLAG_DELTA}
 		 */
 		public void formatTimeLap(StringBuilder sb, final boolean withLap,
 			int h, int m, int s, int ds,
 			final int lapNum, final long elapsedMillis, final long systimeMillis,
-			final long[] lap_elapsed)
+			final long prevElapsed)
 		{
 			if (sb == null)
 				return;
@@ -1417,7 +1393,7 @@ public class Clock {
 
 			if (withLap)
 			{
-				sb.append(lapNum);
+				DigitFormatter.appendInt(sb, lapNum);
 				sb.append(". ");
 			}
 			if (0 != (lapFormatFlags & LAP_FMT_FLAG_ELAPSED))
@@ -1447,23 +1423,27 @@ public class Clock {
 
 				if ((h > 0) || (hourFmt == HOUR_FMT_ALWAYS_SHOW))
 				{
-					sb.append(h);
+					DigitFormatter.appendInt(sb, h);
 					sb.append("h ");
 				}
-				sb.append(nf.format(m));
+				DigitFormatter.append2(sb, m);
 				sb.append(':');
-				sb.append(nf.format(s));
+				DigitFormatter.append2(sb, s);
 				sb.append(':');
-				sb.append(ds);
+				if (hundredths)
+					DigitFormatter.append2(sb, (elapsedMillis % 1000L) / 10);
+				else
+					DigitFormatter.appendInt(sb, ds);
 				sbNeedsSpace = true;
 			}
 
 			if (0 != (lapFormatFlags & LAP_FMT_FLAG_DELTA))
 			{
-				final long prevLap = (lapNum > 1) ? lap_elapsed[lapNum - 2] : 0;
-				long lapDelta = (elapsedMillis - prevLap) / 100;  // dsec, not msec
-				final int dds = (int) (lapDelta % 10);
-				lapDelta /= 10;
+				final long prevLap = (lapNum > 1) ? prevElapsed : 0;
+				final int fracPerSec = (hundredths) ? 100 : 10;
+				long lapDelta = (elapsedMillis - prevLap) / (1000 / fracPerSec);  // dsec or 0.01 sec, not msec
+				final int dds = (int) (lapDelta % fracPerSec);
+				lapDelta /= fracPerSec;
 				final int dsec = (int) (lapDelta % 60);
 				lapDelta /= 60;
 				final int dm;
@@ -1481,14 +1461,17 @@ public class Clock {
 				sb.append("(+");
 				if ((lapDelta > 0) || (hourFmt == HOUR_FMT_ALWAYS_SHOW))
 				{
-					sb.append(lapDelta);
+					DigitFormatter.appendInt(sb, lapDelta);
 					sb.append("h ");
 				}
-				sb.append(nf.format(dm));
+				DigitFormatter.append2(sb, dm);
 				sb.append(':');
-				sb.append(nf.format(dsec));
+				DigitFormatter.append2(sb, dsec);
 				sb.append(':');
-				sb.append(dds);
+				if (hundredths)
+					DigitFormatter.append2(sb, dds);
+				else
+					DigitFormatter.appendInt(sb, dds);
 				sb.append(')');
 				sbNeedsSpace = true;
 			}
@@ -1503,28 +1486,56 @@ public class Clock {
 			}
 		}
 
+		/**
+		 * Get a visitor that writes each lap it's given into <tt>sb</tt> using the current format flags,
+		 * in the same format as {@link #formatTimeAllLaps(StringBuilder, LapStore)}.
+		 * Laps must be visited in order, starting with lap 1.
+		 * @param sb  StringBuilder to write into; not null
+		 * @return  a new visitor
+		 * @see AnstopDbAdapter#fetchAllLaps(long, LapVisitor)
+		 */
+		public LapVisitor newLapAppender(final StringBuilder sb)
+		{
+			return new LapVisitor()
+			{
+				private int lapNum;
+				private long prevElapsed;
+
+				public void visitLap(final long elapsed, final long systime)
+				{
+					if (lapNum > 0)
+						sb.append('\n');
+					++lapNum;
+					formatTimeLap(sb, true, -1, 0, 0, 0, lapNum, elapsed, systime, prevElapsed);
+					prevElapsed = elapsed;
+				}
+			};
+		}
+
 		/**
 		 * Write all laps into <tt>sb</tt> using the current format flags.
-		 * If <tt>laps</tt> is 1, do nothing.
+		 * If <tt>laps</tt> is empty, do nothing.
 		 * @param sb  StringBuffer to write into; not null
-		 * @param laps  Lap count + 1, same as {@link Clock#laps} field
-		 * @param lap_elapsed  Elapsed times, same format as {@link Clock#lap_elapsed}
-		 * @param lap_systime  System times, same format as {@link Clock#lap_systime}
+		 * @param laps  Laps to format, such as {@link Clock#lapStore}
 		 * @throws IllegalArgumentException if <tt>sb</tt> null
 		 */
 		public void formatTimeAllLaps
-			(StringBuilder sb, final int laps, final long[] lap_elapsed, final long[] lap_systime)
+			(StringBuilder sb, final LapStore laps)
 			throws IllegalArgumentException
 		{
 			if (sb == null)
 				throw new IllegalArgumentException();
 
-			for (int i = 1; i < laps; ++i)
+			long prevElapsed = 0;
+			final int n = laps.size();
+			for (int i = 0; i < n; ++i)
 			{
-				if (i > 1)
+				if (i > 0)
 					sb.append('\n');
-				formatTimeLap(sb, true, -1, 0, 0, 0, i,
-					lap_elapsed[i-1], lap_systime[i-1], lap_elapsed);
+				final long elapsed = laps.getElapsed(i);
+				formatTimeLap(sb, true, -1, 0, 0, 0, i + 1,
+					elapsed, laps.getSystime(i), prevElapsed);
+				prevElapsed = elapsed;
 			}
 		}
 
@@ -0,0 +1,162 @@
+/***************************************************************************
+ *   This file Copyright (C) 2026 by the Anstop authors                    *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package An.stop;
+
+/**
+ * Allocation-free digit formatting for the clock display and lap text.
+ * Writes into a caller's reusable <tt>char[]</tt> or {@link StringBuilder}
+ * from precomputed digit tables, instead of creating Strings through
+ * {@link java.text.NumberFormat} or string concatenation.
+ *<P>
+ * Minutes and seconds are zero-padded to 2 digits; values of 100 or more
+ * (minutes past 99, when hours aren't shown) use as many digits as needed.
+ * Digits are always ASCII, with no grouping separators.
+ * @since 1.6
+ */
+public final class DigitFormatter {
+
+	/** Maximum number of chars written by {@link #putInt(char[], int, long)} for a non-negative long. */
+	public static final int MAX_DIGITS = 19;
+
+	/** Tens digit of 0 - 99: <tt>TENS[42]</tt> is '4'. */
+	private static final char[] TENS = new char[100];
+
+	/** Ones digit of 0 - 99: <tt>ONES[42]</tt> is '2'. */
+	private static final char[] ONES = new char[100];
+
+	static {
+		for (int i = 0; i < 100; ++i)
+		{
+			TENS[i] = (char) ('0' + (i / 10));
+			ONES[i] = (char) ('0' + (i % 10));
+		}
+	}
+
+	private DigitFormatter() { }
+
+	/**
+	 * Write a non-negative value, zero-padded to at least 2 digits.
+	 * @param buf  Buffer to write into; must have room for the digits at <tt>pos</tt>
+	 * @param pos  Position in <tt>buf</tt> to start writing
+	 * @param v  Value to write; should be &gt;= 0
+	 * @return  Position in <tt>buf</tt> just past the last char written
+	 */
+	public static int put2(final char[] buf, int pos, final long v)
+	{
+		if (v >= 100)
+			return putInt(buf, pos, v);
+
+		final int i = (v > 0) ? (int) v : 0;
+		buf[pos++] = TENS[i];
+		buf[pos++] = ONES[i];
+		return pos;
+	}
+
+	/**
+	 * Write a non-negative value without padding.
+	 * @param buf  Buffer to write into; must have room for the digits at <tt>pos</tt>
+	 * @param pos  Position in <tt>buf</tt> to start writing
+	 * @param v  Value to write; should be &gt;= 0
+	 * @return  Position in <tt>buf</tt> just past the last char written
+	 */
+	public static int putInt(final char[] buf, int pos, long v)
+	{
+		if (v < 10)
+		{
+			buf[pos] = (char) ('0' + ((v > 0) ? v : 0));
+			return pos + 1;
+		}
+
+		// count the digits, then fill in 2 at a time from the right
+		int len = 2;
+		for (long t = v / 100; t > 0; t /= 10)
+			++len;
+		final int end = pos + len;
+		int p = end;
+		while (v >= 100)
+		{
+			final int r = (int) (v % 100);
+			v /= 100;
+			buf[--p] = ONES[r];
+			buf[--p] = TENS[r];
+		}
+		final int r = (int) v;
+		buf[--p] = ONES[r];
+		if (p > pos)
+			buf[--p] = TENS[r];
+
+		return end;
+	}
+
+	/**
+	 * Append a non-negative value, zero-padded to at least 2 digits.
+	 * @param sb  Buffer to append to
+	 * @param v  Value to append; should be &gt;= 0
+	 */
+	public static void append2(final StringBuilder sb, final long v)
+	{
+		if (v >= 100)
+		{
+			appendInt(sb, v);
+			return;
+		}
+
+		final int i = (v > 0) ? (int) v : 0;
+		sb.append(TENS[i]);
+		sb.append(ONES[i]);
+	}
+
+	/**
+	 * Append a non-negative value without padding.
+	 * @param sb  Buffer to append to
+	 * @param v  Value to append; should be &gt;= 0
+	 */
+	public static void appendInt(final StringBuilder sb, long v)
+	{
+		if (v < 10)
+		{
+			sb.append((char) ('0' + ((v > 0) ? v : 0)));
+			return;
+		}
+
+		// find the highest power of 10 <= v, then append from the left
+		long div = 1;
+		while (v / div >= 10)
+			div *= 10;
+		for (; div > 0; div /= 10)
+		{
+			sb.append((char) ('0' + (v / div)));
+			v %= div;
+		}
+	}
+
+	/**
+	 * Format a value zero-padded to at least 2 digits, as a new String.
+	 * Convenient for code outside the clock's display or lap paths, where allocation doesn't matter.
+	 * @param v  Value to format; should be &gt;= 0
+	 * @return  The formatted value, such as "03"
+	 */
+	public static String format2(final long v)
+	{
+		final char[] buf = new char[MAX_DIGITS];
+		return new String(buf, 0, put2(buf, 0, v));
+	}
+
+}
@@ -22,12 +22,19 @@
 
 package An.stop;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
+import android.app.AlertDialog;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.os.Environment;
@@ -36,17 +43,66 @@ import android.text.format.DateFormat;
 
 /**
  * Helper class to export time and lap data.
- * Does not hold any open db handles or cursors, so there is no Close method.
+ * Does not hold any open db handles, cursors or files, so there is no Close method.
+ *<P>
+ * Files are written through a {@link ChannelTextWriter}, which is kept for
+ * this helper's later exports.
+ *<P>
+ * Saved records can be exported as formatted text ({@link #FORMAT_TEXT}),
+ * or as raw lap data for analysis tools ({@link #FORMAT_CSV} or {@link #FORMAT_JSON})
+ * written by a {@link LapDataWriter}.
  */
 public class ExportHelper {
 	
-	private FileOutputStream out;
+	/** Export format: Text like {@link AnstopDbAdapter#getRowAndFormat(long)}, in a .txt file. */
+	public static final int FORMAT_TEXT = 0;
+
+	/** Export format: Laps as CSV, in a .csv file; see {@link LapDataWriter}. */
+	public static final int FORMAT_CSV = 1;
+
+	/** Export format: The record and its laps as JSON, in a .json file; see {@link LapDataWriter}. */
+	public static final int FORMAT_JSON = 2;
+
+	/** File name extensions, indexed by format. */
+	private static final String[] FORMAT_EXTENSIONS = { ".txt", ".csv", ".json" };
+
 	private Context mContext;
 
+	/** Number of saved times to read per page in {@link #writeAll(int)} and {@link #writeChanges(int)}. */
+	private static final int EXPORT_PAGE_SIZE = 100;
+
+	/**
+	 * Name of the {@link #writeChanges(int)} archive entry listing deleted records:
+	 * A JSON array with one object per record, with the fields <tt>id</tt>, <tt>title</tt>,
+	 * <tt>start_systime_ms</tt> and <tt>elapsed_ms</tt> as in {@link LapDataWriter}'s JSON.
+	 * {@link TimesImporter} deletes the saved times with the same title, start and elapsed time.
+	 */
+	public static final String DELETED_ENTRY_NAME = "deleted.json";
+
+	/** Writer for the exported files, reused by each export; created when first needed */
+	private ChannelTextWriter writer;
+
+	/** The file last opened by {@link #openFile(String)}, so a partial export can be deleted */
+	private File file;
+
 	public ExportHelper(Context context) {
 		this.mContext = context;
 	}
 
+	/**
+	 * Ask the user which format to export in: Show a dialog listing the formats,
+	 * in the order of {@link #FORMAT_TEXT}, {@link #FORMAT_CSV} and {@link #FORMAT_JSON}.
+	 * @param ctx  Activity showing the dialog
+	 * @param li  Listener called with the chosen format as <tt>which</tt>
+	 * @since 1.6
+	 */
+	public static void showFormatChooser(final Context ctx, final DialogInterface.OnClickListener li) {
+		new AlertDialog.Builder(ctx)
+			.setTitle(R.string.export_format)
+			.setItems(R.array.export_formats_strings, li)
+			.show();
+	}
+
 	/**
 	 * Create and write a file on external storage (SD-Card). 
 	 * @param title file's title; filename will be this + ".txt"
@@ -55,65 +111,359 @@ public class ExportHelper {
 	 */
 	public boolean write(String title, String body) {
 		
-		String storageState = Environment.getExternalStorageState();
-		if (storageState.contains("mounted")) {
-			File f = Environment.getExternalStorageDirectory();
-			File j = new File(f, title + ".txt");
-			
-			try {
-				out = new FileOutputStream(j);
-			} catch (FileNotFoundException e) {
-				return false;
-			}
-			
-			try {
-				out.write(body.getBytes());
-			} catch (IOException e) {
-				return false;
-			}
-			
-			return true;
-		}
-		
-		return false;
-		
-		
+		if (! openFile(title + FORMAT_EXTENSIONS[FORMAT_TEXT]))
+			return false;
+
+		writer.write(body);
+		return closeFile();
 	}
 
 	/**
-	 * Export a saved record to disk.
+	 * Export a saved record to disk as text.  Same as {@link #write(long, int)} with {@link #FORMAT_TEXT}.
 	 * @param rowId The record's _id
 	 * @return Success or failure
 	 */
 	public boolean write(long rowId) {
+		return write(rowId, FORMAT_TEXT);
+	}
+
+	/**
+	 * Export a saved record to disk.  The record is read and written a piece at a time,
+	 * so a record with many laps doesn't need much memory; see
+	 * {@link AnstopDbAdapter#writeRowAndFormat(long, ChannelTextWriter)}
+	 * and {@link AnstopDbAdapter#writeRowData(long, LapDataWriter)}.
+	 * @param rowId The record's _id
+	 * @param format  {@link #FORMAT_TEXT}, {@link #FORMAT_CSV} or {@link #FORMAT_JSON}
+	 * @return Success or failure.  If the record isn't found, or deleted while it's being read,
+	 *     or the file can't be written, no file is left and false is returned.
+	 * @throws IllegalArgumentException if <tt>format</tt> isn't one of those
+	 * @since 1.6
+	 */
+	public boolean write(final long rowId, final int format)
+		throws IllegalArgumentException
+	{
+		if ((format < FORMAT_TEXT) || (format > FORMAT_JSON))
+			throw new IllegalArgumentException("format: " + format);
+
 		AnstopDbAdapter dba = new AnstopDbAdapter(mContext);
 		dba.open();
-		final String[] columns = dba.getRowAndFormat(rowId);
-		dba.close();
-		if (columns == null)
+		try {
+			final String title = dba.fetchTitle(rowId);
+			if ((title == null) || ! openFile(title + FORMAT_EXTENSIONS[format]))
+				return false;
+
+			final boolean found;
+			if (format == FORMAT_TEXT)
+				found = dba.writeRowAndFormat(rowId, writer);
+			else
+				found = dba.writeRowData(rowId, new LapDataWriter(format, writer));
+			if (closeFile() && found)
+				return true;
+
+			file.delete();  // don't leave an empty or truncated export
 			return false;
-		boolean val = write(columns[0], columns[1]);
-		return val;
-		
+		} finally {
+			dba.close();
+		}
 	}
 
-	//TODO this does not work !!
-	public boolean write(Cursor c) {
-		c.moveToFirst();
-		boolean val = true;
-		
-		for(int i = 0; i < c.getCount(); i++) {
-			if(!write(c.getColumnName(i), c.getString(i)))
-				val = false; //if one entry fails we will return false
-							 //but we keep trying to write the other files
+	/**
+	 * Create a file on external storage (SD-Card) and open {@link #writer} to it.
+	 * @param filename  file's name, including its extension
+	 * @return true if opened, false if storage isn't mounted or the file can't be created
+	 */
+	private boolean openFile(final String filename) {
+		String storageState = Environment.getExternalStorageState();
+		if (! storageState.contains("mounted"))
+			return false;
+
+		File f = Environment.getExternalStorageDirectory();
+		File j = new File(f, filename);
+		final FileOutputStream out;
+		try {
+			out = new FileOutputStream(j);
+		} catch (FileNotFoundException e) {
+			return false;
 		}
-		
-		
-			
-		return val;
-		
-		
-		
+		file = j;
+
+		if (writer == null)
+			writer = new ChannelTextWriter();
+		writer.open(out);
+		return true;
+	}
+
+	/**
+	 * Finish writing and close the file opened by {@link #openFile(String)}.
+	 * @return true if all was written, false if there was an error
+	 */
+	private boolean closeFile() {
+		try {
+			writer.close();
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Export all saved records, laps included, into one zip archive on external storage (SD-Card),
+	 * named <tt>anstop-</tt><em>date-time</em><tt>.zip</tt>.  Each record is an entry named
+	 * with its _id and title, in the same format as {@link #write(long, int)}.
+	 *<P>
+	 * Memory use is bounded no matter how many records or laps there are:
+	 * The records are read {@link #EXPORT_PAGE_SIZE} IDs at a time, and each one is
+	 * streamed into the archive as its laps are read.  This can take a while,
+	 * so call it from a background thread.
+	 *<P>
+	 * Doesn't change the checkpoint used by {@link #writeChanges(int)}.
+	 * @param format  {@link #FORMAT_TEXT}, {@link #FORMAT_CSV} or {@link #FORMAT_JSON}
+	 * @return the number of records exported, or -1 if the archive couldn't be written
+	 * @throws IllegalArgumentException if <tt>format</tt> isn't one of those
+	 * @since 1.6
+	 */
+	public int writeAll(final int format)
+		throws IllegalArgumentException
+	{
+		return writeArchive(format, false);
+	}
+
+	/**
+	 * Incremental export: Like {@link #writeAll(int)}, but only the records saved or changed
+	 * since the last incremental export, into <tt>anstop-</tt><em>date-time</em><tt>-changes.zip</tt>.
+	 * The records deleted since then are listed in the archive's {@link #DELETED_ENTRY_NAME} entry.  The cost depends on the number of changes,
+	 * not the number of saved records; see {@link AnstopDbAdapter#fetchChangedPage(long, long, long, int)}.
+	 *<P>
+	 * When the archive has been written, the checkpoint is moved up with
+	 * {@link AnstopDbAdapter#setExportCheckpoint(long)}, so the next incremental export
+	 * starts from there.  If nothing has changed, no archive is written.
+	 * Changes made while the export runs are left for the next one.
+	 * @param format  {@link #FORMAT_TEXT}, {@link #FORMAT_CSV} or {@link #FORMAT_JSON}
+	 * @return the number of changed records exported plus the number of deleted records listed,
+	 *     0 if nothing changed, or -1 if the archive couldn't be written
+	 * @throws IllegalArgumentException if <tt>format</tt> isn't one of those
+	 * @since 1.6
+	 */
+	public int writeChanges(final int format)
+		throws IllegalArgumentException
+	{
+		return writeArchive(format, true);
+	}
+
+	/**
+	 * Write an archive for {@link #writeAll(int)} or {@link #writeChanges(int)}.
+	 * @param format  {@link #FORMAT_TEXT}, {@link #FORMAT_CSV} or {@link #FORMAT_JSON}
+	 * @param changesOnly  True for {@link #writeChanges(int)}
+	 * @return the number of entries and deleted _ids written, or -1 if the archive couldn't be written
+	 * @throws IllegalArgumentException if <tt>format</tt> isn't valid
+	 */
+	private int writeArchive(final int format, final boolean changesOnly)
+		throws IllegalArgumentException
+	{
+		if ((format < FORMAT_TEXT) || (format > FORMAT_JSON))
+			throw new IllegalArgumentException("format: " + format);
+
+		String storageState = Environment.getExternalStorageState();
+		if (! storageState.contains("mounted"))
+			return -1;
+
+		AnstopDbAdapter dba = new AnstopDbAdapter(mContext);
+		dba.open();
+		long sinceModSeq = 0, upToModSeq = 0;
+		if (changesOnly)
+		{
+			sinceModSeq = dba.getExportCheckpoint();
+			upToModSeq = dba.getModSeq();
+			if (sinceModSeq >= upToModSeq)
+			{
+				dba.close();
+				return 0;  // nothing changed
+			}
+		}
+
+		final File j = new File(Environment.getExternalStorageDirectory(),
+			"anstop-" + DateFormat.format("yyyyMMdd-kkmmss", System.currentTimeMillis())
+			+ ((changesOnly) ? "-changes.zip" : ".zip"));
+		final ZipOutputStream zip;
+		try {
+			zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(j), 16 * 1024));
+		} catch (FileNotFoundException e) {
+			dba.close();
+			return -1;
+		}
+		final WritableByteChannel zipChannel = Channels.newChannel(zip);
+		if (writer == null)
+			writer = new ChannelTextWriter();
+		final LapDataWriter dataWriter =
+			(format != FORMAT_TEXT) ? new LapDataWriter(format, writer) : null;
+
+		int count = 0;
+		boolean ok = false;
+		try {
+			final long[] ids = new long[EXPORT_PAGE_SIZE];
+			final String[] titles = new String[EXPORT_PAGE_SIZE];
+			// page cursor: changes are paged on (modseq, _id), full exports on _id
+			long afterModSeq = sinceModSeq, afterId = (changesOnly) ? Long.MAX_VALUE : 0;
+			int n;
+			do {
+				// read a page of IDs, then close the cursor before reading their laps
+				n = 0;
+				Cursor c = (changesOnly)
+					? dba.fetchChangedPage(afterModSeq, afterId, upToModSeq, EXPORT_PAGE_SIZE)
+					: dba.fetchPage(afterId, EXPORT_PAGE_SIZE);
+				if (c != null)
+				{
+					while ((n < EXPORT_PAGE_SIZE) && c.moveToNext())
+					{
+						ids[n] = c.getLong(0);
+						titles[n] = c.getString(1);
+						if (changesOnly)
+							afterModSeq = c.getLong(2);
+						++n;
+					}
+					c.close();
+				}
+
+				for (int i = 0; i < n; ++i)
+				{
+					zip.putNextEntry(new ZipEntry
+						(archiveEntryName(ids[i], titles[i], FORMAT_EXTENSIONS[format])));
+					writer.open(zipChannel, null);
+					if (dataWriter == null)
+						dba.writeRowAndFormat(ids[i], writer);
+					else
+						dba.writeRowData(ids[i], dataWriter);
+					writer.close();
+					zip.closeEntry();
+					titles[i] = null;
+					++count;
+				}
+				if (n > 0)
+					afterId = ids[n - 1];
+			} while (n == EXPORT_PAGE_SIZE);
+
+			if (changesOnly)
+				count += writeDeletedEntry(dba, zip, zipChannel, sinceModSeq, upToModSeq);
+
+			zip.finish();
+			ok = true;
+		} catch (IOException e) {
+			// ok is false
+		} finally {
+			if (! ok)
+			{
+				try {
+					writer.close();  // if an entry was being written
+				} catch (IOException e) {}
+			}
+			try {
+				zip.close();
+			} catch (IOException e) {
+				ok = false;
+			}
+			if (! ok)
+				j.delete();  // don't leave a truncated archive for import to find
+			else if (changesOnly)
+				dba.setExportCheckpoint(upToModSeq);
+			dba.close();
+		}
+
+		return (ok) ? count : -1;
+	}
+
+	/**
+	 * For {@link #writeChanges(int)}, list the records deleted since the checkpoint
+	 * in a {@link #DELETED_ENTRY_NAME} entry, if there are any.
+	 * @return the number of records listed
+	 * @throws IOException if the archive can't be written
+	 */
+	private int writeDeletedEntry(final AnstopDbAdapter dba, final ZipOutputStream zip,
+		final WritableByteChannel zipChannel, final long sinceModSeq, final long upToModSeq)
+		throws IOException
+	{
+		int count = 0;
+		StringBuilder sb = null;
+		long afterModSeq = sinceModSeq, afterId = Long.MAX_VALUE;
+		int n;
+		do {
+			n = 0;
+			Cursor c = dba.fetchDeletedPage(afterModSeq, afterId, upToModSeq, EXPORT_PAGE_SIZE);
+			if (c == null)
+				break;
+			while (c.moveToNext())
+			{
+				if (sb == null)
+				{
+					zip.putNextEntry(new ZipEntry(DELETED_ENTRY_NAME));
+					writer.open(zipChannel, null);
+					sb = new StringBuilder();
+					sb.append('[');
+				} else {
+					sb.append(',');
+				}
+				afterId = c.getLong(0);
+				afterModSeq = c.getLong(4);
+				sb.append("\n{\"id\":").append(afterId).append(",\"title\":");
+				LapDataWriter.appendJsonString(sb, c.getString(1));
+				sb.append(",\"start_systime_ms\":");
+				if (c.isNull(2))
+					sb.append("null");
+				else
+					sb.append(c.getLong(2));
+				sb.append(",\"elapsed_ms\":");
+				if (c.isNull(3))
+					sb.append("null");
+				else
+					sb.append(c.getLong(3));
+				sb.append('}');
+				++n;
+			}
+			c.close();
+			if (sb != null)
+			{
+				writer.write(sb);
+				sb.setLength(0);
+			}
+			count += n;
+		} while (n == EXPORT_PAGE_SIZE);
+
+		if (sb != null)
+		{
+			sb.append("\n]\n");
+			writer.write(sb);
+			writer.close();
+			zip.closeEntry();
+		}
+		return count;
+	}
+
+	/**
+	 * Build a zip entry name for a record: Its _id, a space, and its title
+	 * with characters that aren't allowed in file names replaced by <tt>_</tt>.
+	 * The _id keeps names unique when titles are the same.
+	 * @param rowId  The record's _id
+	 * @param title  The record's title, or null
+	 * @param extension  File name extension, such as ".txt"
+	 * @return  The entry name, ending with <tt>extension</tt>
+	 */
+	private static String archiveEntryName(final long rowId, final String title, final String extension) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(rowId);
+		if ((title != null) && (title.length() > 0))
+		{
+			sb.append(' ');
+			final int n = Math.min(title.length(), 64);
+			for (int i = 0; i < n; ++i)
+			{
+				final char ch = title.charAt(i);
+				if ((ch < ' ') || ("/\\:*?\"<>|".indexOf(ch) != -1))
+					sb.append('_');
+				else
+					sb.append(ch);
+			}
+		}
+		sb.append(extension);
+		return sb.toString();
 	}
 
 }
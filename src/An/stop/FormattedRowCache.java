@@ -0,0 +1,221 @@
+/***************************************************************************
+ *   This file Copyright (C) 2026 by the Anstop authors                    *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package An.stop;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+/**
+ * Process-wide cache of saved times rendered by {@link AnstopDbAdapter#getRowAndFormat(long)},
+ * so reopening, sending or exporting a time with many laps doesn't re-read and re-format them.
+ *<P>
+ * Each entry remembers the format settings it was rendered with: the <tt>hour_format</tt>
+ * and <tt>lap_format_*</tt> preferences, and the default locale and system 12/24-hour
+ * setting (for "started at").
+ * Those preferences are also cached here and kept current by a preference change listener,
+ * which clears the cache when any of them changes.  {@link AnstopDbAdapter} calls
+ * {@link #invalidate(long)} when a time's laps are rewritten or the time is deleted.
+ *<P>
+ * Least recently used entries are evicted when there are more than {@link #MAX_ROWS},
+ * or their text totals more than {@link #MAX_CHARS}.  All methods are synchronized.
+ * @since 1.6
+ */
+final class FormattedRowCache implements SharedPreferences.OnSharedPreferenceChangeListener {
+
+	/** Maximum number of cached rows. */
+	private static final int MAX_ROWS = 16;
+
+	/** Maximum total length of the cached titles and bodies: About 2 MB of chars. */
+	private static final int MAX_CHARS = 1024 * 1024;
+
+	/** The singleton, created by {@link #getInstance(Context)}. */
+	private static FormattedRowCache instance;
+
+	/** One rendered row, and the settings it was rendered with. */
+	private static final class Entry {
+		final String[] columns;
+		final int hourFormat, lapFormatFlags;
+		final Locale locale;
+		final boolean is24Hour;
+		final int chars;
+
+		Entry(final String[] columns, final int hourFormat, final int lapFormatFlags,
+			final Locale locale, final boolean is24Hour)
+		{
+			this.columns = columns;
+			this.hourFormat = hourFormat;
+			this.lapFormatFlags = lapFormatFlags;
+			this.locale = locale;
+			this.is24Hour = is24Hour;
+			chars = ((columns[0] != null) ? columns[0].length() : 0)
+				+ ((columns[1] != null) ? columns[1].length() : 0);
+		}
+	}
+
+	/** Cached rows by row ID, in access order: least recently used first. */
+	private final LinkedHashMap<Long, Entry> rows = new LinkedHashMap<Long, Entry>(MAX_ROWS, 0.75f, true);
+
+	/** Total {@link Entry#chars} of {@link #rows}. */
+	private int totalChars;
+
+	/** Current <tt>hour_format</tt> preference; see {@link Clock.LapFormatter#hourFormat}. */
+	private int hourFormat;
+
+	/** Current <tt>lap_format_*</tt> preferences, from {@link Anstop#readLapFormatPrefFlags(SharedPreferences)}. */
+	private int lapFormatFlags;
+
+	/** Statistics for {@link #toString()}. */
+	private int hits, misses;
+
+	private FormattedRowCache(final SharedPreferences settings) {
+		readSettings(settings);
+	}
+
+	/**
+	 * Get the cache, creating it and registering its preference listener if needed.
+	 * @param ctx  Context for the default shared preferences
+	 * @return  the cache
+	 */
+	static synchronized FormattedRowCache getInstance(final Context ctx) {
+		if (instance == null)
+		{
+			SharedPreferences settings =
+				PreferenceManager.getDefaultSharedPreferences(ctx.getApplicationContext());
+			instance = new FormattedRowCache(settings);
+			// SharedPreferences holds its listeners weakly; the static instance keeps this one alive
+			settings.registerOnSharedPreferenceChangeListener(instance);
+		}
+		return instance;
+	}
+
+	/** Read {@link #hourFormat} and {@link #lapFormatFlags} from the preferences. */
+	private void readSettings(final SharedPreferences settings) {
+		hourFormat = Integer.parseInt(settings.getString("hour_format", "0"));
+			// default Clock.HOUR_FMT_HIDE_IF_0
+		lapFormatFlags = Anstop.readLapFormatPrefFlags(settings);
+	}
+
+	/** Get the current <tt>hour_format</tt> preference, for rendering a row to cache. */
+	synchronized int getHourFormat() { return hourFormat; }
+
+	/** Get the current <tt>lap_format_*</tt> preference flags, for rendering a row to cache. */
+	synchronized int getLapFormatFlags() { return lapFormatFlags; }
+
+	/**
+	 * Get a row's rendered title and body, if cached with the current settings.
+	 * @param rowId  Row ID in {@link AnstopDbAdapter#DATABASE_TABLE}
+	 * @param is24Hour  Current system 12/24-hour setting, from
+	 *     {@link android.text.format.DateFormat#is24HourFormat(Context)}
+	 * @return  A new array with [0]=title, [1]=body, or null if not cached
+	 */
+	synchronized String[] get(final long rowId, final boolean is24Hour) {
+		final Entry e = rows.get(Long.valueOf(rowId));
+		if ((e == null) || (e.hourFormat != hourFormat) || (e.lapFormatFlags != lapFormatFlags)
+			|| (e.is24Hour != is24Hour) || ! e.locale.equals(Locale.getDefault()))
+		{
+			++misses;
+			return null;
+		}
+
+		++hits;
+		return new String[]{ e.columns[0], e.columns[1] };
+	}
+
+	/**
+	 * Cache a row rendered with the given settings.  If the settings have changed
+	 * since they were read by {@link #getHourFormat()} and {@link #getLapFormatFlags()},
+	 * or the row is larger than {@link #MAX_CHARS}, it isn't cached.
+	 * @param rowId  Row ID in {@link AnstopDbAdapter#DATABASE_TABLE}
+	 * @param columns  Rendered [0]=title, [1]=body; copied, not kept
+	 * @param hourFmt  Hour format used to render
+	 * @param lapFmtFlags  Lap format flags used to render
+	 * @param locale  Default locale when rendered
+	 * @param is24Hour  System 12/24-hour setting when rendered
+	 */
+	synchronized void put(final long rowId, final String[] columns,
+		final int hourFmt, final int lapFmtFlags, final Locale locale, final boolean is24Hour)
+	{
+		if ((hourFmt != hourFormat) || (lapFmtFlags != lapFormatFlags))
+			return;
+		final Entry e = new Entry
+			(new String[]{ columns[0], columns[1] }, hourFmt, lapFmtFlags, locale, is24Hour);
+		if (e.chars > MAX_CHARS)
+			return;
+
+		final Entry prev = rows.put(Long.valueOf(rowId), e);
+		if (prev != null)
+			totalChars -= prev.chars;
+		totalChars += e.chars;
+
+		// evict least recently used
+		Iterator<Entry> it = rows.values().iterator();
+		while (((rows.size() > MAX_ROWS) || (totalChars > MAX_CHARS)) && it.hasNext())
+		{
+			totalChars -= it.next().chars;
+			it.remove();
+		}
+	}
+
+	/**
+	 * Forget a row, because its laps were rewritten or it was deleted.
+	 * @param rowId  Row ID in {@link AnstopDbAdapter#DATABASE_TABLE}
+	 */
+	synchronized void invalidate(final long rowId) {
+		final Entry e = rows.remove(Long.valueOf(rowId));
+		if (e != null)
+			totalChars -= e.chars;
+	}
+
+	/**
+	 * Forget several rows.
+	 * @param rowIds  Row IDs in {@link AnstopDbAdapter#DATABASE_TABLE}
+	 */
+	synchronized void invalidate(final long[] rowIds) {
+		for (int i = 0; i < rowIds.length; ++i)
+			invalidate(rowIds[i]);
+	}
+
+	/**
+	 * If the hour format or a lap format preference changed, re-read them and clear the cache.
+	 */
+	public synchronized void onSharedPreferenceChanged(final SharedPreferences settings, final String key) {
+		if ((key == null) || ! (key.equals("hour_format") || key.startsWith("lap_format_")))
+			return;
+
+		readSettings(settings);
+		rows.clear();
+		totalChars = 0;
+	}
+
+	/**
+	 * Get the cache's statistics, for the debug log.
+	 * @return  Text with the number of cached rows and chars, hits and misses
+	 */
+	public synchronized String toString() {
+		return "row cache: " + rows.size() + " rows, " + totalChars + " chars, "
+			+ hits + " hits, " + misses + " misses";
+	}
+
+}
@@ -0,0 +1,191 @@
+/***************************************************************************
+ *   This file Copyright (C) 2026 by the Anstop authors                    *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package An.stop;
+
+/**
+ * Packs a session's laps into a compact byte array for the database, and unpacks them.
+ *<P>
+ * Format: One byte {@link #FORMAT_VERSION}, then the lap count, then for each lap its
+ * elapsed time and system time, each as the difference from the previous lap's
+ * (from 0 for the first lap).  Every number is a zigzag-encoded base-128 varint:
+ * 7 bits per byte, least significant first, high bit set on all but the last byte.
+ * Laps a minute or less apart take about 6 bytes each.
+ *<P>
+ * One encoding holds at most {@link #MAX_LAPS} laps, so that even in the worst case
+ * (20 bytes per lap) it stays well within one database cursor window (1 MB on older
+ * Android versions); callers split longer sessions into several encodings.
+ * @since 1.6
+ */
+public final class LapCodec {
+
+	/** Format version, in the first byte of the encoded data. */
+	public static final int FORMAT_VERSION = 1;
+
+	/** Most laps in one encoding; see the class javadoc. */
+	public static final int MAX_LAPS = 10000;
+
+	/** Most bytes in one varint: 64 bits at 7 bits per byte. */
+	private static final int MAX_VARINT_BYTES = 10;
+
+	private LapCodec() { }
+
+	/**
+	 * Encode laps.
+	 * @param laps  Laps to encode; may be empty
+	 * @return  the encoded laps
+	 * @throws IllegalArgumentException if there are more than {@link #MAX_LAPS} laps
+	 * @see #encode(LapStore, int, int)
+	 * @see #decode(byte[], LapVisitor)
+	 */
+	public static byte[] encode(final LapStore laps)
+		throws IllegalArgumentException
+	{
+		return encode(laps, 0, laps.size());
+	}
+
+	/**
+	 * Encode some of a session's laps.  The encoding doesn't depend on any laps before <tt>start</tt>.
+	 * @param laps  Laps to encode from
+	 * @param start  Index of the first lap to encode
+	 * @param end  Index after the last lap to encode; may equal <tt>start</tt>
+	 * @return  the encoded laps
+	 * @throws IllegalArgumentException if <tt>end - start</tt> is more than {@link #MAX_LAPS}
+	 * @see #decode(byte[], LapVisitor)
+	 */
+	public static byte[] encode(final LapStore laps, final int start, final int end)
+		throws IllegalArgumentException
+	{
+		final int n = end - start;
+		if (n > MAX_LAPS)
+			throw new IllegalArgumentException("too many laps: " + n);
+
+		// version, count, then usually about 6 bytes per lap; grown below if needed
+		byte[] buf = new byte[1 + 5 + (6 * n)];
+		buf[0] = FORMAT_VERSION;
+		int pos = putVarint(buf, 1, n);
+
+		long prevElapsed = 0, prevSystime = 0;
+		for (int i = start; i < end; ++i)
+		{
+			if (pos + (2 * MAX_VARINT_BYTES) > buf.length)
+			{
+				final byte[] bigger = new byte[Math.max(2 * buf.length, pos + (2 * MAX_VARINT_BYTES))];
+				System.arraycopy(buf, 0, bigger, 0, pos);
+				buf = bigger;
+			}
+			final long elapsed = laps.getElapsed(i), systime = laps.getSystime(i);
+			pos = putVarint(buf, pos, zigzag(elapsed - prevElapsed));
+			pos = putVarint(buf, pos, zigzag(systime - prevSystime));
+			prevElapsed = elapsed;
+			prevSystime = systime;
+		}
+
+		final byte[] data = new byte[pos];
+		System.arraycopy(buf, 0, data, 0, pos);
+		return data;
+	}
+
+	/**
+	 * Decode laps, passing each one to a visitor as it's decoded.
+	 * If <tt>data</tt> is truncated, stops after the last complete lap.
+	 * @param data  Data from {@link #encode(LapStore)}
+	 * @param v  Visitor for each lap, such as a {@link LapStore} to add them to
+	 * @return  the number of laps visited
+	 * @throws IllegalArgumentException if <tt>data</tt> is an unknown format version;
+	 *     no laps are visited
+	 */
+	public static int decode(final byte[] data, final LapVisitor v)
+		throws IllegalArgumentException
+	{
+		if ((data.length == 0) || (data[0] != FORMAT_VERSION))
+			throw new IllegalArgumentException("lap data format");
+
+		final int[] pos = { 1 };
+		int i = 0;
+		try
+		{
+			final int n = (int) getVarint(data, pos);
+			long elapsed = 0, systime = 0;
+			for (; i < n; ++i)
+			{
+				elapsed += unzigzag(getVarint(data, pos));
+				systime += unzigzag(getVarint(data, pos));
+				v.visitLap(elapsed, systime);
+			}
+		} catch (IllegalArgumentException e) {
+			// truncated: keep the laps visited so far
+		}
+
+		return i;
+	}
+
+	/** Map signed to unsigned so small negative numbers stay small: 0, -1, 1, -2 become 0, 1, 2, 3. */
+	private static long zigzag(final long v)
+	{
+		return (v << 1) ^ (v >> 63);
+	}
+
+	/** Inverse of {@link #zigzag(long)}. */
+	private static long unzigzag(final long v)
+	{
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	/**
+	 * Write an unsigned varint.
+	 * @return  the position after the varint
+	 */
+	private static int putVarint(final byte[] buf, int pos, long v)
+	{
+		while ((v & ~0x7FL) != 0)
+		{
+			buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		buf[pos++] = (byte) v;
+		return pos;
+	}
+
+	/**
+	 * Read an unsigned varint.
+	 * @param pos  Position to read at, updated to the position after the varint
+	 * @throws IllegalArgumentException if the data ends within the varint
+	 */
+	private static long getVarint(final byte[] data, final int[] pos)
+		throws IllegalArgumentException
+	{
+		int p = pos[0];
+		long v = 0;
+		for (int shift = 0; shift < (7 * MAX_VARINT_BYTES); shift += 7)
+		{
+			if (p >= data.length)
+				throw new IllegalArgumentException("lap data truncated");
+			final byte b = data[p++];
+			v |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+			{
+				pos[0] = p;
+				return v;
+			}
+		}
+		throw new IllegalArgumentException("lap data varint too long");
+	}
+
+}
@@ -0,0 +1,205 @@
+/***************************************************************************
+ *   This file Copyright (C) 2026 by the Anstop authors                    *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package An.stop;
+
+/**
+ * Writes one saved time's raw data as CSV or JSON, for analysis tools:
+ * Each lap's elapsed time, system time, and delta from the previous lap, as plain
+ * milliseconds, instead of the formatted text of {@link AnstopDbAdapter#getRowAndFormat(long)}.
+ *<P>
+ * As a {@link LapVisitor}, it's given the laps straight from
+ * {@link AnstopDbAdapter#fetchAllLaps(long, LapVisitor)}.  Each lap is appended to
+ * one reusable StringBuilder, which is written to a {@link ChannelTextWriter} and cleared
+ * whenever it reaches {@link #FLUSH_CHARS}, so writing a lap allocates no objects.
+ *<P>
+ * Call {@link #begin(long, String, int, long, long, long, String)}, then visit the laps in order,
+ * then call {@link #end()}.
+ *<P>
+ * CSV has a header line, then one line per lap: <tt>lap,elapsed_ms,systime_ms,delta_ms</tt>.
+ * JSON is one object with the time's fields and a <tt>laps</tt> array of objects
+ * with those same four fields.
+ * Not synchronized; use from one thread at a time.
+ * @since 1.6
+ */
+final class LapDataWriter implements LapVisitor {
+
+	/** Write {@link #sb} out when it reaches this many chars. */
+	private static final int FLUSH_CHARS = 8192;
+
+	/** {@link ExportHelper#FORMAT_CSV} or {@link ExportHelper#FORMAT_JSON} */
+	private final int format;
+
+	private final ChannelTextWriter out;
+
+	/** Text not yet written to {@link #out} */
+	private final StringBuilder sb = new StringBuilder(FLUSH_CHARS + 128);
+
+	/** Number of laps visited since {@link #begin(long, String, int, long, long, long, String)} */
+	private int lapNum;
+
+	/** Previous lap's elapsed time, for the delta; 0 before the first lap */
+	private long prevElapsed;
+
+	/**
+	 * Create a writer for one format.
+	 * @param format  {@link ExportHelper#FORMAT_CSV} or {@link ExportHelper#FORMAT_JSON}
+	 * @param out  Open writer to write to; not closed here
+	 * @throws IllegalArgumentException if <tt>format</tt> isn't CSV or JSON
+	 */
+	LapDataWriter(final int format, final ChannelTextWriter out)
+		throws IllegalArgumentException
+	{
+		if ((format != ExportHelper.FORMAT_CSV) && (format != ExportHelper.FORMAT_JSON))
+			throw new IllegalArgumentException("format: " + format);
+
+		this.format = format;
+		this.out = out;
+	}
+
+	/**
+	 * Write the time's fields, or for CSV the header line, before its laps.
+	 * For CSV, only the laps are written; the other parameters are ignored.
+	 * @param rowId  The time's _id
+	 * @param title  Title, or null
+	 * @param mode  {@link Anstop#STOP_LAP} or {@link Anstop#COUNTDOWN}, or -1 if not known (v1 or v2 record)
+	 * @param startSystime  Start time from {@link System#currentTimeMillis()}, or -1L if not known
+	 * @param stopSystime  Stop time from {@link System#currentTimeMillis()}, or -1L if none
+	 * @param elapsed  Elapsed milliseconds, or -1L if not known
+	 * @param comment  Comment, or for v1 or v2 records the whole body text; or null
+	 */
+	void begin(final long rowId, final String title, final int mode,
+		final long startSystime, final long stopSystime, final long elapsed, final String comment)
+	{
+		lapNum = 0;
+		prevElapsed = 0;
+		sb.setLength(0);
+		if (format == ExportHelper.FORMAT_CSV)
+		{
+			sb.append("lap,elapsed_ms,systime_ms,delta_ms\n");
+			return;
+		}
+
+		sb.append("{\"id\":").append(rowId);
+		sb.append(",\"title\":");
+		appendJsonString(sb, title);
+		sb.append(",\"mode\":");
+		if (mode == Anstop.COUNTDOWN)
+			sb.append("\"countdown\"");
+		else if (mode == Anstop.STOP_LAP)
+			sb.append("\"stopwatch\"");
+		else
+			sb.append("null");
+		sb.append(",\"start_systime_ms\":");
+		if (startSystime != -1L)
+			sb.append(startSystime);
+		else
+			sb.append("null");
+		sb.append(",\"stop_systime_ms\":");
+		if (stopSystime != -1L)
+			sb.append(stopSystime);
+		else
+			sb.append("null");
+		sb.append(",\"elapsed_ms\":");
+		if (elapsed != -1L)
+			sb.append(elapsed);
+		else
+			sb.append("null");
+		sb.append(",\"comment\":");
+		appendJsonString(sb, comment);
+		sb.append(",\"laps\":[");
+	}
+
+	/**
+	 * Write one lap.  Laps must be visited in order, starting with lap 1.
+	 */
+	public void visitLap(final long elapsed, final long systime)
+	{
+		++lapNum;
+		if (format == ExportHelper.FORMAT_CSV)
+		{
+			sb.append(lapNum).append(',').append(elapsed).append(',')
+			  .append(systime).append(',').append(elapsed - prevElapsed).append('\n');
+		} else {
+			if (lapNum > 1)
+				sb.append(',');
+			sb.append("\n{\"lap\":").append(lapNum)
+			  .append(",\"elapsed_ms\":").append(elapsed)
+			  .append(",\"systime_ms\":").append(systime)
+			  .append(",\"delta_ms\":").append(elapsed - prevElapsed).append('}');
+		}
+		prevElapsed = elapsed;
+
+		if (sb.length() >= FLUSH_CHARS)
+		{
+			out.write(sb);
+			sb.setLength(0);
+		}
+	}
+
+	/**
+	 * Finish the time's data after its laps, and write everything not yet written.
+	 */
+	void end()
+	{
+		if (format == ExportHelper.FORMAT_JSON)
+			sb.append("]}\n");
+		out.write(sb);
+		sb.setLength(0);
+	}
+
+	/**
+	 * Append a JSON string literal, with quotes and escapes, or <tt>null</tt>.
+	 * @param sb  Builder to append to
+	 * @param s  String to append, or null
+	 */
+	static void appendJsonString(final StringBuilder sb, final String s)
+	{
+		if (s == null)
+		{
+			sb.append("null");
+			return;
+		}
+
+		sb.append('"');
+		final int n = s.length();
+		for (int i = 0; i < n; ++i)
+		{
+			final char ch = s.charAt(i);
+			switch (ch)
+			{
+			case '"':  sb.append("\\\""); break;
+			case '\\': sb.append("\\\\"); break;
+			case '\n': sb.append("\\n");  break;
+			case '\r': sb.append("\\r");  break;
+			case '\t': sb.append("\\t");  break;
+			default:
+				if (ch < ' ')
+				{
+					sb.append("\\u00");
+					sb.append(Character.forDigit(ch >> 4, 16)).append(Character.forDigit(ch & 0xF, 16));
+				} else {
+					sb.append(ch);
+				}
+			}
+		}
+		sb.append('"');
+	}
+
+}
@@ -0,0 +1,96 @@
+/***************************************************************************
+ *   This file Copyright (C) 2026 by the Anstop authors                    *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package An.stop;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+/**
+ * Adapter for {@link Anstop}'s lap list, reading directly from a {@link Clock}'s
+ * {@link Clock#lapStore lapStore}.  Only the rows the list is showing are formatted,
+ * into recycled views, so taking a lap costs the same no matter how many came before it.
+ *<P>
+ * After adding, clearing or restoring laps, or changing the lap format,
+ * call {@link #notifyDataSetChanged()}.
+ * Use from the UI thread only.
+ * @since 1.6
+ */
+public class LapListAdapter extends BaseAdapter {
+
+	private final Clock clock;
+
+	private final LayoutInflater inflater;
+
+	/** Reused by {@link #getView(int, View, ViewGroup)} to format each row; empty between uses. */
+	private final StringBuilder sb = new StringBuilder();
+
+	/**
+	 * Create an adapter for a clock's laps.
+	 * @param context  Context, for inflating the <tt>lap_row</tt> layout
+	 * @param clock  Clock whose laps to show
+	 */
+	public LapListAdapter(final Context context, final Clock clock) {
+		this.clock = clock;
+		inflater = LayoutInflater.from(context);
+	}
+
+	public int getCount() { return clock.lapStore.size(); }
+
+	/**
+	 * Get a lap's elapsed time.
+	 * @param position  Lap index; lap number 1 is index 0
+	 * @return  The lap's elapsed milliseconds, as a Long
+	 */
+	public Object getItem(final int position) {
+		return Long.valueOf(clock.lapStore.getElapsed(position));
+	}
+
+	/** Laps are never reordered, so the position is the item ID. */
+	public long getItemId(final int position) { return position; }
+
+	@Override
+	public boolean hasStableIds() { return true; }
+
+	/**
+	 * Format one lap into a recycled row view, in the format
+	 * "lap. #h mm:ss:d" depending on the clock's lap format flags.
+	 */
+	public View getView(final int position, final View convertView, final ViewGroup parent) {
+		final TextView tv;
+		if (convertView instanceof TextView)
+			tv = (TextView) convertView;
+		else
+			tv = (TextView) inflater.inflate(R.layout.lap_row, parent, false);
+
+		final LapStore laps = clock.lapStore;
+		final long prevElapsed = (position > 0) ? laps.getElapsed(position - 1) : 0;
+		clock.lapf.formatTimeLap(sb, true, -1, 0, 0, 0, position + 1,
+			laps.getElapsed(position), laps.getSystime(position), prevElapsed);
+		tv.setText(sb.toString());
+		sb.setLength(0);
+
+		return tv;
+	}
+
+}
@@ -0,0 +1,196 @@
+/***************************************************************************
+ *   This file Copyright (C) 2026 by the Anstop authors                    *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package An.stop;
+
+/**
+ * Growable storage for a stopwatch's laps: Each lap's elapsed time and
+ * system time (wall clock time), as primitive longs.
+ *<P>
+ * Laps are kept in fixed-size chunks which are never copied or resized;
+ * adding a lap is O(1), and only the small table of chunk references
+ * grows as needed.  Each chunk holds both times of its laps side by side,
+ * so the elapsed and system times can't get out of step.
+ *<P>
+ * {@link #getElapsed(int)} and {@link #getSystime(int)} read a lap in place,
+ * so formatting and saving laps doesn't copy them.
+ * As a {@link LapVisitor}, adds each visited lap.
+ * Not synchronized; use from one thread at a time.
+ * @since 1.6
+ */
+public final class LapStore implements LapVisitor {
+
+	/** log2 of {@link #CHUNK_LAPS}. */
+	private static final int CHUNK_SHIFT = 8;
+
+	/** Number of laps per chunk. */
+	private static final int CHUNK_LAPS = 1 << CHUNK_SHIFT;
+
+	/** Mask for a lap's index within its chunk. */
+	private static final int CHUNK_MASK = CHUNK_LAPS - 1;
+
+	/**
+	 * The chunks; each has room for {@link #CHUNK_LAPS} laps.
+	 * Lap <tt>i</tt>'s elapsed time is at <tt>[2 * (i &amp; CHUNK_MASK)]</tt> of its chunk,
+	 * and its system time at the next position.  Unused entries are null.
+	 */
+	private long[][] chunks = new long[4][];
+
+	/** Number of laps stored. */
+	private int size;
+
+	/** Create an empty lap store. */
+	public LapStore() { }
+
+	/**
+	 * Get the number of laps stored.
+	 * @return  the lap count; 0 if none
+	 */
+	public int size() { return size; }
+
+	/**
+	 * Add a lap.
+	 * @param elapsed  Lap's elapsed time, in milliseconds
+	 * @param systime  Lap's system time, from {@link System#currentTimeMillis()}
+	 */
+	public void add(final long elapsed, final long systime)
+	{
+		final int c = size >>> CHUNK_SHIFT;
+		if (c == chunks.length)
+		{
+			long[][] grown = new long[c * 2][];
+			System.arraycopy(chunks, 0, grown, 0, c);
+			chunks = grown;
+		}
+		long[] chunk = chunks[c];
+		if (chunk == null)
+		{
+			chunk = new long[2 * CHUNK_LAPS];
+			chunks[c] = chunk;
+		}
+
+		final int i = 2 * (size & CHUNK_MASK);
+		chunk[i] = elapsed;
+		chunk[i + 1] = systime;
+		++size;
+	}
+
+	/**
+	 * Add a lap; same as {@link #add(long, long)}.
+	 */
+	public void visitLap(final long elapsed, final long systime)
+	{
+		add(elapsed, systime);
+	}
+
+	/**
+	 * Add laps from a pair of arrays, such as those saved in a {@link android.os.Bundle}.
+	 * @param elapsed  Laps' elapsed times
+	 * @param systimes  Laps' system times
+	 * @param count  Number of laps to add from the arrays
+	 * @throws IllegalArgumentException if either array length is &lt; <tt>count</tt>
+	 * @see #copyElapsed()
+	 * @see #copySystime()
+	 */
+	public void addAll(final long[] elapsed, final long[] systimes, final int count)
+		throws IllegalArgumentException
+	{
+		if ((elapsed.length < count) || (systimes.length < count))
+			throw new IllegalArgumentException();
+
+		for (int i = 0; i < count; ++i)
+			add(elapsed[i], systimes[i]);
+	}
+
+	/**
+	 * Get a lap's elapsed time.
+	 * @param i  Lap index, 0 to {@link #size()} - 1; lap number 1 is index 0
+	 * @return  The lap's elapsed milliseconds
+	 * @throws ArrayIndexOutOfBoundsException if <tt>i</tt> is out of range
+	 */
+	public long getElapsed(final int i)
+		throws ArrayIndexOutOfBoundsException
+	{
+		if ((i < 0) || (i >= size))
+			throw new ArrayIndexOutOfBoundsException(i);
+
+		return chunks[i >>> CHUNK_SHIFT][2 * (i & CHUNK_MASK)];
+	}
+
+	/**
+	 * Get a lap's system time.
+	 * @param i  Lap index, 0 to {@link #size()} - 1; lap number 1 is index 0
+	 * @return  The lap's system time, from {@link System#currentTimeMillis()}
+	 * @throws ArrayIndexOutOfBoundsException if <tt>i</tt> is out of range
+	 */
+	public long getSystime(final int i)
+		throws ArrayIndexOutOfBoundsException
+	{
+		if ((i < 0) || (i >= size))
+			throw new ArrayIndexOutOfBoundsException(i);
+
+		return chunks[i >>> CHUNK_SHIFT][2 * (i & CHUNK_MASK) + 1];
+	}
+
+	/**
+	 * Get the most recent lap's elapsed time, for calculating the next lap's delta.
+	 * @return  The last lap's elapsed milliseconds, or 0 if no laps
+	 */
+	public long getLastElapsed()
+	{
+		return (size > 0) ? getElapsed(size - 1) : 0;
+	}
+
+	/**
+	 * Remove all laps.  Keeps the first chunk for reuse.
+	 */
+	public void clear()
+	{
+		for (int c = 1; c < chunks.length; ++c)
+			chunks[c] = null;
+		size = 0;
+	}
+
+	/**
+	 * Copy the elapsed times into a new array, such as for a {@link android.os.Bundle}.
+	 * @return  An array of length {@link #size()}
+	 * @see #addAll(long[], long[], int)
+	 */
+	public long[] copyElapsed()
+	{
+		final long[] a = new long[size];
+		for (int i = 0; i < size; ++i)
+			a[i] = chunks[i >>> CHUNK_SHIFT][2 * (i & CHUNK_MASK)];
+		return a;
+	}
+
+	/**
+	 * Copy the system times into a new array, such as for a {@link android.os.Bundle}.
+	 * @return  An array of length {@link #size()}
+	 * @see #addAll(long[], long[], int)
+	 */
+	public long[] copySystime()
+	{
+		final long[] a = new long[size];
+		for (int i = 0; i < size; ++i)
+			a[i] = chunks[i >>> CHUNK_SHIFT][2 * (i & CHUNK_MASK) + 1];
+		return a;
+	}
+
+}
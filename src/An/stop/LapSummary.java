@@ -0,0 +1,86 @@
+/***************************************************************************
+ *   This file Copyright (C) 2026 by the Anstop authors                    *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package An.stop;
+
+/**
+ * Summary statistics of one session's laps: count, total elapsed time,
+ * and the fastest, slowest and mean lap time (time since the previous lap).
+ * Stored per saved time in the database, so they can be shown without reading the laps;
+ * see {@link AnstopDbAdapter#fetchLapSummary(long)}.
+ * All times are in milliseconds.
+ * @since 1.6
+ */
+public final class LapSummary {
+
+	/** Number of laps; 0 if none, in which case the other fields are 0 */
+	public final int count;
+
+	/** Elapsed time of the last lap */
+	public final long totalElapsed;
+
+	/** Shortest lap time */
+	public final long fastest;
+
+	/** Longest lap time */
+	public final long slowest;
+
+	/** Mean lap time, <tt>totalElapsed / count</tt> rounded down */
+	public final long mean;
+
+	/**
+	 * Create a summary from known values, such as those read from the database.
+	 */
+	public LapSummary
+		(final int count, final long totalElapsed, final long fastest, final long slowest, final long mean)
+	{
+		this.count = count;
+		this.totalElapsed = totalElapsed;
+		this.fastest = fastest;
+		this.slowest = slowest;
+		this.mean = mean;
+	}
+
+	/**
+	 * Calculate the summary of some laps, in one pass.
+	 * Each lap's time is its elapsed time minus the previous lap's (or minus 0, for lap 1).
+	 * @param laps  Laps to summarize; may be empty
+	 * @return  the summary
+	 */
+	public static LapSummary of(final LapStore laps)
+	{
+		final int n = laps.size();
+		if (n == 0)
+			return new LapSummary(0, 0, 0, 0, 0);
+
+		long prev = 0, fastest = Long.MAX_VALUE, slowest = Long.MIN_VALUE;
+		for (int i = 0; i < n; ++i)
+		{
+			final long elapsed = laps.getElapsed(i), delta = elapsed - prev;
+			if (delta < fastest)
+				fastest = delta;
+			if (delta > slowest)
+				slowest = delta;
+			prev = elapsed;
+		}
+
+		return new LapSummary(n, prev, fastest, slowest, prev / n);
+	}
+
+}
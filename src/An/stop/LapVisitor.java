@@ -0,0 +1,40 @@
+/***************************************************************************
+ *   This file Copyright (C) 2026 by the Anstop authors                    *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package An.stop;
+
+/**
+ * Receives laps one at a time, in lap order, as they're read;
+ * for example from {@link AnstopDbAdapter#fetchAllLaps(long, LapVisitor)}
+ * or {@link LapCodec#decode(byte[], LapVisitor)}.
+ * A reader using a visitor doesn't need to know the lap count in advance,
+ * or keep all laps in memory.
+ * {@link LapStore} is a visitor which adds each lap to itself.
+ * @since 1.6
+ */
+public interface LapVisitor {
+
+	/**
+	 * Receive the next lap.
+	 * @param elapsed  Lap's elapsed time, in milliseconds
+	 * @param systime  Lap's system time, from {@link System#currentTimeMillis()}
+	 */
+	void visitLap(long elapsed, long systime);
+
+}
@@ -0,0 +1,370 @@
+/***************************************************************************
+ *   This file Copyright (C) 2026 by the Anstop authors                    *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package An.stop;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
+
+/**
+ * Write-behind persistence of the current timing's laps into the database's
+ * temporary lap table, off the UI thread.
+ *<P>
+ * {@link #enqueue(long, long)} only appends to an in-memory queue and returns;
+ * a background thread writes the queued laps a short time later,
+ * all of them in one transaction, so a burst of lap button presses
+ * becomes a single group commit.
+ *<P>
+ * Durability: Call {@link #flush()} or {@link #close()} from
+ * {@link Anstop#onPause()} to write any queued laps before returning.
+ * Both report whether the laps were written; if not, they're still in the queue,
+ * and {@link #copyQueue(LapStore)} can copy them out to be kept elsewhere.
+ * {@link #deleteTemporaryLaps()} discards queued laps and deletes
+ * the stored ones, ordered correctly against any write in progress.
+ * If a batch can't be written, its transaction is rolled back and its laps go
+ * back to the front of the queue, to be retried after {@link #RETRY_DELAY}.
+ *<P>
+ * For the debug log, {@link #getQueueDepth()}, {@link #getCommitCount()},
+ * {@link #getLastCommitMillis()} and {@link #getFailureCount()} report on the queue and its commits.
+ * @since 1.6
+ */
+public class LapWriter implements Handler.Callback {
+
+	/**
+	 * How long to wait after the first queued lap before writing,
+	 * to gather a burst of laps into one commit; milliseconds.
+	 */
+	private static final long GROUP_COMMIT_DELAY = 250;
+
+	/** Write immediately once this many laps are queued, without waiting for {@link #GROUP_COMMIT_DELAY}. */
+	private static final int GROUP_COMMIT_MAX = 64;
+
+	/** After a batch can't be written, wait this long before trying again; milliseconds. */
+	private static final long RETRY_DELAY = 2000;
+
+	/** Handler message: Write the queued laps. */
+	private static final int MSG_WRITE = 1;
+
+	private final HandlerThread thread;
+
+	private final Handler handler;
+
+	/**
+	 * Our database adapter, used only while holding {@link #dbLock}.
+	 * Opened in the constructor; null after {@link #close()}.
+	 * Shares the process-wide database handle with the UI's adapters.
+	 */
+	private AnstopDbAdapter db;
+
+	/**
+	 * Lock for {@link #db} and {@link #writing}: Held while writing a batch or deleting laps,
+	 * so those happen in the order they were requested.  If both locks are needed,
+	 * take this one first, then {@link #queueLock}.
+	 */
+	private final Object dbLock = new Object();
+
+	/** Lock for {@link #queue} and {@link #writePosted}. */
+	private final Object queueLock = new Object();
+
+	/** Laps waiting to be written; access only while synchronized on {@link #queueLock}. */
+	private LapStore queue = new LapStore();
+
+	/** The batch being written; swapped with {@link #queue} by {@link #writeQueued()}. */
+	private LapStore writing = new LapStore();
+
+	/** True if {@link #MSG_WRITE} has been sent and not yet handled; access only while synchronized on {@link #queueLock}. */
+	private boolean writePosted;
+
+	/** Set by {@link #close()}; volatile for {@link #enqueue(long, long)}. */
+	private volatile boolean closed;
+
+	/** Number of transactions committed; see {@link #getCommitCount()}. */
+	private volatile int commitCount;
+
+	/** Number of laps written; see {@link #getLapsWritten()}. */
+	private volatile long lapsWritten;
+
+	/** Duration of the most recent and the slowest commit, in milliseconds. */
+	private volatile long lastCommitMillis, maxCommitMillis;
+
+	/** Number of batches which couldn't be written; see {@link #getFailureCount()}. */
+	private volatile int failureCount;
+
+	/** The most recent write error, or null; see {@link #getLastFailure()}. */
+	private volatile SQLException lastFailure;
+
+	/**
+	 * Open the database and start the writer thread.
+	 * @param ctx  Context for {@link AnstopDbAdapter}
+	 * @throws android.database.SQLException if the database can't be opened
+	 */
+	public LapWriter(final Context ctx)
+	{
+		db = new AnstopDbAdapter(ctx);
+		db.open();
+		thread = new HandlerThread("Anstop lap writer", Process.THREAD_PRIORITY_BACKGROUND);
+		thread.start();
+		handler = new Handler(thread.getLooper(), this);
+	}
+
+	/**
+	 * Queue a lap to be written to the temporary lap table.  Doesn't block for database access.
+	 * @param elapsed  Lap's elapsed time, in milliseconds
+	 * @param systime  Lap's system time, from {@link System#currentTimeMillis()}
+	 */
+	public void enqueue(final long elapsed, final long systime)
+	{
+		if (closed)
+			return;
+
+		synchronized (queueLock)
+		{
+			queue.add(elapsed, systime);
+			if (queue.size() >= GROUP_COMMIT_MAX)
+			{
+				handler.removeMessages(MSG_WRITE);
+				handler.sendEmptyMessage(MSG_WRITE);
+				writePosted = true;
+			}
+			else if (! writePosted)
+			{
+				handler.sendEmptyMessageDelayed(MSG_WRITE, GROUP_COMMIT_DELAY);
+				writePosted = true;
+			}
+		}
+	}
+
+	/**
+	 * Write any queued laps now, on the caller's thread, and return once they're committed.
+	 * If the writer thread is writing a batch, waits for it to finish first.
+	 * @return  true if all queued laps are committed; false if the write failed,
+	 *     leaving them queued to be retried
+	 * @see #getLastFailure()
+	 */
+	public boolean flush()
+	{
+		return writeQueued();
+	}
+
+	/**
+	 * Discard any queued laps, and delete all laps from the temporary lap table.
+	 * Laps enqueued after this call are kept.  Blocks until the delete is done.
+	 */
+	public void deleteTemporaryLaps()
+	{
+		synchronized (dbLock)
+		{
+			synchronized (queueLock)
+			{
+				queue.clear();
+			}
+			if (db != null)
+				db.deleteTemporaryLaps();
+		}
+	}
+
+	/**
+	 * Write any queued laps, stop the writer thread, and close our database adapter.
+	 * If the write fails, it's tried once more right away.  If that fails too, the laps
+	 * stay in the queue: Call {@link #copyQueue(LapStore)} to keep them.
+	 * Further calls to {@link #enqueue(long, long)} are ignored.
+	 * @return  true if all queued laps were committed, false if some weren't
+	 */
+	public boolean close()
+	{
+		final boolean ok = writeQueued() || writeQueued();
+		closed = true;  // enqueue is called only from the UI thread, like close: nothing was added since
+		thread.quit();
+		synchronized (dbLock)
+		{
+			if (db != null)
+			{
+				db.close();
+				db = null;
+			}
+		}
+		return ok;
+	}
+
+	/**
+	 * Copy the laps waiting to be written, such as those left after {@link #close()} failed.
+	 * @param to  Laps are added to this store, in order
+	 * @return  the number of laps copied
+	 */
+	public int copyQueue(final LapStore to)
+	{
+		synchronized (queueLock)
+		{
+			final int n = queue.size();
+			for (int i = 0; i < n; ++i)
+				to.add(queue.getElapsed(i), queue.getSystime(i));
+			return n;
+		}
+	}
+
+	/**
+	 * Get the number of laps waiting to be written.
+	 * @return  the queue depth; 0 if all laps have been committed
+	 */
+	public int getQueueDepth()
+	{
+		synchronized (queueLock)
+		{
+			return queue.size();
+		}
+	}
+
+	/**
+	 * Get the number of transactions committed by this writer.
+	 * @return  the commit count
+	 */
+	public int getCommitCount() { return commitCount; }
+
+	/**
+	 * Get the number of laps written by this writer.
+	 * @return  the lap count
+	 */
+	public long getLapsWritten() { return lapsWritten; }
+
+	/**
+	 * Get the duration of the most recent commit.
+	 * @return  milliseconds from beginning the transaction to the end of its commit, or 0 if none yet
+	 * @see #getMaxCommitMillis()
+	 */
+	public long getLastCommitMillis() { return lastCommitMillis; }
+
+	/**
+	 * Get the duration of the slowest commit.
+	 * @return  milliseconds, or 0 if none yet
+	 * @see #getLastCommitMillis()
+	 */
+	public long getMaxCommitMillis() { return maxCommitMillis; }
+
+	/**
+	 * Get the number of batches which couldn't be written and were put back in the queue.
+	 * @return  the failure count, or 0 if none
+	 * @see #getLastFailure()
+	 */
+	public int getFailureCount() { return failureCount; }
+
+	/**
+	 * Get the most recent error from writing a batch.
+	 * @return  the exception, or null if none
+	 * @see #getFailureCount()
+	 */
+	public SQLException getLastFailure() { return lastFailure; }
+
+	/** Handle {@link #MSG_WRITE} on the writer thread. */
+	public boolean handleMessage(final Message msg)
+	{
+		if (msg.what != MSG_WRITE)
+			return false;
+
+		writeQueued();
+		return true;
+	}
+
+	/**
+	 * Write all queued laps in one transaction.  Called from the writer thread,
+	 * or from the UI thread by {@link #flush()} and {@link #close()}.
+	 * If the write fails, the laps are put back in the queue; see {@link #requeueWriting(SQLException)}.
+	 * @return  true if the queued laps, if any, were committed; false if the write failed,
+	 *     or the writer is closed and laps are still queued
+	 */
+	private boolean writeQueued()
+	{
+		synchronized (dbLock)
+		{
+			synchronized (queueLock)
+			{
+				writePosted = false;
+				if (queue.size() == 0)
+					return true;
+
+				final LapStore batch = queue;
+				queue = writing;
+				writing = batch;
+			}
+			// writing is now ours alone while holding dbLock
+
+			if (db == null)
+			{
+				// closed: put them back for copyQueue
+				requeueWriting(null);
+				return false;
+			}
+
+			final long t0 = SystemClock.elapsedRealtime();
+			try {
+				db.createTemporaryLaps(writing);
+			} catch (SQLException e) {
+				requeueWriting(e);
+				return false;
+			}
+			final long dt = SystemClock.elapsedRealtime() - t0;
+
+			lapsWritten += writing.size();
+			writing.clear();
+			++commitCount;
+			lastCommitMillis = dt;
+			if (dt > maxCommitMillis)
+				maxCommitMillis = dt;
+		}
+		return true;
+	}
+
+	/**
+	 * After {@link #writeQueued()} couldn't write the batch, whose transaction was rolled back:
+	 * Put its laps back at the front of the queue, ahead of any laps enqueued since,
+	 * record the failure, and unless closed, try again after {@link #RETRY_DELAY}.
+	 * Caller must hold {@link #dbLock}.
+	 * @param e  The error from writing, or null if not written because {@link #db} is closed
+	 */
+	private void requeueWriting(final SQLException e)
+	{
+		if (e != null)
+		{
+			++failureCount;
+			lastFailure = e;
+		}
+		synchronized (queueLock)
+		{
+			final int n = queue.size();
+			for (int i = 0; i < n; ++i)
+				writing.add(queue.getElapsed(i), queue.getSystime(i));
+			queue.clear();
+
+			final LapStore batch = writing;
+			writing = queue;
+			queue = batch;
+
+			if (! (closed || writePosted))
+			{
+				handler.sendEmptyMessageDelayed(MSG_WRITE, RETRY_DELAY);
+				writePosted = true;
+			}
+		}
+	}
+
+}
@@ -23,25 +23,47 @@
 package An.stop;
 
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import android.app.AlertDialog;
 import android.app.ListActivity;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.database.Cursor;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.ContextMenu;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewGroup;
 import android.view.ContextMenu.ContextMenuInfo;
+import android.widget.BaseAdapter;
+import android.widget.EditText;
 import android.widget.ListView;
-import android.widget.SimpleCursorAdapter;
+import android.widget.TextView;
 import android.widget.Toast;
 import android.widget.AdapterView.AdapterContextMenuInfo;
 
 
 /**
  * Presents the list of previously saved times in the database,
- * with options to view, delete, export or send.
+ * with options to view, delete, export or send, and to export all of them into one archive,
+ * or only those changed since the last such export.
  * Clicking a list item takes you to {@link ShowTimesActivity}.
+ *<P>
+ * The list is read in pages of {@link #PAGE_SIZE} in the background as the user scrolls;
+ * see {@link TimesAdapter}.  Typing in the search box above the list shows only the times
+ * whose title or comment match, using {@link AnstopDbAdapter#searchPage(String, long, int)}.
+ *<P>
+ * The options menu's "Delete several" puts the list itself into multiple-choice mode,
+ * so the user can check any number of times, loading more pages by scrolling as usual,
+ * and then delete them together; see {@link #startDeleteSeveral()} and {@link BatchDeleter}.  "Import" reads an archive
+ * from "Export all" back in; see {@link Importer}.
  */
 public class LoadActivity extends ListActivity {
 	
@@ -54,12 +76,35 @@ public class LoadActivity extends ListActivity {
 	private static final int EXPORT_ITEM = 15;
 	private static final int MENU_SEND = 16;
 	private static final int SEND_ITEM = 17;
-	//private static final int MENU_EXPORT_ALL = 18;
+	private static final int MENU_EXPORT_ALL = 18;
 	private static final int EXPORT_ALL_ITEM = 19;
-	
+	private static final int MENU_DELETE_SEVERAL = 20;
+	private static final int DELETE_SEVERAL_ITEM = 21;
+	private static final int MENU_IMPORT = 22;
+	private static final int IMPORT_ITEM = 23;
+	private static final int MENU_EXPORT_CHANGES = 24;
+	private static final int EXPORT_CHANGES_ITEM = 25;
+	private static final int MENU_DELETE_CHECKED = 26;
+	private static final int DELETE_CHECKED_ITEM = 27;
+	private static final int CANCEL_CHECKED_ITEM = 28;
+
+	/** Number of saved times to read per page. */
+	private static final int PAGE_SIZE = 100;
+
+	/** When the list shows a row this close to the end of the loaded rows, load the next page. */
+	private static final int PREFETCH_DISTANCE = 20;
+
+	/** The list's adapter, set in {@link #fillData()}. */
+	private TimesAdapter timesAdapter;
+
+	/**
+	 * True while the list is in multiple-choice mode for "Delete several".
+	 * @see #startDeleteSeveral()
+	 * @see #endDeleteSeveral()
+	 */
+	private boolean deletingSeveral;
+
 
-	
-	
 	@Override
 	public void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
@@ -69,6 +114,16 @@ public class LoadActivity extends ListActivity {
 		dbHelper.open();
 		fillData();
 		registerForContextMenu(getListView());
+
+		EditText search = (EditText) findViewById(R.id.load_search);
+		search.addTextChangedListener(new TextWatcher() {
+			public void afterTextChanged(Editable s) {
+				final String q = s.toString().trim();
+				timesAdapter.setQuery((q.length() > 0) ? q : null);
+			}
+			public void beforeTextChanged(CharSequence s, int start, int count, int after) { }
+			public void onTextChanged(CharSequence s, int start, int before, int count) { }
+		});
 			
 		
 	}
@@ -76,20 +131,18 @@ public class LoadActivity extends ListActivity {
 	@Override
 	public void onDestroy() {
 		super.onDestroy();
+		if (timesAdapter != null)
+			timesAdapter.cancelLoad();
 		dbHelper.close();  // prevent leaks
 	}
-	
+
+	/**
+	 * Set up the list's adapter and start loading its first page.
+	 */
 	private void fillData() {
-		Cursor c = dbHelper.fetchAll();
-        startManagingCursor(c);
-        
-        String[] from = new String[]{AnstopDbAdapter.KEY_TITLE};
-        int[] to = new int[]{R.id.text1};
-        
-        
-        SimpleCursorAdapter times = 
-        	    new SimpleCursorAdapter(this, R.layout.times_row, c, from, to);
-        setListAdapter(times);
+		timesAdapter = new TimesAdapter();
+		setListAdapter(timesAdapter);
+		timesAdapter.loadNextPage();
 	}
 	
 	 @Override
@@ -103,6 +156,8 @@ public class LoadActivity extends ListActivity {
 	@Override
     protected void onListItemClick(ListView l, View v, int position, long id) {
         super.onListItemClick(l, v, position, id);
+        if (deletingSeveral)
+        	return;  // the list has checked or unchecked the item
         Intent i = new Intent(this, ShowTimesActivity.class);
         i.putExtra(AnstopDbAdapter.KEY_ROWID, id);
         startActivity(i);
@@ -115,23 +170,25 @@ public class LoadActivity extends ListActivity {
 
 		switch(item.getItemId()) {
     	case DELETE_ITEM:
-	        dbHelper.delete(info.id);
-	        fillData();
+	        if (dbHelper.delete(info.id))
+	        	timesAdapter.removeId(info.id);
 	        return true;
 	        
     	case EXPORT_ITEM:
-    		
-    		Toast toast;
-    		ExportHelper exHlp = new ExportHelper(this);
-	        
-			
-			if(exHlp.write(info.id))
-				toast = Toast.makeText(this, R.string.export_succes, Toast.LENGTH_SHORT);
-			else
-				toast = Toast.makeText(this, R.string.export_fail, Toast.LENGTH_SHORT);
-    		
-			toast.show();
-    		
+    		{
+    			final long rowId = info.id;
+    			ExportHelper.showFormatChooser(this, new DialogInterface.OnClickListener() {
+    				public void onClick(DialogInterface dialog, int format) {
+    					Toast toast;
+    					ExportHelper exHlp = new ExportHelper(LoadActivity.this);
+    					if(exHlp.write(rowId, format))
+    						toast = Toast.makeText(LoadActivity.this, R.string.export_succes, Toast.LENGTH_SHORT);
+    					else
+    						toast = Toast.makeText(LoadActivity.this, R.string.export_fail, Toast.LENGTH_SHORT);
+    					toast.show();
+    				}
+    			});
+    		}
     		return true;
 
     	case SEND_ITEM:
@@ -149,31 +206,481 @@ public class LoadActivity extends ListActivity {
 	@Override
     public boolean onCreateOptionsMenu(Menu menu) {
     	super.onCreateOptionsMenu(menu);
-    	//menu.add(MENU_EXPORT_ALL, EXPORT_ALL_ITEM, 0, R.string.export_all).setIcon(android.R.drawable.ic_menu_share);
+    	menu.add(MENU_EXPORT_ALL, EXPORT_ALL_ITEM, 0, R.string.export_all).setIcon(android.R.drawable.ic_menu_share);
+    	menu.add(MENU_EXPORT_CHANGES, EXPORT_CHANGES_ITEM, 0, R.string.export_changes).setIcon(android.R.drawable.ic_menu_save);
+    	menu.add(MENU_IMPORT, IMPORT_ITEM, 0, R.string.import_archive).setIcon(android.R.drawable.ic_menu_upload);
+    	menu.add(MENU_DELETE_SEVERAL, DELETE_SEVERAL_ITEM, 0, R.string.delete_several).setIcon(android.R.drawable.ic_menu_delete);
+    	menu.add(MENU_DELETE_CHECKED, DELETE_CHECKED_ITEM, 0, R.string.delete).setIcon(android.R.drawable.ic_menu_delete);
+    	menu.add(MENU_DELETE_CHECKED, CANCEL_CHECKED_ITEM, 0, R.string.cancel).setIcon(android.R.drawable.ic_menu_close_clear_cancel);
     	
         return true;
     }
+
+	/** While deleting several, show only Delete and Cancel; otherwise hide them. */
+	@Override
+	public boolean onPrepareOptionsMenu(Menu menu) {
+		super.onPrepareOptionsMenu(menu);
+		menu.setGroupVisible(MENU_EXPORT_ALL, ! deletingSeveral);
+		menu.setGroupVisible(MENU_EXPORT_CHANGES, ! deletingSeveral);
+		menu.setGroupVisible(MENU_IMPORT, ! deletingSeveral);
+		menu.setGroupVisible(MENU_DELETE_SEVERAL, ! deletingSeveral);
+		menu.setGroupVisible(MENU_DELETE_CHECKED, deletingSeveral);
+		return true;
+	}
+
+	/** While deleting several, the back key leaves that mode instead of the activity. */
+	@Override
+	public void onBackPressed() {
+		if (deletingSeveral)
+			endDeleteSeveral();
+		else
+			super.onBackPressed();
+	}
 	
 	@Override
     public boolean onOptionsItemSelected(MenuItem item) {
 		switch(item.getItemId()) {
 		case EXPORT_ALL_ITEM:
-			Cursor c = dbHelper.fetchAll();
-			
-			Toast toast;
-			
-			ExportHelper exHlp = new ExportHelper(this);
-			if(exHlp.write(c))
-				toast = Toast.makeText(this, R.string.export_succes, Toast.LENGTH_SHORT);
-			else
-				toast = Toast.makeText(this, R.string.export_fail, Toast.LENGTH_SHORT);
-			
-			toast.show();
-			
+		case EXPORT_CHANGES_ITEM:
+			{
+				final boolean changesOnly = (item.getItemId() == EXPORT_CHANGES_ITEM);
+				ExportHelper.showFormatChooser(this, new DialogInterface.OnClickListener() {
+					public void onClick(DialogInterface dialog, int format) {
+						new AllExporter(changesOnly).execute(Integer.valueOf(format));
+					}
+				});
+			}
+			return true;
+
+		case DELETE_SEVERAL_ITEM:
+			startDeleteSeveral();
+			return true;
+
+		case DELETE_CHECKED_ITEM:
+			confirmDeleteChecked();
+			return true;
+
+		case CANCEL_CHECKED_ITEM:
+			endDeleteSeveral();
+			return true;
+
+		case IMPORT_ITEM:
+			showImportChooser();
 			return true;
 		}
 		
 		return false;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Put the list into multiple-choice mode, with a check box on each row, for "Delete several".
+	 * The list keeps loading pages as the user scrolls, so any of the times can be checked.
+	 * The options menu then has Delete ({@link #confirmDeleteChecked()}) and Cancel.
+	 * @see #endDeleteSeveral()
+	 */
+	private void startDeleteSeveral() {
+		if (deletingSeveral || (timesAdapter.getCount() == 0))
+			return;
+
+		deletingSeveral = true;
+		final ListView lv = getListView();
+		lv.clearChoices();
+		lv.setChoiceMode(ListView.CHOICE_MODE_MULTIPLE);
+		timesAdapter.notifyDataSetChanged();  // redraw rows with check boxes
+		Toast.makeText(this, R.string.delete_several_hint, Toast.LENGTH_SHORT).show();
+	}
+
+	/**
+	 * Leave the multiple-choice mode of {@link #startDeleteSeveral()}, unchecking all rows.
+	 */
+	private void endDeleteSeveral() {
+		if (! deletingSeveral)
+			return;
+
+		deletingSeveral = false;
+		final ListView lv = getListView();
+		lv.clearChoices();
+		lv.setChoiceMode(ListView.CHOICE_MODE_NONE);
+		timesAdapter.notifyDataSetChanged();
+	}
+
+	/**
+	 * Ask whether to delete the checked times; if the user confirms,
+	 * leave multiple-choice mode and delete them with a {@link BatchDeleter}.
+	 */
+	private void confirmDeleteChecked() {
+		final long[] del = getListView().getCheckedItemIds();
+		if ((del == null) || (del.length == 0))
+		{
+			endDeleteSeveral();
+			return;
+		}
+		Arrays.sort(del);  // BatchDeleter wants them ascending, like the list
+
+		new AlertDialog.Builder(this)
+			.setTitle(R.string.delete_several)
+			.setMessage(getResources().getString(R.string.delete_checked_confirm, del.length))
+			.setPositiveButton(R.string.delete, new DialogInterface.OnClickListener() {
+				public void onClick(DialogInterface dialog, int which) {
+					endDeleteSeveral();
+					new BatchDeleter().execute(del);
+				}
+			})
+			.setNegativeButton(R.string.cancel, null)
+			.show();
+	}
+
+	/**
+	 * Show a dialog listing the export archives found by {@link TimesImporter#findArchives()};
+	 * if the user picks one, import it with an {@link Importer}.
+	 */
+	private void showImportChooser() {
+		final File[] archives = TimesImporter.findArchives();
+		if (archives.length == 0)
+		{
+			Toast.makeText(this, R.string.import_none, Toast.LENGTH_SHORT).show();
+			return;
+		}
+
+		final CharSequence[] names = new CharSequence[archives.length];
+		for (int i = 0; i < archives.length; ++i)
+			names[i] = archives[i].getName();
+		new AlertDialog.Builder(this)
+			.setTitle(R.string.import_archive)
+			.setItems(names, new DialogInterface.OnClickListener() {
+				public void onClick(DialogInterface dialog, int which) {
+					new Importer().execute(archives[which]);
+				}
+			})
+			.show();
+	}
+
+	/**
+	 * Imports an export archive in the background with a {@link TimesImporter},
+	 * then shows a toast with the counts and reloads the list.
+	 */
+	private class Importer extends AsyncTask<File, Void, TimesImporter> {
+
+		/** Did the importer read the whole file? */
+		private boolean ok;
+
+		@Override
+		protected TimesImporter doInBackground(File... f) {
+			TimesImporter ti = new TimesImporter(LoadActivity.this);
+			ok = ti.importFile(f[0]);
+			return ti;
+		}
+
+		@Override
+		protected void onPostExecute(TimesImporter ti) {
+			if (ok)
+				Toast.makeText(LoadActivity.this,
+					getResources().getString(R.string.import_done, ti.getImportedCount(),
+						ti.getDuplicateCount(), ti.getSkippedCount(), ti.getDeletedCount()),
+					Toast.LENGTH_LONG).show();
+			else
+				Toast.makeText(LoadActivity.this, R.string.import_fail, Toast.LENGTH_SHORT).show();
+
+			if ((ti.getImportedCount() > 0) || (ti.getDeletedCount() > 0))
+				timesAdapter.reload();
+		}
+	}
+
+	/**
+	 * Exports all saved times, or those changed since the last export of changes,
+	 * into one zip archive in the background with {@link ExportHelper#writeAll(int)}
+	 * or {@link ExportHelper#writeChanges(int)}, then shows a toast with the result.
+	 * Parameter is the export format, such as {@link ExportHelper#FORMAT_TEXT}.
+	 */
+	private class AllExporter extends AsyncTask<Integer, Void, Integer> {
+
+		/** True for {@link ExportHelper#writeChanges(int)} */
+		private final boolean changesOnly;
+
+		AllExporter(final boolean changesOnly) {
+			this.changesOnly = changesOnly;
+		}
+
+		@Override
+		protected Integer doInBackground(Integer... format) {
+			ExportHelper exHlp = new ExportHelper(LoadActivity.this);
+			final int fmt = format[0].intValue();
+			return Integer.valueOf((changesOnly) ? exHlp.writeChanges(fmt) : exHlp.writeAll(fmt));
+		}
+
+		@Override
+		protected void onPostExecute(Integer count) {
+			final int n = count.intValue();
+			final int msg;
+			if (n < 0)
+				msg = R.string.export_fail;
+			else if ((n == 0) && changesOnly)
+				msg = R.string.export_no_changes;
+			else
+				msg = R.string.export_succes;
+			Toast.makeText(LoadActivity.this, msg, Toast.LENGTH_SHORT).show();
+		}
+	}
+
+	/**
+	 * Deletes several saved times in the background with one call to
+	 * {@link AnstopDbAdapter#delete(long[])}, then reclaims the freed space if
+	 * there's enough of it, and removes the deleted rows from {@link #timesAdapter}.
+	 * Parameter is the ascending row IDs to delete.
+	 */
+	private class BatchDeleter extends AsyncTask<long[], Void, long[]> {
+
+		@Override
+		protected long[] doInBackground(long[]... rowIds) {
+			// own adapter: dbHelper may be closed in onDestroy while this runs
+			AnstopDbAdapter db = new AnstopDbAdapter(LoadActivity.this);
+			db.open();
+			db.delete(rowIds[0]);
+			db.reclaimSpaceIfNeeded();
+			db.close();
+			return rowIds[0];
+		}
+
+		@Override
+		protected void onPostExecute(long[] rowIds) {
+			timesAdapter.removeIds(rowIds);
+		}
+	}
+
+	/**
+	 * One page of saved times, read by {@link PageLoader}.
+	 */
+	private static final class Page {
+		final long[] ids = new long[PAGE_SIZE];
+		final String[] titles = new String[PAGE_SIZE];
+		/** Number of rows in this page; less than {@link LoadActivity#PAGE_SIZE} if it's the last page */
+		int count;
+	}
+
+	/**
+	 * Reads one page of saved times in the background and hands it to {@link #timesAdapter}.
+	 * Parameter is the last ID of the previous page, or 0 for the first page.
+	 */
+	private class PageLoader extends AsyncTask<Long, Void, Page> {
+
+		/** Search text, or null to list all times */
+		private final String query;
+
+		PageLoader(final String query) {
+			this.query = query;
+		}
+
+		@Override
+		protected Page doInBackground(Long... afterId) {
+			// own adapter: dbHelper may be closed in onDestroy while this runs
+			AnstopDbAdapter db = new AnstopDbAdapter(LoadActivity.this);
+			db.open();
+			final Page p = new Page();
+			final long after = afterId[0].longValue();
+			Cursor c = (query != null)
+				? db.searchPage(query, after, PAGE_SIZE)
+				: db.fetchPage(after, PAGE_SIZE);
+			if (c != null)
+			{
+				while ((p.count < PAGE_SIZE) && c.moveToNext())
+				{
+					p.ids[p.count] = c.getLong(0);
+					p.titles[p.count] = c.getString(1);
+					++p.count;
+				}
+				c.close();
+			}
+			db.close();
+			return p;
+		}
+
+		@Override
+		protected void onPostExecute(Page p) {
+			timesAdapter.appendPage(this, p);
+		}
+	}
+
+	/**
+	 * Adapter for the list of saved times: Holds the IDs and titles loaded so far,
+	 * in ID order, and loads the next page with a {@link PageLoader} as the list
+	 * nears the end of them.  Each page starts after the previous page's last ID (keyset paging).
+	 * Deleting a time removes only its row; nothing is re-read.
+	 *<P>
+	 * Item IDs are the {@link AnstopDbAdapter#KEY_ROWID}s, as with the cursor adapter this replaces.
+	 */
+	private class TimesAdapter extends BaseAdapter {
+
+		/** Row IDs of the loaded times, ascending; only the first {@link #titles}.size() are used */
+		private long[] ids = new long[PAGE_SIZE];
+
+		/** Titles of the loaded times */
+		private final ArrayList<String> titles = new ArrayList<String>();
+
+		/** False once a page came back short, so there's nothing more to load */
+		private boolean hasMore = true;
+
+		/** The page being loaded, or null */
+		private PageLoader loader;
+
+		/** Current search text, or null to list all times */
+		private String query;
+
+		public int getCount() { return titles.size(); }
+
+		public Object getItem(int position) { return titles.get(position); }
+
+		public long getItemId(int position) { return ids[position]; }
+
+		@Override
+		public boolean hasStableIds() { return true; }
+
+		/** Two row types: {@link R.layout#times_row}, and {@link R.layout#times_row_check} while deleting several. */
+		@Override
+		public int getViewTypeCount() { return 2; }
+
+		@Override
+		public int getItemViewType(int position) { return (deletingSeveral) ? 1 : 0; }
+
+		public View getView(int position, View convertView, ViewGroup parent) {
+			final TextView tv;
+			if (convertView != null)
+				tv = (TextView) convertView;
+			else
+				tv = (TextView) getLayoutInflater().inflate
+					((deletingSeveral) ? R.layout.times_row_check : R.layout.times_row, parent, false);
+			tv.setText(titles.get(position));
+
+			if (position >= titles.size() - PREFETCH_DISTANCE)
+				loadNextPage();
+
+			return tv;
+		}
+
+		/** Start loading the next page, unless already loading or all pages are loaded. */
+		void loadNextPage() {
+			if ((! hasMore) || (loader != null))
+				return;
+
+			final int n = titles.size();
+			loader = new PageLoader(query);
+			loader.execute(Long.valueOf((n > 0) ? ids[n - 1] : 0L));
+		}
+
+		/**
+		 * Show only the times matching a search, or all times.  Clears the list and loads its first page.
+		 * @param q  Search text, or null for all
+		 */
+		void setQuery(final String q) {
+			if ((q == null) ? (query == null) : q.equals(query))
+				return;
+
+			query = q;
+			reload();
+		}
+
+		/** Clear the list and load its first page again, such as after importing times. */
+		void reload() {
+			if (loader != null)
+			{
+				loader.cancel(false);
+				loader = null;
+			}
+			titles.clear();
+			hasMore = true;
+			getListView().clearChoices();  // checked positions would now be other rows
+			notifyDataSetChanged();
+			loadNextPage();
+		}
+
+		/** Cancel any page being loaded; call from {@link LoadActivity#onDestroy()}. */
+		void cancelLoad() {
+			if (loader != null)
+			{
+				loader.cancel(false);
+				loader = null;
+			}
+			hasMore = false;
+		}
+
+		/**
+		 * Add a loaded page at the end of the list.
+		 * @param from  Loader of this page; if it's not the current {@link #loader}, the page is ignored
+		 * @param p  The page
+		 */
+		void appendPage(final PageLoader from, final Page p) {
+			if (from != loader)
+				return;  // cancelled
+			loader = null;
+
+			final int n = titles.size();
+			if (n + p.count > ids.length)
+			{
+				long[] grown = new long[Math.max(ids.length * 2, n + p.count)];
+				System.arraycopy(ids, 0, grown, 0, n);
+				ids = grown;
+			}
+			System.arraycopy(p.ids, 0, ids, n, p.count);
+			for (int i = 0; i < p.count; ++i)
+				titles.add(p.titles[i]);
+			hasMore = (p.count == PAGE_SIZE);
+
+			notifyDataSetChanged();
+		}
+
+		/**
+		 * Remove a deleted time's row, if it's loaded.
+		 * @param id  The time's row ID
+		 */
+		void removeId(final long id) {
+			// binary search: ids are ascending
+			final int n = titles.size();
+			int lo = 0, hi = n - 1;
+			while (lo <= hi)
+			{
+				final int mid = (lo + hi) >>> 1;
+				if (ids[mid] < id)
+					lo = mid + 1;
+				else if (ids[mid] > id)
+					hi = mid - 1;
+				else {
+					System.arraycopy(ids, mid + 1, ids, mid, n - mid - 1);
+					titles.remove(mid);
+					getListView().clearChoices();
+					notifyDataSetChanged();
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Remove several deleted times' rows, those which are loaded, in one pass.
+		 * @param del  The times' row IDs, ascending
+		 */
+		void removeIds(final long[] del) {
+			final int n = titles.size();
+			int keep = 0, d = 0;
+			for (int i = 0; i < n; ++i)
+			{
+				while ((d < del.length) && (del[d] < ids[i]))
+					++d;
+				if ((d < del.length) && (del[d] == ids[i]))
+					continue;
+
+				if (keep != i)
+				{
+					ids[keep] = ids[i];
+					titles.set(keep, titles.get(i));
+				}
+				++keep;
+			}
+			if (keep == n)
+				return;
+
+			for (int i = n - 1; i >= keep; --i)
+				titles.remove(i);
+			getListView().clearChoices();
+			notifyDataSetChanged();
+		}
+	}
+
+}
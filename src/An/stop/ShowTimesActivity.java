@@ -23,10 +23,12 @@
 package An.stop;
 
 import android.app.Activity;
+import android.content.DialogInterface;
 import android.database.Cursor;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.View;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -87,6 +89,19 @@ public class ShowTimesActivity extends Activity {
 			// getRowAndFormat combines and formats those db fields into one body string.
 			final String[] formatted = dbHelper.getRowAndFormat(mRowId);
 			bodyView.setText(formatted[1]);
+
+			// Lap statistics, without reading the laps
+			final LapSummary sum = dbHelper.fetchLapSummary(mRowId);
+			if (sum != null)
+			{
+				final Clock.LapFormatter lapf = new Clock.LapFormatter();
+				TextView summaryView = (TextView) findViewById(R.id.summaryView);
+				summaryView.setText(getResources().getString(R.string.lap_summary,
+					sum.count, formatLapTime(lapf, sum.fastest),
+					formatLapTime(lapf, sum.slowest), formatLapTime(lapf, sum.mean)));
+				summaryView.setTextSize(VIEW_SIZE - 10);
+				summaryView.setVisibility(View.VISIBLE);
+			}
 		}
 
 		dbHelper.close();
@@ -95,6 +110,18 @@ public class ShowTimesActivity extends Activity {
 		bodyView.setTextSize(VIEW_SIZE - 10);
 	}
 	
+	/**
+	 * Format a lap time as h mm:ss:d for {@link #onCreate(Bundle)}'s lap summary.
+	 * @param lapf  Formatter with default flags
+	 * @param millis  Time in milliseconds
+	 * @return  the formatted time
+	 */
+	private static String formatLapTime(final Clock.LapFormatter lapf, final long millis) {
+		StringBuilder sb = new StringBuilder();
+		lapf.formatTimeLap(sb, false, -1, 0, 0, 0, 0, millis, 0, 0);
+		return sb.toString();
+	}
+
 	@Override
     public boolean onCreateOptionsMenu(Menu menu) {
     	
@@ -116,17 +143,25 @@ public class ShowTimesActivity extends Activity {
 	        return true;
 	        
 		case EXPORT_ITEM:
-			ExportHelper exHlp = new ExportHelper(this);
-			
-			Toast toast;
-			
-			if(exHlp.write(titleView.getText().toString(), bodyView.getText().toString()))
-				toast = Toast.makeText(this, R.string.export_succes, Toast.LENGTH_SHORT);
-			else
-				toast = Toast.makeText(this, R.string.export_fail, Toast.LENGTH_SHORT);
-			
-			toast.show();
-			
+			ExportHelper.showFormatChooser(this, new DialogInterface.OnClickListener() {
+				public void onClick(DialogInterface dialog, int format) {
+					ExportHelper exHlp = new ExportHelper(ShowTimesActivity.this);
+					
+					Toast toast;
+					
+					final boolean ok;
+					if (format == ExportHelper.FORMAT_TEXT)
+						ok = exHlp.write(titleView.getText().toString(), bodyView.getText().toString());
+					else
+						ok = exHlp.write(mRowId.longValue(), format);
+					if(ok)
+						toast = Toast.makeText(ShowTimesActivity.this, R.string.export_succes, Toast.LENGTH_SHORT);
+					else
+						toast = Toast.makeText(ShowTimesActivity.this, R.string.export_fail, Toast.LENGTH_SHORT);
+					
+					toast.show();
+				}
+			});
 			
 			return true;
 
@@ -0,0 +1,322 @@
+/***************************************************************************
+ *   This file Copyright (C) 2026 by the Anstop authors                    *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package An.stop;
+
+import android.os.SystemClock;
+
+/**
+ * The counting and lap state of one stopwatch, without any display:
+ * mode, started/stopped state, the monotonic-clock start time, and laps.
+ * Cheap to create; a {@link StopwatchEngine} can drive dozens of these
+ * from one tick subscription.  {@link Clock} extends this class to
+ * connect one stopwatch to {@link Anstop}'s views.
+ *<P>
+ * Has three states:
+ *<UL>
+ * <LI> Reset: This is the initial state.  In STOP_LAP mode the time is 0;
+ *        in COUNTDOWN mode it's the total from {@link #resetState(int, int)}.
+ * <LI> Started: {@link #isStarted}.  The time is calculated from {@link #monoStartAdj}.
+ * <LI> Stopped: {@link #wasStarted} but not {@link #isStarted}; can be started again to continue counting.
+ *</UL>
+ * State changes aren't synchronized here: Call them from one thread at a time,
+ * such as the UI thread, or while holding a lock like {@link StopwatchEngine} does.
+ * Another thread, such as the tick thread, can read {@link #isStarted} and call
+ * {@link #getElapsedMonoMillis(long)} without locking.
+ * @since 1.6
+ */
+public class Stopwatch {
+
+	/**
+	 * Counting mode. Two possibilities:
+	 *<UL>
+	 *<LI> {@link Anstop#STOP_LAP} (0), counting up from 0
+	 *<LI> {@link Anstop#COUNTDOWN} (1), counting down from a time set by the user
+	 *</UL>
+	 * @see #getMode()
+	 * @see #resetState(int, int)
+	 */
+	int mode;
+
+	/** is the stopwatch currently running? Volatile because the counting thread reads it, and clears it at the end of a countdown. */
+	public volatile boolean isStarted = false;
+
+	/** has the stopwatch run since its last reset? This is not an 'isPaused' flag, because
+	 *  it's set true when the counting begins and {@link #isStarted} is set true.
+	 *<P>
+	 *  <tt>wasStarted</tt> is set true by {@link #start(long, long)} or {@link #recordLap(long, long)},
+	 *  and false by {@link #resetState(int, int)}.
+	 */
+	public boolean wasStarted = false;
+
+	/**
+	 * Elapsed time and system time of each lap, if lap mode.
+	 * Lap number 1 is index 0.  Read-only outside this class, please,
+	 * except to restore laps from saved state or the database.
+	 */
+	final LapStore lapStore = new LapStore();
+
+	/**
+	 * For countdown mode, the initial seconds, minutes, hours,
+	 * as set by {@link #resetState(int, int)},
+	 * stored as a total number of seconds.
+	 */
+	int countdnTotalSeconds = 0;
+
+	/**
+	 * If running, the actual start time, and the adjusted start time after pauses.
+	 * (If there are no pauses, they are identical.  Otherwise, the difference
+	 * is the amount of paused time.)
+	 *<P>
+	 * When counting up, the amount of time on the clock
+	 * is the current time minus <tt>startTimeAdj</tt>
+	 *<P>
+	 * Taken from {@link System#currentTimeMillis()}; -1L if never started.
+	 */
+	long startTimeActual = -1L, startTimeAdj = -1L;
+
+	/**
+	 * If {@link #wasStarted}, and ! {@link #isStarted}, the
+	 * current time when the stopwatch was paused by calling {@link #stop(long, long)}
+	 * (taken from {@link System#currentTimeMillis()}).
+	 * Otherwise -1.
+	 */
+	long stopTime = -1L;
+
+	/**
+	 * If running, the monotonic-clock equivalent of {@link #startTimeAdj}:
+	 * When counting up, the amount of time on the clock is
+	 * {@link SystemClock#elapsedRealtime()} minus <tt>monoStartAdj</tt>.
+	 * When counting down, that amount is subtracted from {@link #countdnTotalSeconds}.
+	 *<P>
+	 * Unlike {@link System#currentTimeMillis()}, the monotonic clock isn't changed
+	 * if the user or the network sets the device's time.  It's also not meaningful across
+	 * a reboot, so this field isn't persisted; {@link #start(long, long)} recalculates it from
+	 * {@link #getHeldMillis()} when it's -1L (never started, or after restoring a saved state).
+	 */
+	volatile long monoStartAdj = -1L;
+
+	/**
+	 * If {@link #wasStarted}, and ! {@link #isStarted}, the time from
+	 * {@link SystemClock#elapsedRealtime()} when the stopwatch was paused by calling {@link #stop(long, long)}.
+	 * Otherwise -1.  The monotonic-clock equivalent of {@link #stopTime}.
+	 */
+	long monoStopTime = -1L;
+
+	/**
+	 * While not running, the milliseconds on the stopwatch; see {@link #getHeldMillis()}.
+	 * Set by {@link #stop(long, long)} and {@link #resetState(int, int)}.
+	 */
+	private long heldMillis;
+
+	/**
+	 * Create a stopwatch in the reset state.
+	 * @param mode  {@link Anstop#STOP_LAP} or {@link Anstop#COUNTDOWN}; for countdown,
+	 *     call {@link #resetState(int, int)} to set the time before starting
+	 */
+	public Stopwatch(final int mode) {
+		this.mode = mode;
+	}
+
+	/**
+	 * Get the stopwatch's current counting mode.
+	 * @return  the mode; {@link Anstop#STOP_LAP} or {@link Anstop#COUNTDOWN}
+	 */
+	public int getMode() { return mode; }
+
+	/**
+	 * Get the lap count.
+	 * @return  number of laps recorded; 0 if none
+	 */
+	public int getLapCount() { return lapStore.size(); }
+
+	/**
+	 * Get the actual start time.
+	 * @return Start time, of the form used by {@link System#currentTimeMillis()},
+	 *   or -1L if never started.
+	 */
+	public long getStartTimeActual() { return startTimeActual; }
+
+	/**
+	 * Get the actual stop time, if any.
+	 * @return  If {@link #wasStarted}, and ! {@link #isStarted}, the
+	 * current time when the stopwatch was paused
+	 * (taken from {@link System#currentTimeMillis()}).
+	 * Otherwise -1.
+	 */
+	public long getStopTime() { return stopTime; }
+
+	/**
+	 * Get the milliseconds on the stopwatch while it's not running:
+	 * Elapsed time if counting up, remaining time if counting down.
+	 * {@link Clock} overrides this to read its displayed time,
+	 * which may be restored from a saved state.
+	 * @return  Milliseconds held while stopped or reset
+	 */
+	protected long getHeldMillis() { return heldMillis; }
+
+	/**
+	 * Get the amount of time to show, based on the monotonic clock.
+	 * Call only while running, when {@link #monoStartAdj} is set.
+	 * Safe to call from any thread.
+	 * @param monoNow  Current time from {@link SystemClock#elapsedRealtime()}
+	 * @return  Elapsed milliseconds when counting up; remaining milliseconds when counting down,
+	 *     which won't be less than 0
+	 */
+	long getElapsedMonoMillis(final long monoNow)
+	{
+		final long elapsed = monoNow - monoStartAdj;  // single volatile read
+		if (mode == Anstop.STOP_LAP)
+			return elapsed;
+
+		final long remain = (countdnTotalSeconds * 1000L) - elapsed;
+		return (remain > 0) ? remain : 0;
+	}
+
+	/**
+	 * Get the milliseconds on the stopwatch at <tt>monoNow</tt>, running or not.
+	 * @param monoNow  Current time from {@link SystemClock#elapsedRealtime()}
+	 * @return  Elapsed milliseconds if counting up, remaining if counting down
+	 */
+	public long getMillis(final long monoNow)
+	{
+		if (isStarted && (monoStartAdj != -1L))
+			return getElapsedMonoMillis(monoNow);
+
+		return getHeldMillis();
+	}
+
+	/**
+	 * Start or resume counting, updating the start-time fields.
+	 * If this is a resume after {@link #stop(long, long)}, the paused time is skipped.
+	 * Does nothing if already {@link #isStarted}.
+	 * @param now  Current time from {@link System#currentTimeMillis()}
+	 * @param monoNow  Current time from {@link SystemClock#elapsedRealtime()}
+	 * @return  true if now started; false if a countdown is already at 0,
+	 *     which leaves {@link #isStarted} false
+	 */
+	boolean start(final long now, final long monoNow)
+	{
+		if (isStarted)
+			return true;
+
+		if (! wasStarted)
+		{
+			startTimeActual = now;
+			startTimeAdj = startTimeActual;
+		}
+		else if (stopTime != -1L)
+		{
+			startTimeAdj += (now - stopTime);
+		}
+
+		final long shown = getHeldMillis();
+		if ((! wasStarted) || (monoStartAdj == -1L))
+		{
+			// Start from the held time; when counting down, it's the time remaining
+			monoStartAdj = monoNow -
+				((mode == Anstop.STOP_LAP) ? shown : ((countdnTotalSeconds * 1000L) - shown));
+		}
+		else if (monoStopTime != -1L)
+		{
+			monoStartAdj += (monoNow - monoStopTime);
+		}
+		monoStopTime = -1L;
+
+		wasStarted = true;
+		if ((mode != Anstop.STOP_LAP) && (shown == 0))
+			return false;  // Anstop.COUNTDOWN, already at 0
+
+		isStarted = true;
+		return true;
+	}
+
+	/**
+	 * Stop(pause) counting.  Clears {@link #isStarted} before updating any other field.
+	 * @param now  Current time from {@link System#currentTimeMillis()}
+	 * @param monoNow  Current time from {@link SystemClock#elapsedRealtime()}
+	 * @return  Milliseconds on the stopwatch when stopped
+	 */
+	long stop(final long now, final long monoNow)
+	{
+		isStarted = false;
+		stopTime = now;
+		monoStopTime = monoNow;
+		heldMillis = getElapsedMonoMillis(monoNow);
+		return heldMillis;
+	}
+
+	/**
+	 * Record a lap whose elapsed time has already been read.
+	 *<P>
+	 * If not {@link #wasStarted}, sets that flag so the new lap time-of-day info
+	 * won't be lost without UI confirmation if Reset button is pressed.
+	 * If also not {@link #isStarted} and <tt>lapElapsed</tt> is 0,
+	 * sets the start time and stop time to the lap's time of day.
+	 * @param lapElapsed  Lap's elapsed milliseconds, from {@link #getMillis(long)}
+	 * @param lapNow  Lap's time of day, from {@link System#currentTimeMillis()}
+	 * @return the lap number; the first lap number is 1.
+	 */
+	int recordLap(final long lapElapsed, final long lapNow)
+	{
+		lapStore.add(lapElapsed, lapNow);
+		final int lapnum = lapStore.size();
+
+		if (! wasStarted)
+		{
+			wasStarted = true;
+
+			if ((! isStarted) && (lapElapsed == 0))
+			{
+				startTimeActual = lapNow;
+				startTimeAdj = lapNow;
+				stopTime = lapNow;
+			}
+		}
+
+		return lapnum;
+	}
+
+	/**
+	 * Reset the counting and lap state, and maybe change modes.  {@link #isStarted} must be false.
+	 * @param newMode  new mode to set, or -1 to leave as is
+	 * @param countdownSeconds  For countdown mode, the total seconds to count down from; ignored for STOP_LAP
+	 */
+	void resetState(final int newMode, final int countdownSeconds)
+	{
+		if (newMode != -1)
+			mode = newMode;
+
+		wasStarted = false;
+		stopTime = -1L;
+		startTimeActual = -1L;
+		startTimeAdj = -1L;
+		monoStartAdj = -1L;
+		monoStopTime = -1L;
+		lapStore.clear();
+		if (mode == Anstop.STOP_LAP)
+		{
+			heldMillis = 0;
+		} else {
+			countdnTotalSeconds = countdownSeconds;
+			heldMillis = countdownSeconds * 1000L;
+		}
+	}
+
+}
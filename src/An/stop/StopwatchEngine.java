@@ -0,0 +1,295 @@
+/***************************************************************************
+ *   This file Copyright (C) 2026 by the Anstop authors                    *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package An.stop;
+
+import java.util.ArrayList;
+
+import android.os.SystemClock;
+
+/**
+ * Runs any number of independent {@link Stopwatch}es, such as one per athlete,
+ * from a single {@link TickScheduler} subscription.  Each stopwatch has its own
+ * mode, start/stop state and laps.
+ *<P>
+ * Only running stopwatches are visited on a tick, and the engine is subscribed
+ * only while at least one is running, so an idle stopwatch costs nothing but its memory.
+ * Each tick wakes once for all running stopwatches, at the earliest 0.1-second
+ * boundary any of them needs.
+ *<P>
+ * Start, stop, lap and reset stopwatches through the engine, from any thread;
+ * those methods are synchronized.  The tick thread doesn't take the lock except
+ * to stop a countdown that has reached 0.
+ * @since 1.6
+ */
+public class StopwatchEngine implements TickScheduler.Listener {
+
+	/**
+	 * Callback for the engine's ticks.  Called from the tick thread, not the UI thread.
+	 */
+	public interface Listener {
+		/**
+		 * A running stopwatch's time at this tick.
+		 * @param sw  The stopwatch
+		 * @param shownMillis  Elapsed milliseconds if counting up, remaining if counting down
+		 */
+		void onStopwatchTick(Stopwatch sw, long shownMillis);
+
+		/**
+		 * A countdown stopwatch has reached 0, and the engine has stopped it.
+		 * @param sw  The stopwatch
+		 */
+		void onCountdownDone(Stopwatch sw);
+	}
+
+	/** Our optional listener, or null. */
+	private final Listener listener;
+
+	/** Scheduler to subscribe to, or null for the shared {@link TickScheduler#getInstance()}. */
+	private final TickScheduler scheduler;
+
+	/** All stopwatches, in the order added; access only while synchronized on this object. */
+	private final ArrayList<Stopwatch> all = new ArrayList<Stopwatch>();
+
+	/**
+	 * Running stopwatches; replaced, never changed, whenever one starts or stops,
+	 * so the tick thread can read it without locking.
+	 */
+	private volatile Stopwatch[] running = new Stopwatch[0];
+
+	/**
+	 * Create an engine with no stopwatches.
+	 * @param li  Listener for ticks and finished countdowns, or null
+	 */
+	public StopwatchEngine(final Listener li) {
+		this(li, null);
+	}
+
+	/**
+	 * Create an engine with no stopwatches, ticked by a given scheduler, such as a test's.
+	 * @param li  Listener for ticks and finished countdowns, or null
+	 * @param sched  Scheduler to subscribe to, or null for the shared {@link TickScheduler#getInstance()}
+	 */
+	StopwatchEngine(final Listener li, final TickScheduler sched) {
+		listener = li;
+		scheduler = sched;
+	}
+
+	/** Get our scheduler; the shared one isn't started until a stopwatch first runs. */
+	private TickScheduler getScheduler() {
+		return (scheduler != null) ? scheduler : TickScheduler.getInstance();
+	}
+
+	/**
+	 * Add a new stopwatch, in the reset state.
+	 * @param mode  {@link Anstop#STOP_LAP} or {@link Anstop#COUNTDOWN}
+	 * @param countdownSeconds  For countdown mode, the total seconds to count down from; ignored for STOP_LAP
+	 * @return  the new stopwatch
+	 */
+	public synchronized Stopwatch add(final int mode, final int countdownSeconds) {
+		final Stopwatch sw = new Stopwatch(mode);
+		sw.resetState(mode, countdownSeconds);
+		all.add(sw);
+		return sw;
+	}
+
+	/**
+	 * Stop and remove a stopwatch.  If <tt>sw</tt> isn't in this engine, does nothing.
+	 * @param sw  Stopwatch to remove
+	 */
+	public synchronized void remove(final Stopwatch sw) {
+		if (! all.remove(sw))
+			return;
+		if (sw.isStarted)
+			stop(sw);
+	}
+
+	/**
+	 * Get the number of stopwatches, running or not.
+	 * @return  the count
+	 */
+	public synchronized int size() { return all.size(); }
+
+	/**
+	 * Get a stopwatch by position.
+	 * @param i  Index, 0 to {@link #size()} - 1, in the order added
+	 * @return  the stopwatch
+	 * @throws IndexOutOfBoundsException if <tt>i</tt> is out of range
+	 */
+	public synchronized Stopwatch get(final int i)
+		throws IndexOutOfBoundsException
+	{
+		return all.get(i);
+	}
+
+	/**
+	 * Start or resume one stopwatch.  Does nothing if already running.
+	 * @param sw  Stopwatch from this engine
+	 * @return  true if running; false if a countdown is already at 0
+	 */
+	public synchronized boolean start(final Stopwatch sw) {
+		if (sw.isStarted)
+			return true;
+		if (! sw.start(System.currentTimeMillis(), SystemClock.elapsedRealtime()))
+			return false;
+
+		addRunning(sw);
+		return true;
+	}
+
+	/**
+	 * Start or resume every stopwatch that isn't running, at the same instant;
+	 * for example, at a mass start.
+	 */
+	public synchronized void startAll() {
+		final long now = System.currentTimeMillis(),
+		           monoNow = SystemClock.elapsedRealtime();
+		for (int i = 0; i < all.size(); ++i)
+		{
+			final Stopwatch sw = all.get(i);
+			if ((! sw.isStarted) && sw.start(now, monoNow))
+				addRunning(sw);
+		}
+	}
+
+	/**
+	 * Stop(pause) one stopwatch.  Does nothing if not running.
+	 * @param sw  Stopwatch from this engine
+	 * @return  Milliseconds on the stopwatch: Elapsed if counting up, remaining if counting down
+	 */
+	public synchronized long stop(final Stopwatch sw) {
+		final long monoNow = SystemClock.elapsedRealtime();
+		if (! sw.isStarted)
+			return sw.getMillis(monoNow);
+
+		final long shown = sw.stop(System.currentTimeMillis(), monoNow);
+		removeRunning(sw);
+		return shown;
+	}
+
+	/**
+	 * Take a lap on one stopwatch now, running or not.
+	 * The lap's time is read from the monotonic clock at the moment of this call.
+	 * @param sw  Stopwatch from this engine
+	 * @return  the lap number; the first lap number is 1
+	 */
+	public synchronized int lap(final Stopwatch sw) {
+		final long lapNow = System.currentTimeMillis();
+		return sw.recordLap(sw.getMillis(SystemClock.elapsedRealtime()), lapNow);
+	}
+
+	/**
+	 * Reset one stopwatch, if it's not running, and maybe change its mode.
+	 * @param sw  Stopwatch from this engine
+	 * @param newMode  new mode to set, or -1 to leave as is
+	 * @param countdownSeconds  For countdown mode, the total seconds to count down from; ignored for STOP_LAP
+	 * @return true if was reset, false if was not reset because it's running
+	 */
+	public synchronized boolean reset(final Stopwatch sw, final int newMode, final int countdownSeconds) {
+		if (sw.isStarted)
+			return false;
+
+		sw.resetState(newMode, countdownSeconds);
+		return true;
+	}
+
+	/** Add to {@link #running}, subscribing to ticks if it was empty. Call only while synchronized. */
+	private void addRunning(final Stopwatch sw) {
+		final Stopwatch[] prev = running;
+		final Stopwatch[] next = new Stopwatch[prev.length + 1];
+		System.arraycopy(prev, 0, next, 0, prev.length);
+		next[prev.length] = sw;
+		running = next;
+
+		// if already subscribed, this asks for the next tick as soon as possible
+		getScheduler().subscribe(this);
+	}
+
+	/** Remove from {@link #running}, unsubscribing from ticks if now empty. Call only while synchronized. */
+	private void removeRunning(final Stopwatch sw) {
+		final Stopwatch[] prev = running;
+		int i = prev.length - 1;
+		while ((i >= 0) && (prev[i] != sw))
+			--i;
+		if (i < 0)
+			return;
+
+		final Stopwatch[] next = new Stopwatch[prev.length - 1];
+		System.arraycopy(prev, 0, next, 0, i);
+		System.arraycopy(prev, i + 1, next, i, prev.length - i - 1);
+		running = next;
+
+		if (next.length == 0)
+			getScheduler().unsubscribe(this);
+	}
+
+	/**
+	 * Stop a countdown which the tick thread has found at 0,
+	 * unless the UI has already stopped or restarted it.
+	 * @return true if stopped here
+	 */
+	private synchronized boolean stopAt0(final Stopwatch sw, final long monoNow) {
+		if ((! sw.isStarted) || (sw.getElapsedMonoMillis(monoNow) != 0))
+			return false;
+
+		sw.stop(System.currentTimeMillis(), monoNow);
+		removeRunning(sw);
+		return true;
+	}
+
+	/**
+	 * Tick all running stopwatches.  Called from the {@link TickScheduler} thread.
+	 * @return  Milliseconds until the earliest 0.1-second boundary of any running stopwatch
+	 */
+	public long onTick(final long monoNow) {
+		final Stopwatch[] sws = running;
+		final Listener li = listener;
+		long delay = 100;
+
+		for (int i = 0; i < sws.length; ++i)
+		{
+			final Stopwatch sw = sws[i];
+			if (! sw.isStarted)
+				continue;  // stop() is removing it
+
+			final long shown = sw.getElapsedMonoMillis(monoNow);
+			final long swDelay;
+			if (sw.mode == Anstop.STOP_LAP)
+			{
+				swDelay = 100 - (shown % 100);
+			}
+			else if (shown == 0)
+			{
+				if (stopAt0(sw, monoNow) && (li != null))
+					li.onCountdownDone(sw);
+				continue;
+			} else {
+				swDelay = (shown % 100) + 1;  // just after the displayed dsec changes
+			}
+
+			if (li != null)
+				li.onStopwatchTick(sw, shown);
+			if (swDelay < delay)
+				delay = swDelay;
+		}
+
+		return delay;
+	}
+
+}
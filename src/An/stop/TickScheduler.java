@@ -0,0 +1,225 @@
+/***************************************************************************
+ *   This file Copyright (C) 2026 by the Anstop authors                    *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package An.stop;
+
+import java.util.ArrayList;
+
+import android.os.SystemClock;
+
+/**
+ * One long-lived tick thread shared by all running {@link Clock}s.
+ * Clocks {@link #subscribe(Listener)} when they start counting and
+ * {@link #unsubscribe(Listener)} when they stop or the app is paused,
+ * so starting and stopping never creates or interrupts a thread.
+ *<P>
+ * Each {@link Listener} says how long until it next wants a tick, so the thread
+ * sleeps until the earliest of those times.  When nothing is subscribed, the
+ * thread waits without waking at all.
+ *<P>
+ * A listener which throws a RuntimeException from {@link Listener#onTick(long)} is unsubscribed,
+ * so the others keep getting ticks; see {@link #getLastListenerFailure()}.
+ *<P>
+ * For the debug log, {@link #getWakeupCount()} counts the scheduler thread's wakeups.
+ * @since 1.6
+ */
+public class TickScheduler implements Runnable {
+
+	/**
+	 * Callback for a subscriber to the tick scheduler.
+	 */
+	public interface Listener {
+		/**
+		 * A tick is due.  Called from the scheduler thread, not the UI thread.
+		 * The listener may call {@link TickScheduler#unsubscribe(Listener)} from here.
+		 * @param monoNow  Current time from {@link SystemClock#elapsedRealtime()}
+		 * @return  Milliseconds until the next tick is wanted; should be &gt; 0
+		 */
+		long onTick(final long monoNow);
+	}
+
+	/** A subscribed listener and the {@link SystemClock#elapsedRealtime()} when its next tick is due. */
+	private static class Subscription {
+		final Listener listener;
+		long due;
+
+		Subscription(final Listener listener, final long due) {
+			this.listener = listener;
+			this.due = due;
+		}
+	}
+
+	/** The shared instance, created by {@link #getInstance()}. */
+	private static TickScheduler instance;
+
+	/** Currently subscribed listeners; access only while synchronized on this object. */
+	private final ArrayList<Subscription> subs = new ArrayList<Subscription>();
+
+	/** Subscriptions due on the current tick; used only by the scheduler thread. */
+	private final ArrayList<Subscription> dueNow = new ArrayList<Subscription>();
+
+	/** Number of times the scheduler thread has woken up; see {@link #getWakeupCount()}. */
+	private volatile long wakeupCount;
+
+	/** Number of listeners unsubscribed for throwing; see {@link #getListenerFailureCount()}. */
+	private volatile int listenerFailureCount;
+
+	/** The most recent exception thrown by a listener, or null; see {@link #getLastListenerFailure()}. */
+	private volatile RuntimeException lastListenerFailure;
+
+	/**
+	 * Get the shared tick scheduler, starting its thread if needed.
+	 * @return the scheduler; not null
+	 */
+	public static synchronized TickScheduler getInstance() {
+		if (instance == null) {
+			instance = new TickScheduler();
+			Thread t = new Thread(instance, "Anstop tick");
+			t.setDaemon(true);
+			t.start();
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Constructor for {@link #getInstance()}, and for tests' stand-in schedulers
+	 * which override {@link #subscribe(Listener)} and {@link #unsubscribe(Listener)}.
+	 * Doesn't start a thread.
+	 */
+	TickScheduler() { }
+
+	/**
+	 * Subscribe to ticks; the first tick is delivered as soon as possible.
+	 * If <tt>li</tt> is already subscribed, its next tick is moved up to now.
+	 * @param li  Listener to add
+	 * @see #unsubscribe(Listener)
+	 */
+	public synchronized void subscribe(final Listener li) {
+		final long now = SystemClock.elapsedRealtime();
+		for (int i = subs.size() - 1; i >= 0; --i)
+		{
+			final Subscription sub = subs.get(i);
+			if (sub.listener == li)
+			{
+				sub.due = now;
+				notify();
+				return;
+			}
+		}
+
+		subs.add(new Subscription(li, now));
+		notify();
+	}
+
+	/**
+	 * Unsubscribe from ticks.  If <tt>li</tt> isn't subscribed, does nothing.
+	 * A tick that's already being delivered to <tt>li</tt> on the scheduler thread
+	 * will finish, but no further ticks will be delivered.
+	 * @param li  Listener to remove
+	 */
+	public synchronized void unsubscribe(final Listener li) {
+		for (int i = subs.size() - 1; i >= 0; --i)
+			if (subs.get(i).listener == li)
+				subs.remove(i);
+	}
+
+	/**
+	 * Get the number of times the scheduler thread has woken up since it was started.
+	 * @return the wakeup count
+	 */
+	public long getWakeupCount() { return wakeupCount; }
+
+	/**
+	 * Get the number of listeners unsubscribed because {@link Listener#onTick(long)} threw.
+	 * @return  the failure count, or 0 if none
+	 * @see #getLastListenerFailure()
+	 */
+	public int getListenerFailureCount() { return listenerFailureCount; }
+
+	/**
+	 * Get the most recent exception thrown by a listener's {@link Listener#onTick(long)}.
+	 * @return  the exception, or null if none
+	 * @see #getListenerFailureCount()
+	 */
+	public RuntimeException getLastListenerFailure() { return lastListenerFailure; }
+
+	/**
+	 * The scheduler thread: Sleep until the earliest due tick, then deliver ticks
+	 * to each due {@link Listener} without holding the lock.
+	 */
+	public void run() {
+		for (;;)
+		{
+			long now;
+
+			synchronized (this)
+			{
+				for (;;)
+				{
+					now = SystemClock.elapsedRealtime();
+					long next = Long.MAX_VALUE;
+					for (int i = subs.size() - 1; i >= 0; --i)
+					{
+						final Subscription sub = subs.get(i);
+						if (sub.due <= now)
+							dueNow.add(sub);
+						else if (sub.due < next)
+							next = sub.due;
+					}
+					if (! dueNow.isEmpty())
+						break;
+
+					try {
+						if (next == Long.MAX_VALUE)
+							wait();
+						else
+							wait(next - now);
+					}
+					catch (InterruptedException e) {}
+
+					++wakeupCount;
+				}
+			}
+
+			for (int i = 0; i < dueNow.size(); ++i)
+			{
+				final Subscription sub = dueNow.get(i);
+				long delay;
+				try {
+					delay = sub.listener.onTick(now);
+				} catch (RuntimeException e) {
+					// don't let one listener stop the thread, or get the same exception every tick
+					unsubscribe(sub.listener);
+					++listenerFailureCount;
+					lastListenerFailure = e;
+					continue;
+				}
+				if (delay < 1)
+					delay = 1;
+				synchronized (this)
+				{
+					sub.due = now + delay;
+				}
+			}
+			dueNow.clear();
+		}
+	}
+
+}
@@ -0,0 +1,733 @@
+/***************************************************************************
+ *   This file Copyright (C) 2026 by the Anstop authors                    *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package An.stop;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import android.content.Context;
+import android.os.Environment;
+
+/**
+ * Reads saved times exported by {@link ExportHelper} back into the database:
+ * A zip archive from {@link ExportHelper#writeAll(int)}, or one exported .json or .csv file.
+ * JSON entries have all of a time's fields and laps.  CSV entries have only laps;
+ * the title is taken from the entry's name.  Text entries can't be read back, and are
+ * counted as {@link #getSkippedCount() skipped}.  In an archive from {@link ExportHelper#writeChanges(int)},
+ * the times listed in its {@link ExportHelper#DELETED_ENTRY_NAME} entry are deleted here too:
+ * They're found by title, start time and elapsed time, since their _ids are the exporting device's.
+ *<P>
+ * Files are read with buffered streaming reads, decoded by one reusable UTF-8 decoder
+ * and parsed as they're read, without building a tree or a string per value.
+ * Times are inserted {@link #BATCH_TIMES} at a time, in one transaction per batch, by
+ * {@link AnstopDbAdapter#importBatch(ImportedTime[], int)}, which skips times already saved.
+ * The batch's {@link ImportedTime}s and their lap storage are reused for the next batch.
+ *<P>
+ * This can take a while, so call {@link #importFile(File)} from a background thread.
+ * Not synchronized; use from one thread at a time.
+ * @since 1.6
+ */
+public class TimesImporter {
+
+	/** Maximum number of times per batch. */
+	private static final int BATCH_TIMES = 500;
+
+	/** Insert the batch early if its times have this many laps in all. */
+	private static final int BATCH_LAPS = 100000;
+
+	/** Size of the byte and char buffers. */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * One time read from an export, waiting to be inserted.
+	 * Fields are the same as {@link AnstopDbAdapter#createNew(String, String, int, long, long, long)}'s parameters.
+	 */
+	static final class ImportedTime {
+		String title, comment;
+		int mode;
+		long startTime, stopTime, elapsed;
+		final LapStore laps = new LapStore();
+
+		/** Clear the fields for reuse. */
+		void clear() {
+			title = "";
+			comment = null;
+			mode = Anstop.STOP_LAP;
+			startTime = -1L;
+			stopTime = -1L;
+			elapsed = -1L;
+			laps.clear();
+		}
+	}
+
+	/** An export's contents can't be parsed. */
+	private static final class FormatError extends IOException {
+		private static final long serialVersionUID = 1L;
+		FormatError(final String msg) { super(msg); }
+	}
+
+	private final Context mContext;
+
+	/** Database, while importing */
+	private AnstopDbAdapter dba;
+
+	/** The batch; only the first {@link #batchCount} are waiting to be inserted. */
+	private final ImportedTime[] batch = new ImportedTime[BATCH_TIMES];
+
+	/** Number of times in {@link #batch}, and their total laps */
+	private int batchCount, batchLaps;
+
+	/** Results so far, for {@link #getImportedCount()} etc */
+	private int imported, duplicates, skipped, deleted;
+
+	/** Stream being read; not closed here */
+	private InputStream in;
+
+	private final CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder();
+
+	/** Bytes read from {@link #in}, not yet decoded; between calls, ready for get */
+	private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+
+	/** Chars decoded, not yet parsed; between calls, ready for get */
+	private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+	/** Has {@link #in} reached its end?  Has the decoder been flushed after that? */
+	private boolean eof, decoderDone;
+
+	/** Reusable text of the last string read by {@link #readString()} */
+	private final StringBuilder sb = new StringBuilder();
+
+	/**
+	 * Create an importer.
+	 * @param ctx  Context for the database
+	 */
+	public TimesImporter(final Context ctx) {
+		mContext = ctx;
+	}
+
+	/** Get the number of times inserted by {@link #importFile(File)} calls so far. */
+	public int getImportedCount() { return imported; }
+
+	/** Get the number of times not inserted because they were already saved. */
+	public int getDuplicateCount() { return duplicates; }
+
+	/** Get the number of files or entries skipped because they couldn't be read, such as text exports. */
+	public int getSkippedCount() { return skipped; }
+
+	/** Get the number of saved times deleted because an incremental export listed them as deleted. */
+	public int getDeletedCount() { return deleted; }
+
+	/**
+	 * Find the export archives on external storage (SD-Card) written by {@link ExportHelper#writeAll(int)}.
+	 * @return  The archives, newest name first; empty if none, or storage isn't mounted
+	 */
+	public static File[] findArchives() {
+		final String storageState = Environment.getExternalStorageState();
+		File[] found = null;
+		if (storageState.contains("mounted"))
+			found = Environment.getExternalStorageDirectory().listFiles();
+		if (found == null)
+			return new File[0];
+
+		int n = 0;
+		for (int i = 0; i < found.length; ++i)
+		{
+			final String name = found[i].getName();
+			if (name.startsWith("anstop-") && name.endsWith(".zip") && found[i].isFile())
+				found[n++] = found[i];
+		}
+		final File[] archives = new File[n];
+		System.arraycopy(found, 0, archives, 0, n);
+		java.util.Arrays.sort(archives, java.util.Collections.reverseOrder());
+		return archives;
+	}
+
+	/**
+	 * Import the times from an export archive (.zip), or from one exported .json or .csv file.
+	 * Times already saved aren't imported again.  If the file can't be read partway through,
+	 * the times read before that are still imported.
+	 * @param f  File to import
+	 * @return  true if all of the file was read, false if there was an error reading it
+	 * @see #getImportedCount()
+	 */
+	public boolean importFile(final File f) {
+		final String name = f.getName();
+		InputStream fin = null;
+		dba = new AnstopDbAdapter(mContext);
+		dba.open();
+		try {
+			fin = new BufferedInputStream(new FileInputStream(f), 2 * BUFFER_SIZE);
+			if (name.endsWith(".zip"))
+			{
+				ZipInputStream zin = new ZipInputStream(fin);
+				fin = zin;
+				ZipEntry ze;
+				while ((ze = zin.getNextEntry()) != null)
+				{
+					if (! ze.isDirectory())
+						importEntry(zin, ze.getName(), true);
+					zin.closeEntry();
+				}
+			} else {
+				importEntry(fin, name, false);
+			}
+			return true;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			insertBatch();
+			dba.close();
+			dba = null;
+			if (fin != null)
+			{
+				try {
+					fin.close();
+				} catch (IOException e) {}
+			}
+		}
+	}
+
+	/**
+	 * Read one exported time from a file or zip entry, and add it to the batch.
+	 * If the data isn't a time, or is a text export, count it as skipped.
+	 * An archive's {@link ExportHelper#DELETED_ENTRY_NAME} entry is read by {@link #importDeleted()}.
+	 * @param is  Stream to read; not closed here
+	 * @param name  File or entry name
+	 * @param inArchive  True if the name came from {@link ExportHelper#writeAll(int)},
+	 *     which puts the time's _id and a space before its title
+	 * @throws IOException if <tt>is</tt> can't be read
+	 */
+	private void importEntry(final InputStream is, final String name, final boolean inArchive)
+		throws IOException
+	{
+		if (inArchive && name.equals(ExportHelper.DELETED_ENTRY_NAME))
+		{
+			insertBatch();
+			startReading(is);
+			try {
+				importDeleted();
+			} catch (FormatError e) {
+				++skipped;
+			}
+			return;
+		}
+
+		final boolean isJson = name.endsWith(".json");
+		if (! (isJson || name.endsWith(".csv")))
+		{
+			++skipped;
+			return;
+		}
+
+		final ImportedTime t = nextInBatch();
+		startReading(is);
+		try {
+			if (isJson)
+				readJson(t);
+			else
+				readCsv(t, name, inArchive);
+		} catch (FormatError e) {
+			++skipped;
+			return;
+		}
+
+		++batchCount;
+		batchLaps += t.laps.size();
+		if ((batchCount == BATCH_TIMES) || (batchLaps >= BATCH_LAPS))
+			insertBatch();
+	}
+
+	/** Get the batch's next unused {@link ImportedTime}, cleared; doesn't change {@link #batchCount}. */
+	private ImportedTime nextInBatch() {
+		ImportedTime t = batch[batchCount];
+		if (t == null)
+		{
+			t = new ImportedTime();
+			batch[batchCount] = t;
+		}
+		t.clear();
+		return t;
+	}
+
+	/** Insert the batch's times, if any, and start a new batch. */
+	private void insertBatch() {
+		if (batchCount == 0)
+			return;
+
+		final int n = dba.importBatch(batch, batchCount);
+		imported += n;
+		duplicates += (batchCount - n);
+		batchCount = 0;
+		batchLaps = 0;
+	}
+
+	/**
+	 * Read the JSON array of deleted times written by {@link ExportHelper#writeChanges(int)},
+	 * and delete the saved times with the same title, start time and elapsed time,
+	 * {@link #BATCH_TIMES} at a time with {@link AnstopDbAdapter#findTimes(ImportedTime[], int)}
+	 * and {@link AnstopDbAdapter#delete(long[])}.  Times not found are ignored.
+	 * Reuses the batch, which must be empty.  If the array can't be parsed partway through,
+	 * the times read before that are still deleted.
+	 * @throws FormatError if not a JSON array of times
+	 * @throws IOException if the stream can't be read
+	 */
+	private void importDeleted()
+		throws IOException
+	{
+		try {
+			expect('[');
+			if (peekNonSpace() == ']')
+				return;
+			for (;;)
+			{
+				readJson(nextInBatch());
+				++batchCount;
+				if (batchCount == BATCH_TIMES)
+					deleteBatch();
+
+				final int c = readNonSpace();
+				if (c == ']')
+					return;
+				if (c != ',')
+					throw new FormatError("expected , or ]");
+			}
+		} finally {
+			deleteBatch();
+		}
+	}
+
+	/** Delete the saved times matching the batch's times, if any, and start a new batch. */
+	private void deleteBatch() {
+		if (batchCount == 0)
+			return;
+
+		final long[] ids = dba.findTimes(batch, batchCount);
+		if (ids.length > 0)
+			deleted += dba.delete(ids);
+		batchCount = 0;
+	}
+
+	/**
+	 * Read a time written by {@link LapDataWriter} as JSON.  Fields not known here are ignored.
+	 * @param t  Time to read into; cleared
+	 * @throws FormatError if not a JSON object with the fields of a time
+	 * @throws IOException if the stream can't be read
+	 */
+	private void readJson(final ImportedTime t)
+		throws IOException
+	{
+		expect('{');
+		if (peekNonSpace() == '}')
+			throw new FormatError("empty");
+		for (;;)
+		{
+			readString();
+			expect(':');
+			if (keyIs("title"))
+			{
+				if (readStringOrNull())
+					t.title = sb.toString();
+			}
+			else if (keyIs("comment"))
+			{
+				if (readStringOrNull())
+					t.comment = sb.toString();
+			}
+			else if (keyIs("mode"))
+			{
+				if (readStringOrNull() && keyIs("countdown"))
+					t.mode = Anstop.COUNTDOWN;
+			}
+			else if (keyIs("start_systime_ms"))
+				t.startTime = readLongOrNull(-1L);
+			else if (keyIs("stop_systime_ms"))
+				t.stopTime = readLongOrNull(-1L);
+			else if (keyIs("elapsed_ms"))
+				t.elapsed = readLongOrNull(-1L);  // null: v3 record without elapsed
+			else if (keyIs("laps"))
+				readJsonLaps(t.laps);
+			else
+				skipValue();
+
+			final int c = readNonSpace();
+			if (c == '}')
+				break;
+			if (c != ',')
+				throw new FormatError("expected , or }");
+		}
+	}
+
+	/**
+	 * Read a JSON array of laps written by {@link LapDataWriter}, adding them to <tt>laps</tt>.
+	 * @throws FormatError if a lap has no elapsed or system time
+	 * @throws IOException if the stream can't be read
+	 */
+	private void readJsonLaps(final LapStore laps)
+		throws IOException
+	{
+		expect('[');
+		if (peekNonSpace() == ']')
+		{
+			read();
+			return;
+		}
+		for (;;)
+		{
+			long elapsed = -1L, systime = -1L;
+			expect('{');
+			if (peekNonSpace() != '}')
+			{
+				for (;;)
+				{
+					readString();
+					expect(':');
+					if (keyIs("elapsed_ms"))
+						elapsed = readLong();
+					else if (keyIs("systime_ms"))
+						systime = readLong();
+					else
+						skipValue();
+
+					final int c = readNonSpace();
+					if (c == '}')
+						break;
+					if (c != ',')
+						throw new FormatError("expected , or }");
+				}
+			} else {
+				read();
+			}
+			if ((elapsed == -1L) || (systime == -1L))
+				throw new FormatError("lap fields");
+			laps.add(elapsed, systime);
+
+			final int c = readNonSpace();
+			if (c == ']')
+				return;
+			if (c != ',')
+				throw new FormatError("expected , or ]");
+		}
+	}
+
+	/**
+	 * Read laps written by {@link LapDataWriter} as CSV: Lines of <tt>lap,elapsed_ms,systime_ms,delta_ms</tt>.
+	 * Lines not starting with a digit, such as the header, are ignored.
+	 * The time's title is the file name without its extension, and its elapsed time is the last lap's.
+	 * @param t  Time to read into; cleared
+	 * @param name  File or entry name
+	 * @param inArchive  True if <tt>name</tt> starts with the time's _id and a space
+	 * @throws FormatError if a lap line doesn't have the expected fields
+	 * @throws IOException if the stream can't be read
+	 */
+	private void readCsv(final ImportedTime t, final String name, final boolean inArchive)
+		throws IOException
+	{
+		int start = name.lastIndexOf('/') + 1;
+		if (inArchive)
+		{
+			final int sp = name.indexOf(' ', start);
+			if (sp != -1)
+				start = sp + 1;
+		}
+		t.title = name.substring(start, name.length() - 4);  // ".csv"
+
+		int c;
+		while ((c = peek()) != -1)
+		{
+			if ((c >= '0') && (c <= '9'))
+			{
+				readLong();  // lap number
+				expect(',');
+				final long elapsed = readLong();
+				expect(',');
+				final long systime = readLong();
+				t.laps.add(elapsed, systime);
+			}
+			// skip the rest of the line, including delta_ms
+			while (((c = read()) != -1) && (c != '\n'))
+				;
+		}
+		t.elapsed = t.laps.getLastElapsed();
+	}
+
+	//
+	// Reading and decoding
+	//
+
+	/** Start reading a new stream or entry. */
+	private void startReading(final InputStream is) {
+		in = is;
+		decoder.reset();
+		bytes.clear();
+		bytes.limit(0);
+		chars.clear();
+		chars.limit(0);
+		eof = false;
+		decoderDone = false;
+	}
+
+	/**
+	 * Decode more chars into {@link #chars}, reading from {@link #in} as needed.
+	 * @return  false at the end of the stream
+	 */
+	private boolean fill()
+		throws IOException
+	{
+		if (decoderDone)
+			return false;
+
+		chars.clear();
+		for (;;)
+		{
+			final CoderResult cr = decoder.decode(bytes, chars, eof);
+			if (cr.isError())
+				cr.throwException();
+			if (eof)
+			{
+				decoder.flush(chars);
+				decoderDone = true;
+				break;
+			}
+			if (chars.position() > 0)
+				break;
+
+			bytes.compact();
+			final int n = in.read(bytes.array(), bytes.position(), bytes.remaining());
+			if (n < 0)
+				eof = true;
+			else
+				bytes.position(bytes.position() + n);
+			bytes.flip();
+		}
+		chars.flip();
+		return chars.hasRemaining();
+	}
+
+	/** Read the next char, or -1 at the end. */
+	private int read()
+		throws IOException
+	{
+		if ((! chars.hasRemaining()) && ! fill())
+			return -1;
+		return chars.get();
+	}
+
+	/** Get the next char without reading it, or -1 at the end. */
+	private int peek()
+		throws IOException
+	{
+		if ((! chars.hasRemaining()) && ! fill())
+			return -1;
+		return chars.get(chars.position());
+	}
+
+	/** Skip whitespace, then get the next char without reading it, or -1 at the end. */
+	private int peekNonSpace()
+		throws IOException
+	{
+		int c;
+		while (((c = peek()) == ' ') || (c == '\n') || (c == '\r') || (c == '\t'))
+			chars.get();
+		return c;
+	}
+
+	/** Skip whitespace, then read the next char, or -1 at the end. */
+	private int readNonSpace()
+		throws IOException
+	{
+		peekNonSpace();
+		return read();
+	}
+
+	/** Skip whitespace, then read <tt>ch</tt> or throw {@link FormatError}. */
+	private void expect(final char ch)
+		throws IOException
+	{
+		if (readNonSpace() != ch)
+			throw new FormatError("expected " + ch);
+	}
+
+	/** Is {@link #sb}, the last string read, equal to <tt>key</tt>? */
+	private boolean keyIs(final String key) {
+		final int n = key.length();
+		if (sb.length() != n)
+			return false;
+		for (int i = 0; i < n; ++i)
+			if (sb.charAt(i) != key.charAt(i))
+				return false;
+		return true;
+	}
+
+	/** Read a JSON string into {@link #sb}. */
+	private void readString()
+		throws IOException
+	{
+		expect('"');
+		sb.setLength(0);
+		for (;;)
+		{
+			int c = read();
+			if (c == '"')
+				return;
+			if (c == -1)
+				throw new FormatError("end in string");
+			if (c == '\\')
+			{
+				c = read();
+				switch (c)
+				{
+				case 'n': c = '\n'; break;
+				case 'r': c = '\r'; break;
+				case 't': c = '\t'; break;
+				case 'b': c = '\b'; break;
+				case 'f': c = '\f'; break;
+				case 'u':
+					{
+						int u = 0;
+						for (int i = 0; i < 4; ++i)
+						{
+							final int d = Character.digit(read(), 16);
+							if (d == -1)
+								throw new FormatError("\\u");
+							u = (u << 4) | d;
+						}
+						c = u;
+					}
+					break;
+				case -1:
+					throw new FormatError("end in string");
+				default:
+					// '"', '\\', '/' stand for themselves
+				}
+			}
+			sb.append((char) c);
+		}
+	}
+
+	/** Read a JSON string into {@link #sb}, or <tt>null</tt>; return false if null. */
+	private boolean readStringOrNull()
+		throws IOException
+	{
+		if (peekNonSpace() == 'n')
+		{
+			readLiteral("null");
+			return false;
+		}
+		readString();
+		return true;
+	}
+
+	/** Read an integer, such as a JSON number without a fraction or exponent. */
+	private long readLong()
+		throws IOException
+	{
+		boolean neg = false;
+		int c = peekNonSpace();
+		if (c == '-')
+		{
+			neg = true;
+			chars.get();
+			c = peek();
+		}
+		if ((c < '0') || (c > '9'))
+			throw new FormatError("expected digit");
+
+		long v = 0;
+		while ((c >= '0') && (c <= '9'))
+		{
+			v = (v * 10) + (c - '0');
+			chars.get();
+			c = peek();
+		}
+		if ((c == '.') || (c == 'e') || (c == 'E'))
+			throw new FormatError("not an integer");
+		return (neg) ? -v : v;
+	}
+
+	/** Read an integer or <tt>null</tt>; return <tt>ifNull</tt> if null. */
+	private long readLongOrNull(final long ifNull)
+		throws IOException
+	{
+		if (peekNonSpace() == 'n')
+		{
+			readLiteral("null");
+			return ifNull;
+		}
+		return readLong();
+	}
+
+	/** Read <tt>lit</tt>, such as <tt>null</tt>, or throw {@link FormatError}. */
+	private void readLiteral(final String lit)
+		throws IOException
+	{
+		peekNonSpace();
+		for (int i = 0; i < lit.length(); ++i)
+			if (read() != lit.charAt(i))
+				throw new FormatError("expected " + lit);
+	}
+
+	/** Skip any JSON value, including nested objects and arrays. */
+	private void skipValue()
+		throws IOException
+	{
+		int c = peekNonSpace();
+		if (c == '"')
+		{
+			readString();
+			return;
+		}
+		if ((c == '{') || (c == '['))
+		{
+			int depth = 0;
+			do
+			{
+				c = peekNonSpace();
+				if (c == -1)
+					throw new FormatError("end in value");
+				if (c == '"')
+				{
+					readString();
+					continue;
+				}
+				read();
+				if ((c == '{') || (c == '['))
+					++depth;
+				else if ((c == '}') || (c == ']'))
+					--depth;
+			} while (depth > 0);
+			return;
+		}
+
+		// number or literal
+		while (((c = peek()) != -1) && (",}] \n\r\t".indexOf(c) == -1))
+			chars.get();
+	}
+
+}
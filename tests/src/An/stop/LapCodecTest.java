@@ -0,0 +1,175 @@
+/***************************************************************************
+ *   This file Copyright (C) 2026 by the Anstop authors                    *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package An.stop;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link LapCodec}: Round trips, negative deltas, the size limit,
+ * truncated data, and unknown format versions.
+ * @since 1.6
+ */
+public class LapCodecTest extends TestCase {
+
+	/** Start of the test laps' system times: 2014-05-13 16:53:20 UTC. */
+	private static final long T0 = 1400000000000L;
+
+	/**
+	 * Encode and decode <tt>laps</tt>, and check the decoded laps are the same.
+	 * @return  the encoded data
+	 */
+	private static byte[] assertRoundTrip(final LapStore laps) {
+		final byte[] data = LapCodec.encode(laps);
+		final LapStore back = new LapStore();
+		assertEquals(laps.size(), LapCodec.decode(data, back));
+		assertLapsEqual(laps, back, laps.size());
+		return data;
+	}
+
+	/** Check the first <tt>n</tt> laps of <tt>expected</tt> and <tt>actual</tt> are the same. */
+	private static void assertLapsEqual(final LapStore expected, final LapStore actual, final int n) {
+		assertEquals(n, actual.size());
+		for (int i = 0; i < n; ++i)
+		{
+			assertEquals("elapsed " + i, expected.getElapsed(i), actual.getElapsed(i));
+			assertEquals("systime " + i, expected.getSystime(i), actual.getSystime(i));
+		}
+	}
+
+	public void testEmpty() {
+		final byte[] data = assertRoundTrip(new LapStore());
+		assertEquals(LapCodec.FORMAT_VERSION, data[0]);
+		assertEquals(2, data.length);  // version, count 0
+	}
+
+	public void testRoundTrip() {
+		final LapStore laps = new LapStore();
+		long elapsed = 0;
+		for (int i = 1; i <= 5000; ++i)
+		{
+			elapsed += 30000 + (i * 37) % 9000;  // 30 to 39 seconds per lap
+			laps.add(elapsed, T0 + elapsed + (i % 3));
+		}
+		final byte[] data = assertRoundTrip(laps);
+
+		// deltas under 64 seconds: a 3-byte elapsed delta, a 3-byte systime delta
+		assertTrue("size " + data.length, data.length <= 2 + 3 + (6 * 5000) + 5);
+	}
+
+	public void testNegativeDeltas() {
+		final LapStore laps = new LapStore();
+		// a countdown's laps record the remaining time, which decreases;
+		// the system clock can be set back between laps
+		laps.add(60000, T0);
+		laps.add(45000, T0 + 15000);
+		laps.add(44999, T0 - 3600000);
+		laps.add(0, T0 - 3540000);
+		laps.add(-1, 0);
+		final byte[] data = assertRoundTrip(laps);
+
+		// small negative deltas stay small: -1 ms is one byte
+		final LapStore minus1 = new LapStore();
+		minus1.add(-1, -1);
+		assertEquals(2 + 1 + 1, LapCodec.encode(minus1).length);
+		assertTrue(data.length < 40);
+	}
+
+	public void testExtremeValues() {
+		final LapStore laps = new LapStore();
+		laps.add(Long.MAX_VALUE, Long.MIN_VALUE);
+		laps.add(Long.MIN_VALUE, Long.MAX_VALUE);
+		laps.add(0, 0);
+		assertRoundTrip(laps);
+	}
+
+	/** Many laps of 20 bytes each: more than the encoder's first guess of the size. */
+	public void testWorstCaseSize() {
+		final LapStore laps = new LapStore();
+		for (int i = 0; i < 1000; ++i)
+		{
+			final long v = ((i & 1) == 0) ? (1L << 62) : 0;  // deltas of +-2^62: 9 or 10 bytes
+			laps.add(v, -v);
+		}
+		final byte[] data = assertRoundTrip(laps);
+		assertTrue("size " + data.length, data.length > 1 + 5 + (6 * 1000));
+	}
+
+	/** A range of a session's laps is encoded without the laps before it; more than {@link LapCodec#MAX_LAPS} is refused. */
+	public void testRangeAndMaxLaps() {
+		final LapStore laps = new LapStore();
+		for (int i = 1; i <= LapCodec.MAX_LAPS + 1; ++i)
+			laps.add(1000L * i, T0 + 1000L * i);
+
+		final LapStore back = new LapStore();
+		assertEquals(3, LapCodec.decode(LapCodec.encode(laps, 5, 8), back));
+		for (int i = 0; i < 3; ++i)
+		{
+			assertEquals(laps.getElapsed(5 + i), back.getElapsed(i));
+			assertEquals(laps.getSystime(5 + i), back.getSystime(i));
+		}
+
+		assertEquals(LapCodec.MAX_LAPS, LapCodec.decode(LapCodec.encode(laps, 1, laps.size()), new LapStore()));
+		try {
+			LapCodec.encode(laps);
+			fail("encoded more than MAX_LAPS");
+		} catch (IllegalArgumentException e) {}
+	}
+
+	/** Every truncation keeps the complete laps before the cut, and doesn't throw. */
+	public void testTruncated() {
+		final LapStore laps = new LapStore();
+		for (int i = 1; i <= 20; ++i)
+			laps.add(1000L * i * i, T0 + 1000L * i * i);
+		final byte[] data = LapCodec.encode(laps);
+
+		int prevCount = 0;
+		for (int len = 1; len < data.length; ++len)
+		{
+			final byte[] cut = new byte[len];
+			System.arraycopy(data, 0, cut, 0, len);
+			final LapStore back = new LapStore();
+			final int n = LapCodec.decode(cut, back);
+			assertTrue("len " + len, (n >= prevCount) && (n < laps.size()));
+			assertLapsEqual(laps, back, n);
+			prevCount = n;
+		}
+		assertEquals("all but the last lap", laps.size() - 1, prevCount);
+	}
+
+	public void testUnknownFormat() {
+		final LapStore laps = new LapStore();
+		laps.add(1000, T0);
+		final byte[] data = LapCodec.encode(laps);
+		data[0] = (byte) (LapCodec.FORMAT_VERSION + 1);
+
+		final LapStore back = new LapStore();
+		try {
+			LapCodec.decode(data, back);
+			fail("decoded an unknown version");
+		} catch (IllegalArgumentException e) {}
+		assertEquals("no laps visited", 0, back.size());
+
+		try {
+			LapCodec.decode(new byte[0], back);
+			fail("decoded empty data");
+		} catch (IllegalArgumentException e) {}
+	}
+
+}
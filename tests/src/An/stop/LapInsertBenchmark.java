@@ -0,0 +1,155 @@
+/***************************************************************************
+ *   This file Copyright (C) 2026 by the Anstop authors                    *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package An.stop;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * Throughput of the bulk lap insert used by {@link AnstopDbAdapter#createTemporaryLaps(LapStore)}:
+ * One transaction through one compiled statement for 1,000, 10,000 and 100,000 laps,
+ * and for comparison 1,000 laps committed one at a time as before that change.
+ * Results are written to the log with tag {@link #TAG}, one line per run:
+ *<pre>
+ *   adb logcat -s AnstopBenchmark
+ *</pre>
+ * Numbers depend on the device's storage; compare runs on the same device.
+ *<P>
+ * Runs against a scratch database with the same <tt>temp_laps</tt> table, which is deleted
+ * afterwards; the app's own database and the current timing's laps aren't touched.
+ * @since 1.6
+ */
+public class LapInsertBenchmark extends AndroidTestCase {
+
+	/** Log tag for results. */
+	public static final String TAG = "AnstopBenchmark";
+
+	/** Scratch database name. */
+	private static final String DB_NAME = "anstop-benchmark.db";
+
+	/** Runs per size; the fastest is reported as the result. */
+	private static final int RUNS = 3;
+
+	private SQLiteDatabase db;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		getContext().deleteDatabase(DB_NAME);
+		db = getContext().openOrCreateDatabase(DB_NAME, 0, null);
+		db.execSQL("create table temp_laps (_id integer primary key autoincrement, "
+			+ "lap_elapsed int not null, "
+			+ "lap_systime int not null, lap_comment text null);");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		db.close();
+		getContext().deleteDatabase(DB_NAME);
+		super.tearDown();
+	}
+
+	public void testBulkInsert1k() { runBulk(1000); }
+
+	public void testBulkInsert10k() { runBulk(10000); }
+
+	public void testBulkInsert100k() { runBulk(100000); }
+
+	/** Baseline: 1,000 laps in 1,000 transactions, like the old per-lap insert. */
+	public void testOneTransactionPerLap1k() {
+		final int n = 1000;
+		final LapStore one = new LapStore();
+		db.delete("temp_laps", null, null);
+		final long t0 = SystemClock.elapsedRealtime();
+		for (int i = 0; i < n; ++i)
+		{
+			one.clear();
+			one.add(1000L * (i + 1), 1400000000000L + 1000L * (i + 1));
+			insertLaps(one);
+		}
+		report("per-lap transactions", n, SystemClock.elapsedRealtime() - t0);
+		assertEquals(n, countLaps());
+	}
+
+	/**
+	 * Insert <tt>n</tt> laps in one {@link #insertLaps(LapStore)} call,
+	 * {@link #RUNS} times, and report the fastest.
+	 */
+	private void runBulk(final int n) {
+		final LapStore laps = new LapStore();
+		for (int i = 1; i <= n; ++i)
+			laps.add(1000L * i + (i % 7), 1400000000000L + 1000L * i);
+
+		long best = Long.MAX_VALUE;
+		for (int r = 0; r < RUNS; ++r)
+		{
+			db.delete("temp_laps", null, null);
+			final long t0 = SystemClock.elapsedRealtime();
+			insertLaps(laps);
+			final long dt = SystemClock.elapsedRealtime() - t0;
+			if (dt < best)
+				best = dt;
+		}
+		report("bulk insert", n, best);
+		assertEquals(n, countLaps());
+	}
+
+	/**
+	 * Insert laps the way {@link AnstopDbAdapter#createTemporaryLaps(LapStore)} does:
+	 * One compiled INSERT re-bound for each lap, in one transaction.
+	 */
+	private void insertLaps(final LapStore laps) {
+		final SQLiteStatement ins = db.compileStatement
+			("insert into temp_laps (lap_elapsed, lap_systime) values (?, ?);");
+		db.beginTransaction();
+		try {
+			for (int i = 0; i < laps.size(); ++i)
+			{
+				ins.bindLong(1, laps.getElapsed(i));
+				ins.bindLong(2, laps.getSystime(i));
+				ins.executeInsert();
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+			ins.close();
+		}
+	}
+
+	/** Number of rows in the scratch <tt>temp_laps</tt>. */
+	private int countLaps() {
+		final SQLiteStatement count = db.compileStatement("select count(*) from temp_laps;");
+		try {
+			return (int) count.simpleQueryForLong();
+		} finally {
+			count.close();
+		}
+	}
+
+	/** Log one result as milliseconds and laps per second. */
+	private static void report(final String what, final int n, final long ms) {
+		Log.i(TAG, what + ", " + n + " laps: " + ms + " ms, "
+			+ (n * 1000L / Math.max(ms, 1L)) + " laps/s");
+	}
+
+}
@@ -0,0 +1,166 @@
+/***************************************************************************
+ *   This file Copyright (C) 2026 by the Anstop authors                    *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package An.stop;
+
+import java.io.File;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * Before and after numbers for schema v5's packed lap storage: Database size, and the time
+ * to load one session's laps, with the same laps stored both ways.
+ *<UL>
+ * <LI> Before: v4's <tt>laps</tt> table, one row per lap, with its <tt>"laps~t"</tt> index;
+ *      a session is loaded by walking a cursor.
+ * <LI> After: v5's <tt>lap_data</tt> table, one row per session with a {@link LapCodec} blob;
+ *      a session is loaded by reading the blob and decoding it.
+ *</UL>
+ * Each layout is written to its own scratch database, which is deleted afterwards;
+ * the app's own database isn't touched.  Results are written to the log with tag
+ * {@link LapInsertBenchmark#TAG}:
+ *<pre>
+ *   adb logcat -s AnstopBenchmark
+ *</pre>
+ * @since 1.6
+ */
+public class LapStorageMeasurement extends AndroidTestCase {
+
+	/** Scratch database names. */
+	private static final String DB_ROWS = "anstop-measure-rows.db",
+		DB_BLOB = "anstop-measure-blob.db";
+
+	/** Number of sessions, and laps per session: 100,000 laps in all. */
+	private static final int SESSIONS = 50, LAPS = 2000;
+
+	/** The same laps are stored in every session. */
+	private LapStore laps;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		getContext().deleteDatabase(DB_ROWS);
+		getContext().deleteDatabase(DB_BLOB);
+
+		laps = new LapStore();
+		long elapsed = 0;
+		for (int i = 1; i <= LAPS; ++i)
+		{
+			elapsed += 20000 + (i * 7919) % 40000;  // 20 to 60 seconds per lap
+			laps.add(elapsed, 1400000000000L + elapsed + (i % 5));
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		getContext().deleteDatabase(DB_ROWS);
+		getContext().deleteDatabase(DB_BLOB);
+		super.tearDown();
+	}
+
+	public void testSizeAndLoadTime() {
+		// Before: one row per lap
+		SQLiteDatabase db = getContext().openOrCreateDatabase(DB_ROWS, 0, null);
+		db.execSQL("create table laps (_id integer primary key autoincrement, "
+			+ "times_id int not null, lap_elapsed int not null, "
+			+ "lap_systime int not null, lap_comment text null);");
+		db.execSQL("create index \"laps~t\" ON laps(times_id);");
+		SQLiteStatement ins = db.compileStatement
+			("insert into laps (times_id, lap_elapsed, lap_systime) values (?, ?, ?);");
+		db.beginTransaction();
+		try {
+			for (int s = 1; s <= SESSIONS; ++s)
+			{
+				for (int i = 0; i < LAPS; ++i)
+				{
+					ins.bindLong(1, s);
+					ins.bindLong(2, laps.getElapsed(i));
+					ins.bindLong(3, laps.getSystime(i));
+					ins.executeInsert();
+				}
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+			ins.close();
+		}
+
+		long t0 = SystemClock.elapsedRealtime();
+		for (int s = 1; s <= SESSIONS; ++s)
+		{
+			final LapStore loaded = new LapStore();
+			Cursor c = db.rawQuery("select lap_elapsed, lap_systime from laps where times_id = "
+				+ s + " order by _id;", null);
+			while (c.moveToNext())
+				loaded.add(c.getLong(0), c.getLong(1));
+			c.close();
+			assertEquals(LAPS, loaded.size());
+		}
+		final long rowsLoadMillis = SystemClock.elapsedRealtime() - t0;
+		db.close();
+		final long rowsSize = getContext().getDatabasePath(DB_ROWS).length();
+
+		// After: one packed blob per session
+		db = getContext().openOrCreateDatabase(DB_BLOB, 0, null);
+		db.execSQL("create table lap_data (times_id integer not null, seq int not null, "
+			+ "lap_count int not null, laps blob not null, primary key (times_id, seq));");
+		ins = db.compileStatement("insert into lap_data (times_id, seq, lap_count, laps) values (?, 0, ?, ?);");
+		db.beginTransaction();
+		try {
+			for (int s = 1; s <= SESSIONS; ++s)
+			{
+				ins.bindLong(1, s);
+				ins.bindLong(2, LAPS);
+				ins.bindBlob(3, LapCodec.encode(laps));
+				ins.executeInsert();
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+			ins.close();
+		}
+
+		t0 = SystemClock.elapsedRealtime();
+		for (int s = 1; s <= SESSIONS; ++s)
+		{
+			final LapStore loaded = new LapStore();
+			Cursor c = db.rawQuery("select laps from lap_data where times_id = " + s + ";", null);
+			assertTrue(c.moveToFirst());
+			LapCodec.decode(c.getBlob(0), loaded);
+			c.close();
+			assertEquals(LAPS, loaded.size());
+		}
+		final long blobLoadMillis = SystemClock.elapsedRealtime() - t0;
+		db.close();
+		final long blobSize = getContext().getDatabasePath(DB_BLOB).length();
+
+		final int total = SESSIONS * LAPS;
+		Log.i(LapInsertBenchmark.TAG, "v4 lap rows: " + total + " laps, db " + rowsSize + " bytes ("
+			+ (rowsSize / total) + " per lap), load " + SESSIONS + " sessions " + rowsLoadMillis + " ms");
+		Log.i(LapInsertBenchmark.TAG, "v5 lap blobs: " + total + " laps, db " + blobSize + " bytes ("
+			+ (blobSize / total) + " per lap), load " + SESSIONS + " sessions " + blobLoadMillis + " ms");
+		assertTrue("packed laps are smaller", blobSize < rowsSize);
+	}
+
+}
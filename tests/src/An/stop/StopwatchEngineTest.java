@@ -0,0 +1,166 @@
+/***************************************************************************
+ *   This file Copyright (C) 2026 by the Anstop authors                    *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package An.stop;
+
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link StopwatchEngine}, ticked by hand through a {@link FakeScheduler}
+ * instead of the shared {@link TickScheduler} thread: Subscription only while
+ * a stopwatch runs, which stopwatches each tick visits, the next tick's delay,
+ * and a countdown stopping itself at 0.
+ * @since 1.6
+ */
+public class StopwatchEngineTest extends TestCase {
+
+	/** Records subscriptions instead of starting a tick thread. */
+	private static final class FakeScheduler extends TickScheduler {
+		TickScheduler.Listener subscribed;
+		int subscribeCalls;
+
+		public synchronized void subscribe(final TickScheduler.Listener li) {
+			subscribed = li;
+			++subscribeCalls;
+		}
+
+		public synchronized void unsubscribe(final TickScheduler.Listener li) {
+			if (subscribed == li)
+				subscribed = null;
+		}
+	}
+
+	/** Records the engine's callbacks. */
+	private static final class Recorder implements StopwatchEngine.Listener {
+		final ArrayList<Stopwatch> ticked = new ArrayList<Stopwatch>();
+		final ArrayList<Stopwatch> done = new ArrayList<Stopwatch>();
+		long lastShown = -1L;
+
+		public void onStopwatchTick(final Stopwatch sw, final long shownMillis) {
+			ticked.add(sw);
+			lastShown = shownMillis;
+		}
+
+		public void onCountdownDone(final Stopwatch sw) {
+			done.add(sw);
+		}
+	}
+
+	private FakeScheduler sched;
+	private Recorder rec;
+	private StopwatchEngine engine;
+
+	@Override
+	protected void setUp() {
+		sched = new FakeScheduler();
+		rec = new Recorder();
+		engine = new StopwatchEngine(rec, sched);
+	}
+
+	public void testSubscribedOnlyWhileRunning() {
+		final Stopwatch a = engine.add(Anstop.STOP_LAP, 0),
+		                b = engine.add(Anstop.STOP_LAP, 0);
+		assertEquals(2, engine.size());
+		assertNull(sched.subscribed);
+
+		assertTrue(engine.start(a));
+		assertSame(engine, sched.subscribed);
+		assertTrue(engine.start(b));
+		assertSame(engine, sched.subscribed);
+
+		engine.stop(a);
+		assertSame("still running: b", engine, sched.subscribed);
+		engine.stop(b);
+		assertNull(sched.subscribed);
+
+		engine.start(a);
+		engine.remove(a);
+		assertNull("removing the last running stopwatch unsubscribes", sched.subscribed);
+		assertEquals(1, engine.size());
+	}
+
+	public void testTickVisitsOnlyRunning() {
+		final Stopwatch a = engine.add(Anstop.STOP_LAP, 0),
+		                b = engine.add(Anstop.STOP_LAP, 0),
+		                c = engine.add(Anstop.STOP_LAP, 0);
+		engine.start(a);
+		engine.start(c);
+
+		engine.onTick(a.monoStartAdj + 500);
+		assertEquals(2, rec.ticked.size());
+		assertTrue(rec.ticked.contains(a));
+		assertTrue(rec.ticked.contains(c));
+		assertFalse(rec.ticked.contains(b));
+	}
+
+	public void testDelayToEarliestBoundary() {
+		final Stopwatch a = engine.add(Anstop.STOP_LAP, 0),
+		                b = engine.add(Anstop.STOP_LAP, 0);
+		engine.start(a);
+		engine.start(b);
+		a.monoStartAdj = 1000;
+		b.monoStartAdj = 1050;
+
+		// a shows 1.230 s, next dsec in 70 ms; b shows 1.180 s, next dsec in 20 ms
+		assertEquals(20, engine.onTick(2230));
+
+		engine.stop(b);
+		assertEquals(70, engine.onTick(2230));
+	}
+
+	public void testCountdownStopsAt0() {
+		final Stopwatch sw = engine.add(Anstop.COUNTDOWN, 5);
+		assertTrue(engine.start(sw));
+		final long start = sw.monoStartAdj;
+
+		// 4.95 s remain; tick just after the shown dsec changes
+		assertEquals(51, engine.onTick(start + 50));
+		assertEquals(4950, rec.lastShown);
+		assertTrue(rec.done.isEmpty());
+
+		engine.onTick(start + 5000);
+		assertEquals(1, rec.done.size());
+		assertSame(sw, rec.done.get(0));
+		assertFalse(sw.isStarted);
+		assertNull(sched.subscribed);
+		assertFalse("already at 0", engine.start(sw));
+	}
+
+	public void testStartAllAndLap() {
+		final Stopwatch a = engine.add(Anstop.STOP_LAP, 0),
+		                b = engine.add(Anstop.STOP_LAP, 0);
+		engine.startAll();
+		assertTrue(a.isStarted);
+		assertTrue(b.isStarted);
+		assertEquals("same start instant", a.monoStartAdj, b.monoStartAdj);
+
+		assertEquals(1, engine.lap(a));
+		assertEquals(2, engine.lap(a));
+		assertEquals(1, engine.lap(b));
+		assertEquals(2, a.getLapCount());
+
+		engine.stop(a);
+		assertFalse(engine.reset(b, -1, 0));  // running
+		assertTrue(engine.reset(a, -1, 0));
+		assertEquals(0, a.getLapCount());
+	}
+
+}